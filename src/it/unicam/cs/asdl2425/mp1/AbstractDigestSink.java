@@ -0,0 +1,37 @@
+package it.unicam.cs.asdl2425.mp1;
+
+/**
+ * Base per le implementazioni di {@link DigestSink}, che scrive i valori
+ * numerici in un piccolo buffer riutilizzato e li passa a
+ * {@link #putBytes(byte[], int, int)}.
+ *
+ * @author **JULIANO, SINAJ, juliano.sinaj@studenti.unicam.it**
+ */
+abstract class AbstractDigestSink implements DigestSink {
+    private final byte[] scratch = new byte[8];
+
+    @Override
+    public DigestSink putChar(char c) {
+        scratch[0] = (byte) (c >> 8);
+        scratch[1] = (byte) c;
+        return putBytes(scratch, 0, 2);
+    }
+
+    @Override
+    public DigestSink putInt(int i) {
+        for (int b = 3; b >= 0; b--) {
+            scratch[b] = (byte) i;
+            i >>>= 8;
+        }
+        return putBytes(scratch, 0, 4);
+    }
+
+    @Override
+    public DigestSink putLong(long l) {
+        for (int b = 7; b >= 0; b--) {
+            scratch[b] = (byte) l;
+            l >>>= 8;
+        }
+        return putBytes(scratch, 0, 8);
+    }
+}
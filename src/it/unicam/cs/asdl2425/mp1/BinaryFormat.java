@@ -0,0 +1,87 @@
+package it.unicam.cs.asdl2425.mp1;
+
+/**
+ * Codici con cui funzioni di hash e modalità di concatenazione vengono
+ * identificate nei formati binari delle prove e degli alberi. I codici fanno
+ * parte dei formati e non devono essere modificati.
+ *
+ * @author **JULIANO, SINAJ, juliano.sinaj@studenti.unicam.it**
+ */
+final class BinaryFormat {
+
+    private BinaryFormat() {
+    }
+
+    /**
+     * Restituisce il codice di una funzione di hash.
+     *
+     * @param hashFunction
+     *                         la funzione di hash.
+     * @return 1 per MD5, 2 per SHA-256, 3 per MurmurHash3.
+     * @throws IllegalArgumentException
+     *                                      se la funzione non è una di
+     *                                      quelle fornite da
+     *                                      {@link HashFunction}.
+     */
+    static byte idOf(HashFunction hashFunction) {
+        if (hashFunction == HashFunction.MD5)
+            return 1;
+        if (hashFunction == HashFunction.SHA256)
+            return 2;
+        if (hashFunction == HashFunction.MURMUR3_128)
+            return 3;
+        throw new IllegalArgumentException(
+                "No binary encoding for hash function " + hashFunction.getName());
+    }
+
+    /**
+     * Restituisce la funzione di hash con il codice fornito.
+     *
+     * @param id
+     *               il codice della funzione.
+     * @return la funzione di hash.
+     * @throws IllegalArgumentException
+     *                                      se il codice non è valido.
+     */
+    static HashFunction hashFunction(int id) {
+        switch (id) {
+        case 1:
+            return HashFunction.MD5;
+        case 2:
+            return HashFunction.SHA256;
+        case 3:
+            return HashFunction.MURMUR3_128;
+        default:
+            throw new IllegalArgumentException("Unknown hash function id: " + id);
+        }
+    }
+
+    /**
+     * Restituisce il codice di una modalità di concatenazione.
+     *
+     * @param concatenation
+     *                          la modalità di concatenazione.
+     * @return 0 per {@link Concatenation#HEX}, 1 per
+     *         {@link Concatenation#BINARY}.
+     */
+    static byte idOf(Concatenation concatenation) {
+        return concatenation == Concatenation.HEX ? (byte) 0 : (byte) 1;
+    }
+
+    /**
+     * Restituisce la modalità di concatenazione con il codice fornito.
+     *
+     * @param id
+     *               il codice della modalità.
+     * @return la modalità di concatenazione.
+     * @throws IllegalArgumentException
+     *                                      se il codice non è valido.
+     */
+    static Concatenation concatenation(int id) {
+        if (id == 0)
+            return Concatenation.HEX;
+        if (id == 1)
+            return Concatenation.BINARY;
+        throw new IllegalArgumentException("Unknown concatenation id: " + id);
+    }
+}
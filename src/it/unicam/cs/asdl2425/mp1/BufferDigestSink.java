@@ -0,0 +1,72 @@
+package it.unicam.cs.asdl2425.mp1;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Destinazione che accumula i byte scritti in un array riutilizzato, usata
+ * dalle funzioni di hash che non possono essere aggiornate in modo
+ * incrementale.
+ *
+ * @author **JULIANO, SINAJ, juliano.sinaj@studenti.unicam.it**
+ */
+final class BufferDigestSink extends AbstractDigestSink {
+    private static final ThreadLocal<BufferDigestSink> LOCAL = ThreadLocal
+            .withInitial(BufferDigestSink::new);
+
+    private byte[] buffer = new byte[64];
+    private int size;
+
+    /**
+     * Restituisce la destinazione riutilizzata dal thread corrente.
+     *
+     * @return la destinazione del thread corrente.
+     */
+    static BufferDigestSink local() {
+        return LOCAL.get();
+    }
+
+    /**
+     * Svuota la destinazione mantenendo l'array allocato.
+     */
+    void reset() {
+        size = 0;
+    }
+
+    byte[] buffer() {
+        return buffer;
+    }
+
+    int size() {
+        return size;
+    }
+
+    private void ensure(int extra) {
+        if (size + extra > buffer.length)
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, size + extra));
+    }
+
+    @Override
+    public DigestSink putByte(byte b) {
+        ensure(1);
+        buffer[size++] = b;
+        return this;
+    }
+
+    @Override
+    public DigestSink putBytes(byte[] bytes, int offset, int length) {
+        ensure(length);
+        System.arraycopy(bytes, offset, buffer, size, length);
+        size += length;
+        return this;
+    }
+
+    @Override
+    public DigestSink putBytes(ByteBuffer from) {
+        int length = from.remaining();
+        ensure(length);
+        from.get(from.position(), buffer, size, length);
+        size += length;
+        return this;
+    }
+}
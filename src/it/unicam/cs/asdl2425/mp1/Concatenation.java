@@ -0,0 +1,72 @@
+package it.unicam.cs.asdl2425.mp1;
+
+/**
+ * Modalità con cui gli hash di due nodi fratelli vengono concatenati prima di
+ * calcolare l'hash del nodo padre.
+ *
+ * @author **JULIANO, SINAJ, juliano.sinaj@studenti.unicam.it**
+ */
+public enum Concatenation {
+
+    /**
+     * Concatena le rappresentazioni esadecimali dei due hash, codificate in
+     * ASCII. È la modalità predefinita, compatibile con gli hash calcolati
+     * concatenando le stringhe restituite da {@link HashUtil#computeMD5}.
+     */
+    HEX,
+
+    /**
+     * Concatena direttamente i byte dei due hash, dimezzando la quantità di
+     * dati su cui viene calcolato l'hash del nodo padre.
+     */
+    BINARY;
+
+    /**
+     * Restituisce il numero di byte con cui un digest viene codificato in
+     * questa modalità.
+     *
+     * @param digest
+     *                   il digest da codificare.
+     * @return il numero di byte della codifica.
+     */
+    int encodedLength(Digest digest) {
+        return this == HEX ? digest.length() * 2 : digest.length();
+    }
+
+    /**
+     * Scrive la codifica di un digest in un array di byte.
+     *
+     * @param digest
+     *                   il digest da codificare.
+     * @param dst
+     *                   l'array di destinazione.
+     * @param offset
+     *                   la posizione del primo byte.
+     * @return il numero di byte scritti.
+     */
+    int write(Digest digest, byte[] dst, int offset) {
+        return this == HEX ? digest.writeHex(dst, offset)
+                : digest.writeBytes(dst, offset);
+    }
+
+    /**
+     * Scrive la codifica di un digest memorizzato come parole in un array di
+     * long.
+     *
+     * @param words
+     *                      l'array di long.
+     * @param offset
+     *                      la posizione della prima parola.
+     * @param count
+     *                      il numero di parole.
+     * @param dst
+     *                      l'array di destinazione.
+     * @param dstOffset
+     *                      la posizione del primo byte.
+     * @return il numero di byte scritti.
+     */
+    int write(long[] words, int offset, int count, byte[] dst, int dstOffset) {
+        return this == HEX ? Digest.writeHex(words, offset, count, dst, dstOffset)
+                : Digest.writeBytes(words, offset, count, dst, dstOffset);
+    }
+}
@@ -0,0 +1,351 @@
+package it.unicam.cs.asdl2425.mp1;
+
+/**
+ * Rappresenta in forma binaria il valore di un hash crittografico di 16 o 32
+ * byte. I byte sono mantenuti in due o quattro campi {@code long} in ordine
+ * big-endian, per cui confronti e calcolo dell'hashCode non richiedono
+ * allocazioni. La rappresentazione esadecimale viene prodotta solo quando
+ * richiesta da {@link #toString()}.
+ *
+ * <p>
+ * Il digest vuoto {@link #EMPTY}, di lunghezza 0, rappresenta l'hash dei nodi
+ * di padding di un albero di Merkle e corrisponde alla stringa vuota.
+ *
+ * @author **JULIANO, SINAJ, juliano.sinaj@studenti.unicam.it**
+ */
+public final class Digest {
+
+    /**
+     * Il digest vuoto, usato per i nodi di padding.
+     */
+    public static final Digest EMPTY = new Digest(0, 0, 0, 0, 0);
+
+    private static final char[] DIGITS = "0123456789abcdef".toCharArray();
+
+    private final long w0, w1, w2, w3; // I byte del digest, big-endian
+    private final int length; // Lunghezza del digest in byte
+
+    private Digest(int length, long w0, long w1, long w2, long w3) {
+        this.length = length;
+        this.w0 = w0;
+        this.w1 = w1;
+        this.w2 = w2;
+        this.w3 = w3;
+    }
+
+    /**
+     * Costruisce un digest a partire dai suoi byte.
+     *
+     * @param bytes
+     *                  i byte del digest, 0, 16 o 32.
+     * @return il digest corrispondente.
+     * @throws IllegalArgumentException
+     *                                      se la lunghezza non è supportata.
+     */
+    public static Digest of(byte[] bytes) {
+        return of(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Costruisce un digest a partire da una porzione di un array di byte.
+     *
+     * @param src
+     *                   l'array contenente il digest.
+     * @param offset
+     *                   la posizione del primo byte.
+     * @param length
+     *                   il numero di byte, 0, 16 o 32.
+     * @return il digest corrispondente.
+     * @throws IllegalArgumentException
+     *                                      se la lunghezza non è supportata.
+     */
+    public static Digest of(byte[] src, int offset, int length) {
+        checkLength(length);
+        if (length == 0)
+            return EMPTY;
+        long[] w = new long[4];
+        for (int i = 0; i < length / 8; i++)
+            w[i] = readLong(src, offset + i * 8);
+        return new Digest(length, w[0], w[1], w[2], w[3]);
+    }
+
+    /**
+     * Costruisce un digest a partire dalla sua rappresentazione esadecimale.
+     * La stringa vuota corrisponde a {@link #EMPTY}.
+     *
+     * @param hex
+     *                la rappresentazione esadecimale del digest.
+     * @return il digest corrispondente.
+     * @throws IllegalArgumentException
+     *                                      se la stringa non è un digest
+     *                                      esadecimale valido.
+     */
+    public static Digest fromHex(String hex) {
+        Digest digest = tryFromHex(hex);
+        if (digest == null)
+            throw new IllegalArgumentException("Not a valid hex digest: " + hex);
+        return digest;
+    }
+
+    /**
+     * Come {@link #fromHex(String)}, ma restituisce null se la stringa non è
+     * un digest esadecimale valido.
+     *
+     * @param hex
+     *                la rappresentazione esadecimale del digest.
+     * @return il digest corrispondente, o null.
+     */
+    static Digest tryFromHex(String hex) {
+        if (hex == null)
+            return null;
+        int length = hex.length() / 2;
+        if (hex.length() % 2 != 0
+                || (length != 0 && length != 16 && length != 32))
+            return null;
+        if (length == 0)
+            return EMPTY;
+        long[] w = new long[4];
+        for (int i = 0; i < hex.length(); i++) {
+            int d = Character.digit(hex.charAt(i), 16);
+            if (d < 0)
+                return null;
+            w[i / 16] = (w[i / 16] << 4) | d;
+        }
+        return new Digest(length, w[0], w[1], w[2], w[3]);
+    }
+
+    /**
+     * Legge un digest memorizzato in un array di long.
+     *
+     * @param src
+     *                   l'array di long.
+     * @param offset
+     *                   la posizione della prima parola.
+     * @param words
+     *                   il numero di parole, 2 o 4.
+     * @return il digest letto.
+     */
+    static Digest read(long[] src, int offset, int words) {
+        if (words == 2)
+            return new Digest(16, src[offset], src[offset + 1], 0, 0);
+        return new Digest(32, src[offset], src[offset + 1], src[offset + 2],
+                src[offset + 3]);
+    }
+
+    /**
+     * Scrive le parole del digest in un array di long.
+     *
+     * @param dst
+     *                   l'array di destinazione.
+     * @param offset
+     *                   la posizione della prima parola.
+     */
+    void write(long[] dst, int offset) {
+        int words = length / 8;
+        for (int i = 0; i < words; i++)
+            dst[offset + i] = word(i);
+    }
+
+    /**
+     * Restituisce la lunghezza del digest in byte.
+     *
+     * @return la lunghezza del digest in byte.
+     */
+    public int length() {
+        return length;
+    }
+
+    /**
+     * Restituisce true se il digest è vuoto.
+     *
+     * @return true se il digest è vuoto, false altrimenti.
+     */
+    public boolean isEmpty() {
+        return length == 0;
+    }
+
+    /**
+     * Restituisce la parola di 64 bit in una data posizione.
+     *
+     * @param i
+     *              la posizione della parola, da 0 a 3.
+     * @return la parola richiesta.
+     */
+    long word(int i) {
+        switch (i) {
+        case 0:
+            return w0;
+        case 1:
+            return w1;
+        case 2:
+            return w2;
+        default:
+            return w3;
+        }
+    }
+
+    /**
+     * Restituisce una copia dei byte del digest.
+     *
+     * @return i byte del digest.
+     */
+    public byte[] toByteArray() {
+        byte[] bytes = new byte[length];
+        writeBytes(bytes, 0);
+        return bytes;
+    }
+
+    /**
+     * Scrive i byte del digest in un array.
+     *
+     * @param dst
+     *                   l'array di destinazione.
+     * @param offset
+     *                   la posizione del primo byte.
+     * @return il numero di byte scritti.
+     */
+    int writeBytes(byte[] dst, int offset) {
+        for (int i = 0; i < length / 8; i++)
+            putLong(word(i), dst, offset + i * 8);
+        return length;
+    }
+
+    /**
+     * Scrive la rappresentazione esadecimale del digest, in caratteri ASCII,
+     * in un array di byte.
+     *
+     * @param dst
+     *                   l'array di destinazione.
+     * @param offset
+     *                   la posizione del primo carattere.
+     * @return il numero di byte scritti.
+     */
+    int writeHex(byte[] dst, int offset) {
+        for (int i = 0; i < length / 8; i++)
+            putHex(word(i), dst, offset + i * 16);
+        return length * 2;
+    }
+
+    /**
+     * Scrive in un array di byte un digest memorizzato come parole in un
+     * array di long, senza costruire un oggetto Digest.
+     *
+     * @param words
+     *                      l'array di long.
+     * @param offset
+     *                      la posizione della prima parola.
+     * @param count
+     *                      il numero di parole.
+     * @param dst
+     *                      l'array di destinazione.
+     * @param dstOffset
+     *                      la posizione del primo byte.
+     * @return il numero di byte scritti.
+     */
+    static int writeBytes(long[] words, int offset, int count, byte[] dst,
+            int dstOffset) {
+        for (int i = 0; i < count; i++)
+            putLong(words[offset + i], dst, dstOffset + i * 8);
+        return count * 8;
+    }
+
+    /**
+     * Scrive in un array di byte la rappresentazione esadecimale ASCII di un
+     * digest memorizzato come parole in un array di long.
+     *
+     * @param words
+     *                      l'array di long.
+     * @param offset
+     *                      la posizione della prima parola.
+     * @param count
+     *                      il numero di parole.
+     * @param dst
+     *                      l'array di destinazione.
+     * @param dstOffset
+     *                      la posizione del primo carattere.
+     * @return il numero di byte scritti.
+     */
+    static int writeHex(long[] words, int offset, int count, byte[] dst,
+            int dstOffset) {
+        for (int i = 0; i < count; i++)
+            putHex(words[offset + i], dst, dstOffset + i * 16);
+        return count * 16;
+    }
+
+    /**
+     * Legge i byte di un digest come parole big-endian in un array di long.
+     *
+     * @param src
+     *                      l'array contenente il digest.
+     * @param offset
+     *                      la posizione del primo byte.
+     * @param count
+     *                      il numero di parole da leggere.
+     * @param dst
+     *                      l'array di destinazione.
+     * @param dstOffset
+     *                      la posizione della prima parola.
+     */
+    static void readWords(byte[] src, int offset, int count, long[] dst,
+            int dstOffset) {
+        for (int i = 0; i < count; i++)
+            dst[dstOffset + i] = readLong(src, offset + i * 8);
+    }
+
+    private static void putLong(long w, byte[] dst, int offset) {
+        for (int b = 7; b >= 0; b--) {
+            dst[offset + b] = (byte) w;
+            w >>>= 8;
+        }
+    }
+
+    private static void putHex(long w, byte[] dst, int offset) {
+        for (int c = 15; c >= 0; c--) {
+            dst[offset + c] = (byte) DIGITS[(int) (w & 0xf)];
+            w >>>= 4;
+        }
+    }
+
+    @Override
+    public String toString() {
+        char[] hex = new char[length * 2];
+        for (int i = 0; i < length / 8; i++) {
+            long w = word(i);
+            for (int c = 15; c >= 0; c--) {
+                hex[i * 16 + c] = DIGITS[(int) (w & 0xf)];
+                w >>>= 4;
+            }
+        }
+        return new String(hex);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj)
+            return true;
+        if (!(obj instanceof Digest))
+            return false;
+        Digest other = (Digest) obj;
+        return length == other.length && w0 == other.w0 && w1 == other.w1
+                && w2 == other.w2 && w3 == other.w3;
+    }
+
+    @Override
+    public int hashCode() {
+        // i byte di un digest sono già distribuiti uniformemente
+        return (int) (w0 ^ (w0 >>> 32));
+    }
+
+    private static void checkLength(int length) {
+        if (length != 0 && length != 16 && length != 32)
+            throw new IllegalArgumentException(
+                    "Unsupported digest length: " + length);
+    }
+
+    private static long readLong(byte[] src, int offset) {
+        long w = 0;
+        for (int b = 0; b < 8; b++)
+            w = (w << 8) | (src[offset + b] & 0xff);
+        return w;
+    }
+}
@@ -0,0 +1,166 @@
+package it.unicam.cs.asdl2425.mp1;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Cache limitata degli hash dei dati, indicizzata dall'{@code int} restituito
+ * da {@code hashCode()}. Poiché {@link HashUtil#dataToDigest(Object)} calcola
+ * l'hash dei soli quattro byte di {@code hashCode()}, il risultato dipende
+ * solo da quell'intero e può essere riutilizzato per tutti i dati con lo
+ * stesso valore.
+ *
+ * <p>
+ * La cache è associativa a insiemi: ogni chiave può occupare una delle
+ * {@value #WAYS} posizioni del suo insieme, e quando l'insieme è pieno viene
+ * sostituita la prima voce non usata di recente secondo l'algoritmo CLOCK. Le
+ * letture non acquisiscono lock; scritture concorrenti sullo stesso insieme
+ * possono al più perdere una voce, che verrà ricalcolata. I contatori di
+ * successi e fallimenti permettono di dimensionare la cache.
+ *
+ * @author **JULIANO, SINAJ, juliano.sinaj@studenti.unicam.it**
+ */
+public final class DigestCache {
+
+    /**
+     * Numero di posizioni per insieme.
+     */
+    private static final int WAYS = 4;
+
+    private final HashFunction hashFunction;
+    private final AtomicReferenceArray<Entry> entries;
+    private final int[] hands; // Prossima posizione da valutare per insieme
+    private final int setMask;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    private static final class Entry {
+        final int key;
+        final Digest digest;
+        volatile boolean referenced; // Usata dall'ultimo passaggio di CLOCK
+
+        Entry(int key, Digest digest) {
+            this.key = key;
+            this.digest = digest;
+        }
+    }
+
+    /**
+     * Crea una cache per la funzione di hash fornita.
+     *
+     * @param capacity
+     *                         il numero massimo di voci, arrotondato alla
+     *                         potenza di due successiva.
+     * @param hashFunction
+     *                         la funzione di hash dei dati.
+     * @throws IllegalArgumentException
+     *                                      se la capacità non è positiva o la
+     *                                      funzione è null.
+     */
+    public DigestCache(int capacity, HashFunction hashFunction) {
+        if (capacity < 1 || capacity > 1 << 30)
+            throw new IllegalArgumentException("Invalid capacity: " + capacity);
+        if (hashFunction == null)
+            throw new IllegalArgumentException("The hash function is null");
+        int sets = Math.max(1, Integer.highestOneBit(capacity - 1) * 2 / WAYS);
+        this.hashFunction = hashFunction;
+        this.entries = new AtomicReferenceArray<>(sets * WAYS);
+        this.hands = new int[sets];
+        this.setMask = sets - 1;
+    }
+
+    /**
+     * Restituisce l'hash dei quattro byte di un {@code hashCode()},
+     * calcolandolo e memorizzandolo se non presente.
+     *
+     * @param hashCode
+     *                     il valore di {@code hashCode()} del dato.
+     * @return l'hash corrispondente.
+     */
+    public Digest get(int hashCode) {
+        int base = set(hashCode) * WAYS;
+        for (int w = 0; w < WAYS; w++) {
+            Entry entry = entries.get(base + w);
+            if (entry != null && entry.key == hashCode) {
+                if (!entry.referenced)
+                    entry.referenced = true;
+                hits.increment();
+                return entry.digest;
+            }
+        }
+        misses.increment();
+        Digest digest = hashFunction.hash(HashUtil.intToBytes(hashCode));
+        insert(base, new Entry(hashCode, digest));
+        return digest;
+    }
+
+    /**
+     * Inserisce una voce nella prima posizione libera o non usata di recente
+     * dell'insieme, azzerando i riferimenti delle voci saltate.
+     */
+    private void insert(int base, Entry entry) {
+        int set = base / WAYS;
+        int hand = hands[set];
+        for (int step = 0; step < 2 * WAYS; step++) {
+            int w = (hand + step) & (WAYS - 1);
+            Entry current = entries.get(base + w);
+            if (current == null || !current.referenced) {
+                entries.set(base + w, entry);
+                hands[set] = (w + 1) & (WAYS - 1);
+                return;
+            }
+            current.referenced = false;
+        }
+    }
+
+    private int set(int key) {
+        int h = key * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & setMask;
+    }
+
+    /**
+     * Restituisce la funzione di hash della cache.
+     *
+     * @return la funzione di hash.
+     */
+    public HashFunction getHashFunction() {
+        return hashFunction;
+    }
+
+    /**
+     * Restituisce il numero massimo di voci.
+     *
+     * @return la capacità della cache.
+     */
+    public int getCapacity() {
+        return entries.length();
+    }
+
+    /**
+     * Restituisce il numero di richieste servite dalla cache.
+     *
+     * @return il numero di successi.
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * Restituisce il numero di richieste per cui l'hash è stato calcolato.
+     *
+     * @return il numero di fallimenti.
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * Svuota la cache e azzera i contatori.
+     */
+    public void clear() {
+        for (int i = 0; i < entries.length(); i++)
+            entries.set(i, null);
+        hits.reset();
+        misses.reset();
+    }
+}
@@ -0,0 +1,74 @@
+package it.unicam.cs.asdl2425.mp1;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Classe di test per la classe {@link DigestCache}. Questa classe verifica la
+ * cache degli hash dei dati indicizzata dal loro hashCode.
+ * Di seguito, l'elenco dei test inclusi con una breve descrizione:
+ *
+ * <ul>
+ * <li>{@link #testSameDigests()}: Verifica che la cache restituisca gli stessi
+ * hash del calcolo diretto e conti successi e fallimenti.</li>
+ *
+ * <li>{@link #testBounded()}: Verifica che la cache non superi la sua capacità
+ * e che le voci usate di recente sopravvivano alle sostituzioni.</li>
+ *
+ * <li>{@link #testHashUtilCache()}: Verifica che {@link HashUtil} usi la cache
+ * impostata solo per la sua funzione di hash.</li>
+ * </ul>
+ */
+class DigestCacheTest {
+
+    @Test
+    void testSameDigests() {
+        DigestCache cache = new DigestCache(64, HashFunction.MD5);
+        for (int i = 0; i < 10; i++)
+            assertEquals(HashFunction.MD5.hash(HashUtil.intToBytes(i)), cache.get(i),
+                    "L'hash in cache dovrebbe coincidere con quello calcolato.");
+        for (int i = 0; i < 10; i++)
+            cache.get(i);
+        assertEquals(10, cache.getMisses(), "Dovrebbero esserci 10 fallimenti.");
+        assertEquals(10, cache.getHits(), "Dovrebbero esserci 10 successi.");
+        cache.clear();
+        assertEquals(0, cache.getHits(), "I contatori dovrebbero essere azzerati.");
+    }
+
+    @Test
+    void testBounded() {
+        DigestCache cache = new DigestCache(4, HashFunction.MD5);
+        assertEquals(4, cache.getCapacity(), "La capacità dovrebbe essere 4.");
+        for (int i = 0; i < 4; i++)
+            cache.get(i);
+        cache.get(0); // la voce 0 viene marcata come usata
+        cache.get(100);
+        long misses = cache.getMisses();
+        cache.get(0);
+        assertEquals(misses, cache.getMisses(),
+                "La voce usata di recente non dovrebbe essere stata sostituita.");
+        for (int i = 0; i < 1000; i++)
+            assertEquals(HashFunction.MD5.hash(HashUtil.intToBytes(i)), cache.get(i),
+                    "L'hash restituito non è corretto dopo le sostituzioni.");
+    }
+
+    @Test
+    void testHashUtilCache() {
+        DigestCache cache = new DigestCache(16, HashFunction.MD5);
+        String expected = HashUtil.dataToHash("Alice paga Bob");
+        try {
+            HashUtil.setDigestCache(cache);
+            assertEquals(expected, HashUtil.dataToHash("Alice paga Bob"),
+                    "L'hash con la cache non è corretto.");
+            assertEquals(expected, HashUtil.dataToHash("Alice paga Bob"),
+                    "L'hash dalla cache non è corretto.");
+            assertEquals(1, cache.getHits(), "Dovrebbe esserci un successo.");
+            HashUtil.dataToDigest("Alice paga Bob", HashFunction.SHA256);
+            assertEquals(2, cache.getMisses() + cache.getHits(),
+                    "Un'altra funzione di hash non dovrebbe usare la cache.");
+        } finally {
+            HashUtil.setDigestCache(null);
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package it.unicam.cs.asdl2425.mp1;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Destinazione in cui un {@link Funnel} scrive il contenuto di un oggetto di
+ * cui calcolare l'hash. I byte scritti vengono passati direttamente alla
+ * funzione di hash, senza costruire una rappresentazione intermedia
+ * dell'oggetto. I valori numerici sono scritti in ordine big-endian.
+ *
+ * <p>
+ * Una destinazione è valida solo durante la chiamata a
+ * {@link Funnel#funnel(Object, DigestSink)} che la riceve e non deve essere
+ * conservata.
+ *
+ * @author **JULIANO, SINAJ, juliano.sinaj@studenti.unicam.it**
+ */
+public interface DigestSink {
+
+    /**
+     * Scrive un byte.
+     *
+     * @param b
+     *              il byte da scrivere.
+     * @return questa destinazione.
+     */
+    DigestSink putByte(byte b);
+
+    /**
+     * Scrive una porzione di un array di byte.
+     *
+     * @param bytes
+     *                   l'array di byte.
+     * @param offset
+     *                   la posizione del primo byte.
+     * @param length
+     *                   il numero di byte da scrivere.
+     * @return questa destinazione.
+     */
+    DigestSink putBytes(byte[] bytes, int offset, int length);
+
+    /**
+     * Scrive i byte rimanenti di un buffer, dalla posizione al limite, senza
+     * modificarne la posizione.
+     *
+     * @param buffer
+     *                   il buffer da scrivere.
+     * @return questa destinazione.
+     */
+    DigestSink putBytes(ByteBuffer buffer);
+
+    /**
+     * Scrive un array di byte.
+     *
+     * @param bytes
+     *                  l'array di byte.
+     * @return questa destinazione.
+     */
+    default DigestSink putBytes(byte[] bytes) {
+        return putBytes(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Scrive un valore booleano come un byte, 1 o 0.
+     *
+     * @param b
+     *              il valore da scrivere.
+     * @return questa destinazione.
+     */
+    default DigestSink putBoolean(boolean b) {
+        return putByte(b ? (byte) 1 : (byte) 0);
+    }
+
+    /**
+     * Scrive un carattere come due byte.
+     *
+     * @param c
+     *              il carattere da scrivere.
+     * @return questa destinazione.
+     */
+    DigestSink putChar(char c);
+
+    /**
+     * Scrive un intero come quattro byte.
+     *
+     * @param i
+     *              l'intero da scrivere.
+     * @return questa destinazione.
+     */
+    DigestSink putInt(int i);
+
+    /**
+     * Scrive un long come otto byte.
+     *
+     * @param l
+     *              il long da scrivere.
+     * @return questa destinazione.
+     */
+    DigestSink putLong(long l);
+
+    /**
+     * Scrive un double come gli otto byte della sua rappresentazione IEEE 754.
+     *
+     * @param d
+     *              il double da scrivere.
+     * @return questa destinazione.
+     */
+    default DigestSink putDouble(double d) {
+        return putLong(Double.doubleToRawLongBits(d));
+    }
+
+    /**
+     * Scrive i caratteri di una sequenza, due byte per carattere, senza
+     * codificarli in un array intermedio.
+     *
+     * @param chars
+     *                  la sequenza di caratteri.
+     * @return questa destinazione.
+     */
+    default DigestSink putChars(CharSequence chars) {
+        for (int i = 0; i < chars.length(); i++)
+            putChar(chars.charAt(i));
+        return this;
+    }
+}
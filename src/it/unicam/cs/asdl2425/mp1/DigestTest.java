@@ -0,0 +1,100 @@
+package it.unicam.cs.asdl2425.mp1;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Classe di test per la classe {@link Digest}. Questa classe verifica la
+ * rappresentazione binaria degli hash e la loro conversione da e verso la
+ * forma esadecimale.
+ * Di seguito, l'elenco dei test inclusi con una breve descrizione:
+ *
+ * <ul>
+ * <li>{@link #testHexRoundTrip()}: Verifica che la conversione da e verso la
+ * forma esadecimale non alteri l'hash.</li>
+ *
+ * <li>{@link #testBytesRoundTrip()}: Verifica che la conversione da e verso
+ * un array di byte non alteri l'hash, anche per digest di 32 byte.</li>
+ *
+ * <li>{@link #testEmpty()}: Verifica che il digest vuoto corrisponda alla
+ * stringa vuota.</li>
+ *
+ * <li>{@link #testInvalidHex()}: Verifica che venga lanciata un'eccezione per
+ * una stringa che non rappresenta un digest.</li>
+ *
+ * <li>{@link #testEqualsAndHashCode()}: Verifica che digest con gli stessi
+ * byte siano uguali e abbiano lo stesso hashCode.</li>
+ *
+ * <li>{@link #testBinaryConcatenation()}: Verifica che la concatenazione
+ * binaria calcoli l'hash sui byte dei figli.</li>
+ * </ul>
+ */
+class DigestTest {
+
+    @Test
+    void testHexRoundTrip() {
+        String hex = HashUtil.computeMD5("Hello, World!".getBytes());
+        Digest digest = Digest.fromHex(hex);
+        assertEquals(16, digest.length(), "Un hash MD5 dovrebbe avere 16 byte.");
+        assertEquals(hex, digest.toString(),
+                "La forma esadecimale non corrisponde a quella originale.");
+    }
+
+    @Test
+    void testBytesRoundTrip() {
+        byte[] bytes = new byte[32];
+        for (int i = 0; i < bytes.length; i++)
+            bytes[i] = (byte) (i * 37);
+        Digest digest = Digest.of(bytes);
+        assertEquals(32, digest.length(), "Il digest dovrebbe avere 32 byte.");
+        assertArrayEquals(bytes, digest.toByteArray(),
+                "I byte del digest non corrispondono a quelli originali.");
+        assertEquals(digest, Digest.fromHex(digest.toString()),
+                "Il digest dovrebbe sopravvivere alla forma esadecimale.");
+    }
+
+    @Test
+    void testEmpty() {
+        assertTrue(Digest.EMPTY.isEmpty(), "Il digest vuoto dovrebbe essere vuoto.");
+        assertEquals("", Digest.EMPTY.toString(),
+                "Il digest vuoto dovrebbe corrispondere alla stringa vuota.");
+        assertSame(Digest.EMPTY, Digest.fromHex(""),
+                "La stringa vuota dovrebbe corrispondere al digest vuoto.");
+    }
+
+    @Test
+    void testInvalidHex() {
+        assertThrows(IllegalArgumentException.class,
+                () -> Digest.fromHex("HashNonValido"),
+                "Dovrebbe lanciare IllegalArgumentException per un hash non valido.");
+        assertNull(Digest.tryFromHex("zz" + "0".repeat(30)),
+                "Una stringa con caratteri non esadecimali non è un digest.");
+    }
+
+    @Test
+    void testEqualsAndHashCode() {
+        Digest d1 = HashUtil.dataToDigest("Alice paga Bob");
+        Digest d2 = Digest.fromHex(HashUtil.dataToHash("Alice paga Bob"));
+        assertEquals(d1, d2, "Digest con gli stessi byte dovrebbero essere uguali.");
+        assertEquals(d1.hashCode(), d2.hashCode(),
+                "Digest uguali dovrebbero avere lo stesso hashCode.");
+        assertNotEquals(d1, HashUtil.dataToDigest("Bob paga Charlie"),
+                "Digest diversi non dovrebbero essere uguali.");
+    }
+
+    @Test
+    void testBinaryConcatenation() {
+        Digest left = HashUtil.dataToDigest("Alice paga Bob");
+        Digest right = HashUtil.dataToDigest("Bob paga Charlie");
+        byte[] input = new byte[32];
+        System.arraycopy(left.toByteArray(), 0, input, 0, 16);
+        System.arraycopy(right.toByteArray(), 0, input, 16, 16);
+        assertEquals(HashUtil.md5(input),
+                HashUtil.combine(left, right, Concatenation.BINARY),
+                "La concatenazione binaria non è corretta.");
+        assertEquals(HashUtil.computeMD5((left.toString() + right.toString()).getBytes()),
+                HashUtil.combine(left, right, Concatenation.HEX).toString(),
+                "La concatenazione esadecimale non è corretta.");
+    }
+}
@@ -0,0 +1,372 @@
+package it.unicam.cs.asdl2425.mp1;
+
+import java.util.Arrays;
+
+/**
+ * Indice immutabile dagli hash delle foglie di un albero di Merkle alle loro
+ * posizioni, basato su una funzione di hash perfetta quasi minimale
+ * costruita con la tecnica "hash and displace". Gli hash distinti delle
+ * foglie vengono divisi in secchi di pochi elementi; per ogni secchio viene
+ * cercato uno spostamento che porti tutti i suoi hash in posizioni libere
+ * di una tabella con l'1% di posizioni in più degli hash distinti. Senza
+ * posizioni di scorta gli ultimi secchi dovrebbero provare in media tanti
+ * spostamenti quanti sono gli hash, e la costruzione di indici di decine di
+ * milioni di foglie fallirebbe quasi sempre.
+ *
+ * <p>
+ * L'indice non memorizza gli hash: la tabella contiene solo la posizione
+ * della prima foglia con quell'hash, e un hash cercato viene confrontato con
+ * quello memorizzato nei livelli dell'albero per respingere quelli non
+ * presenti. Spostamenti e posizioni sono memorizzati con il numero minimo di
+ * bit, ovvero {@code log2(width)} bit per posizione e pochi bit per secchio:
+ * con foglie distinte e hash MD5 l'indice occupa circa 2,2 byte per foglia
+ * con 10 mila foglie, 3,0 con un milione e 3,2 con quattro milioni, da 16 a
+ * 11 volte meno dei circa 35 byte per foglia di {@link LeafIndex}. Le
+ * posizioni successive degli hash ripetuti sono mantenute a parte, ordinate
+ * per posizione nella tabella, con pochi byte per ripetizione
+ * indipendentemente da dove si trovano nell'albero.
+ *
+ * @author **JULIANO, SINAJ, juliano.sinaj@studenti.unicam.it**
+ */
+final class FrozenLeafIndex implements LeafLookup {
+
+    /**
+     * Numero medio di hash per secchio.
+     */
+    private static final int BUCKET_SIZE = 4;
+
+    /**
+     * Numero massimo predefinito di spostamenti provati per un secchio prima
+     * di ricominciare con un altro seme.
+     */
+    private static final int MAX_DISPLACEMENT = 1 << 24;
+
+    /**
+     * Numero massimo di semi provati prima di rinunciare alla costruzione.
+     */
+    private static final int MAX_SEEDS = 32;
+
+    private final MerkleLevels levels; // Livelli dell'albero indicizzato
+    private final int size; // Numero di hash distinti
+    private final int slots; // Posizioni della tabella
+    private final int buckets;
+    private long seed;
+    private PackedInts displacements; // Spostamento per secchio
+    private final PackedInts positions; // Prima posizione per posizione della tabella
+    private final PackedInts repeatedSlots; // Posizione nella tabella, crescente
+    private final PackedInts repeatedPositions; // Posizione successiva della foglia
+    private final int repeated; // Numero di posizioni successive
+
+    /**
+     * Costruisce l'indice delle foglie di un albero.
+     *
+     * Gli hash ripetuti vengono riconosciuti in un solo passaggio sulle
+     * posizioni delle foglie ordinate per hash, in tempo O(n log n)
+     * indipendentemente dal numero di ripetizioni.
+     *
+     * @param levels
+     *                   i livelli dell'albero.
+     * @throws IllegalStateException
+     *                                   se nessuno dei semi provati porta a
+     *                                   una funzione di hash perfetta.
+     */
+    FrozenLeafIndex(MerkleLevels levels) {
+        this(levels, MAX_DISPLACEMENT);
+    }
+
+    /**
+     * Costruisce l'indice delle foglie di un albero provando al più il
+     * numero fornito di spostamenti per secchio.
+     */
+    FrozenLeafIndex(MerkleLevels levels, int maxDisplacement) {
+        this.levels = levels;
+        int width = levels.getWidth();
+        int words = levels.getHashFunction().getDigestLength() / 8;
+        long[] leaves = levels.levelArray(0);
+        int[] sorted = new int[width];
+        for (int i = 0; i < width; i++)
+            sorted[i] = i;
+        sortByDigest(sorted, leaves, words);
+        int[] keys = new int[width]; // prima posizione di ogni hash distinto
+        long[] pairs = new long[0]; // hash distinto e posizione delle ripetizioni
+        int n = 0;
+        int r = 0;
+        for (int k = 0; k < width; k++) {
+            int i = sorted[k];
+            if (k == 0 || compare(leaves, keys[n - 1], i, words) != 0) {
+                keys[n++] = i;
+            } else {
+                if (r == pairs.length)
+                    pairs = Arrays.copyOf(pairs, Math.max(16, r * 2));
+                pairs[r++] = (long) (n - 1) << 32 | i;
+            }
+        }
+        this.size = n;
+        this.slots = (int) ((long) n * 100 / 99) + 1;
+        this.buckets = Math.max(1, (n + BUCKET_SIZE - 1) / BUCKET_SIZE);
+        long[] first = new long[n];
+        long[] second = new long[n];
+        int[] slotOf = null;
+        for (long s = 1; slotOf == null; s++) {
+            if (s > MAX_SEEDS)
+                throw new IllegalStateException("No perfect hash found for " + n + " leaves");
+            for (int k = 0; k < n; k++) {
+                Digest digest = levels.getDigest(0, keys[k]);
+                first[k] = mix(digest.word(0) ^ s);
+                second[k] = mix(digest.word(1) + s);
+            }
+            slotOf = build(s, first, second, maxDisplacement);
+        }
+        this.positions = new PackedInts(slots, Math.max(0, width - 1));
+        for (int k = 0; k < n; k++)
+            positions.set(slotOf[k], keys[k]);
+        this.repeated = r;
+        this.repeatedSlots = new PackedInts(r, slots - 1);
+        this.repeatedPositions = new PackedInts(r, Math.max(0, width - 1));
+        //le ripetizioni vengono ordinate per posizione nella tabella, e a
+        //parità di posizione per posizione della foglia
+        for (int j = 0; j < r; j++)
+            pairs[j] = (long) slotOf[(int) (pairs[j] >>> 32)] << 32 | (pairs[j] & 0xFFFFFFFFL);
+        Arrays.sort(pairs, 0, r);
+        for (int j = 0; j < r; j++) {
+            repeatedSlots.set(j, (int) (pairs[j] >>> 32));
+            repeatedPositions.set(j, (int) pairs[j]);
+        }
+    }
+
+    /**
+     * Ordina le posizioni per hash con un merge sort stabile, per cui le
+     * posizioni dello stesso hash restano in ordine crescente.
+     */
+    private static void sortByDigest(int[] a, long[] leaves, int words) {
+        int n = a.length;
+        int[] from = a;
+        int[] to = new int[n];
+        for (int run = 1; run < n; run *= 2) {
+            for (int lo = 0; lo < n; lo += 2 * run) {
+                int mid = Math.min(lo + run, n);
+                int hi = Math.min(lo + 2 * run, n);
+                int i = lo, j = mid, k = lo;
+                while (i < mid && j < hi)
+                    to[k++] = compare(leaves, from[j], from[i], words) < 0 ? from[j++] : from[i++];
+                while (i < mid)
+                    to[k++] = from[i++];
+                while (j < hi)
+                    to[k++] = from[j++];
+            }
+            int[] t = from;
+            from = to;
+            to = t;
+        }
+        if (from != a)
+            System.arraycopy(from, 0, a, 0, n);
+    }
+
+    private static int compare(long[] leaves, int a, int b, int words) {
+        for (int w = 0; w < words; w++) {
+            int c = Long.compare(leaves[a * words + w], leaves[b * words + w]);
+            if (c != 0)
+                return c;
+        }
+        return 0;
+    }
+
+    /**
+     * Cerca uno spostamento per ogni secchio, dal più grande al più piccolo.
+     *
+     * @return la posizione nella tabella di ogni hash distinto, o null se un
+     *         secchio non ha trovato uno spostamento valido.
+     */
+    private int[] build(long seed, long[] first, long[] second, int maxDisplacement) {
+        int n = size;
+        //ordinamento dei secchi per dimensione decrescente, per conteggio
+        int[] bucketOf = new int[n];
+        int[] bucketSize = new int[buckets];
+        int maxSize = 0;
+        for (int k = 0; k < n; k++) {
+            bucketOf[k] = reduce(first[k], buckets);
+            maxSize = Math.max(maxSize, ++bucketSize[bucketOf[k]]);
+        }
+        int[] start = new int[buckets + 1];
+        for (int b = 0; b < buckets; b++)
+            start[b + 1] = start[b] + bucketSize[b];
+        int[] members = new int[n];
+        int[] fill = Arrays.copyOf(start, buckets);
+        for (int k = 0; k < n; k++)
+            members[fill[bucketOf[k]]++] = k;
+        int[] order = new int[buckets];
+        int[] bySize = new int[maxSize + 2];
+        for (int b = 0; b < buckets; b++)
+            bySize[maxSize - bucketSize[b] + 1]++;
+        for (int i = 1; i < bySize.length; i++)
+            bySize[i] += bySize[i - 1];
+        for (int b = 0; b < buckets; b++)
+            order[bySize[maxSize - bucketSize[b]]++] = b;
+
+        int[] displacement = new int[buckets];
+        int[] slotOf = new int[n];
+        boolean[] taken = new boolean[slots];
+        int[] chosen = new int[maxSize];
+        int largest = 0;
+        for (int b : order) {
+            int from = start[b];
+            int count = bucketSize[b];
+            if (count == 0)
+                break; // i secchi vuoti sono in fondo
+            int d = 0;
+            search: for (;; d++) {
+                if (d == maxDisplacement)
+                    return null;
+                for (int j = 0; j < count; j++) {
+                    int slot = slot(second[members[from + j]], d, slots);
+                    if (taken[slot])
+                        continue search;
+                    for (int i = 0; i < j; i++)
+                        if (chosen[i] == slot)
+                            continue search;
+                    chosen[j] = slot;
+                }
+                break;
+            }
+            for (int j = 0; j < count; j++) {
+                taken[chosen[j]] = true;
+                slotOf[members[from + j]] = chosen[j];
+            }
+            displacement[b] = d;
+            largest = Math.max(largest, d);
+        }
+        this.seed = seed;
+        this.displacements = new PackedInts(buckets, largest);
+        for (int b = 0; b < buckets; b++)
+            displacements.set(b, displacement[b]);
+        return slotOf;
+    }
+
+    /**
+     * Restituisce il numero di hash distinti indicizzati.
+     *
+     * @return il numero di hash distinti.
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Restituisce la memoria occupata dalle tabelle dell'indice, in byte,
+     * comprese le posizioni degli hash ripetuti.
+     *
+     * @return la memoria occupata in byte.
+     */
+    long memoryBytes() {
+        return displacements.memoryBytes() + positions.memoryBytes()
+                + repeatedSlots.memoryBytes() + repeatedPositions.memoryBytes();
+    }
+
+    @Override
+    public int first(Digest digest) {
+        if (size == 0 || digest.length() != levels.getHashFunction().getDigestLength())
+            return -1;
+        int position = positions.get(slotOf(digest));
+        //la funzione è perfetta solo sugli hash presenti: va verificato
+        return levels.hashEquals(0, position, digest) ? position : -1;
+    }
+
+    /**
+     * Restituisce la posizione nella tabella di un hash.
+     */
+    private int slotOf(Digest digest) {
+        int bucket = reduce(mix(digest.word(0) ^ seed), buckets);
+        int d = displacements.get(bucket);
+        return slot(mix(digest.word(1) + seed), d, slots);
+    }
+
+    @Override
+    public boolean contains(Digest digest) {
+        return first(digest) >= 0;
+    }
+
+    @Override
+    public int[] all(Digest digest) {
+        int first = first(digest);
+        if (first < 0)
+            return new int[0];
+        int slot = slotOf(digest);
+        int lo = 0, hi = repeated; // prima ripetizione con posizione >= slot
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (repeatedSlots.get(mid) < slot)
+                lo = mid + 1;
+            else
+                hi = mid;
+        }
+        int end = lo;
+        while (end < repeated && repeatedSlots.get(end) == slot)
+            end++;
+        int[] all = new int[end - lo + 1];
+        all[0] = first;
+        for (int j = lo; j < end; j++)
+            all[j - lo + 1] = repeatedPositions.get(j);
+        return all;
+    }
+
+    @Override
+    public int probeOrder(Digest digest) {
+        //gli spostamenti sono letti per secchio, le posizioni sparse
+        return digest.length() == 0 ? 0 : reduce(mix(digest.word(0) ^ seed), buckets);
+    }
+
+    private static int slot(long hash, int displacement, int n) {
+        return reduce(mix(hash + displacement * 0x9E3779B97F4A7C15L), n);
+    }
+
+    private static int reduce(long hash, int n) {
+        return (int) (((hash >>> 32) * n) >>> 32);
+    }
+
+    private static long mix(long x) {
+        //finalizzatore di MurmurHash3
+        x = (x ^ (x >>> 33)) * 0xff51afd7ed558ccdL;
+        x = (x ^ (x >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return x ^ (x >>> 33);
+    }
+
+    /**
+     * Array di interi non negativi memorizzati con un numero fisso di bit.
+     */
+    private static final class PackedInts {
+        private final long[] bits;
+        private final int width;
+
+        PackedInts(int length, int maxValue) {
+            this.width = 32 - Integer.numberOfLeadingZeros(maxValue);
+            this.bits = new long[(int) (((long) length * width + 63) >>> 6)];
+        }
+
+        void set(int i, int value) {
+            if (width == 0)
+                return;
+            long bit = (long) i * width;
+            int word = (int) (bit >>> 6);
+            int shift = (int) (bit & 63);
+            bits[word] |= (long) value << shift;
+            if (shift + width > 64)
+                bits[word + 1] |= (long) value >>> (64 - shift);
+        }
+
+        int get(int i) {
+            if (width == 0)
+                return 0;
+            long bit = (long) i * width;
+            int word = (int) (bit >>> 6);
+            int shift = (int) (bit & 63);
+            long value = bits[word] >>> shift;
+            if (shift + width > 64)
+                value |= bits[word + 1] << (64 - shift);
+            return (int) (value & ((1L << width) - 1));
+        }
+
+        long memoryBytes() {
+            return bits.length * 8L;
+        }
+    }
+}
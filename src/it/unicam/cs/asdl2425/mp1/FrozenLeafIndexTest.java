@@ -0,0 +1,108 @@
+package it.unicam.cs.asdl2425.mp1;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Classe di test per la classe {@link FrozenLeafIndex}. Questa classe verifica
+ * l'indice delle foglie basato su una funzione di hash perfetta quasi
+ * minimale.
+ * Di seguito, l'elenco dei test inclusi con una breve descrizione:
+ *
+ * <ul>
+ * <li>{@link #testLookup()}: Verifica che ogni hash presente venga trovato
+ * nella sua prima posizione e che gli hash non presenti vengano respinti.</li>
+ *
+ * <li>{@link #testRepeatedAndCompact()}: Verifica le posizioni degli hash
+ * ripetuti, anche con tutte le foglie uguali, e che l'indice occupi almeno dieci
+ * volte meno della tabella mutabile.</li>
+ *
+ * <li>{@link #testLoadFactor()}: Verifica che la tabella venga costruita con
+ * un limite di spostamenti molto minore del numero di hash, che con una
+ * tabella piena fallirebbe, e che la ricerca del seme sia limitata.</li>
+ *
+ * <li>{@link #testRepeatedNearEnd()}: Verifica che un hash ripetuto in fondo
+ * all'albero occupi pochi byte e che le ripetizioni siano contate nella
+ * memoria dell'indice.</li>
+ * </ul>
+ */
+class FrozenLeafIndexTest {
+
+    private static FrozenLeafIndex freeze(MerkleLevels levels) {
+        return new FrozenLeafIndex(levels);
+    }
+
+    private static MerkleLevels levels(int width, int distinct) {
+        int height = 32 - Integer.numberOfLeadingZeros(width - 1);
+        MerkleLevels levels = new MerkleLevels(width, height, Concatenation.HEX, HashFunction.MD5);
+        for (int i = 0; i < width; i++)
+            levels.setLeaf(i, HashUtil.dataToDigest(i % distinct));
+        levels.build();
+        return levels;
+    }
+
+    @Test
+    void testLookup() {
+        for (int width : new int[] { 1, 2, 7, 1000 }) {
+            FrozenLeafIndex index = freeze(levels(width, width));
+            assertEquals(width, index.size(), "Il numero di hash distinti non è corretto.");
+            for (int i = 0; i < width; i++)
+                assertEquals(i, index.first(HashUtil.dataToDigest(i)),
+                        "La posizione dell'hash " + i + " non è corretta.");
+            for (int i = width; i < width + 100; i++)
+                assertFalse(index.contains(HashUtil.dataToDigest(i)),
+                        "Un hash non presente dovrebbe essere respinto.");
+            assertFalse(index.contains(HashUtil.dataToDigest(0, HashFunction.SHA256)),
+                    "Un hash di lunghezza diversa dovrebbe essere respinto.");
+        }
+    }
+
+    @Test
+    void testRepeatedAndCompact() {
+        FrozenLeafIndex index = freeze(levels(10000, 2500));
+        assertEquals(2500, index.size(), "Dovrebbero esserci 2500 hash distinti.");
+        assertArrayEquals(new int[] { 3, 2503, 5003, 7503 }, index.all(HashUtil.dataToDigest(3)),
+                "Dovrebbero essere restituite tutte le posizioni dell'hash ripetuto.");
+        FrozenLeafIndex distinct = freeze(levels(10000, 10000));
+        assertTrue(distinct.memoryBytes() < 10000 * 8,
+                "L'indice dovrebbe occupare meno di 8 byte per foglia.");
+        LeafIndex mutable = new LeafIndex(2, 10000);
+        for (int i = 0; i < 10000; i++)
+            mutable.add(HashUtil.dataToDigest(i), i);
+        assertTrue(distinct.memoryBytes() * 10 < mutable.memoryBytes(),
+                "L'indice dovrebbe occupare almeno dieci volte meno della tabella mutabile.");
+        FrozenLeafIndex same = freeze(levels(100_000, 1));
+        assertEquals(1, same.size(), "Dovrebbe esserci un solo hash distinto.");
+        assertEquals(100_000, same.all(HashUtil.dataToDigest(0)).length,
+                "Dovrebbero essere restituite tutte le posizioni dell'hash ripetuto.");
+    }
+
+
+    @Test
+    void testLoadFactor() {
+        //stesso rapporto tra hash e spostamenti di 2^27 foglie con il limite predefinito
+        int width = 1 << 18;
+        FrozenLeafIndex index = new FrozenLeafIndex(levels(width, width), 1 << 15);
+        assertEquals(width, index.size(), "Il numero di hash distinti non è corretto.");
+        for (int i = 0; i < width; i += 97)
+            assertEquals(i, index.first(HashUtil.dataToDigest(i)),
+                    "La posizione dell'hash " + i + " non è corretta.");
+        assertThrows(IllegalStateException.class, () -> new FrozenLeafIndex(levels(10000, 10000), 1),
+                "La ricerca del seme dovrebbe terminare con un errore.");
+    }
+
+    @Test
+    void testRepeatedNearEnd() {
+        FrozenLeafIndex distinct = freeze(levels(10000, 10000));
+        FrozenLeafIndex index = freeze(levels(10000, 9999));
+        assertArrayEquals(new int[] { 0, 9999 }, index.all(HashUtil.dataToDigest(0)),
+                "Dovrebbero essere restituite entrambe le posizioni dell'hash ripetuto.");
+        assertEquals(1, index.all(HashUtil.dataToDigest(1)).length,
+                "Un hash non ripetuto dovrebbe avere una sola posizione.");
+        assertTrue(index.memoryBytes() < distinct.memoryBytes() + 64,
+                "Un hash ripetuto in fondo all'albero dovrebbe occupare pochi byte.");
+        assertTrue(freeze(levels(100_000, 1)).memoryBytes() > 99_999 * 2,
+                "Le posizioni ripetute dovrebbero essere contate nella memoria.");
+    }
+}
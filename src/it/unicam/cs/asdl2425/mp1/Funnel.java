@@ -0,0 +1,63 @@
+package it.unicam.cs.asdl2425.mp1;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Descrive come scrivere il contenuto di un oggetto in una
+ * {@link DigestSink}, in modo che l'hash di una foglia dipenda dai dati e non
+ * dal solo {@code hashCode()} usato da {@link HashUtil#dataToDigest(Object)}.
+ * Due oggetti da considerare uguali devono scrivere la stessa sequenza di
+ * byte.
+ *
+ * <p>
+ * Un funnel non deve calcolare altri hash durante la scrittura, perché la
+ * destinazione è riutilizzata dal thread corrente.
+ *
+ * @param <T>
+ *                il tipo degli oggetti descritti.
+ *
+ * @author **JULIANO, SINAJ, juliano.sinaj@studenti.unicam.it**
+ */
+@FunctionalInterface
+public interface Funnel<T> {
+
+    /**
+     * Scrive gli array di byte così come sono.
+     */
+    Funnel<byte[]> BYTES = (from, into) -> into.putBytes(from);
+
+    /**
+     * Scrive i byte rimanenti di un buffer senza modificarne la posizione.
+     */
+    Funnel<ByteBuffer> BYTE_BUFFER = (from, into) -> into.putBytes(from);
+
+    /**
+     * Scrive i caratteri di una sequenza, due byte per carattere.
+     */
+    Funnel<CharSequence> CHARS = (from, into) -> into.putChars(from);
+
+    /**
+     * Scrive un intero come quattro byte.
+     */
+    Funnel<Integer> INTEGER = (from, into) -> into.putInt(from);
+
+    /**
+     * Scrive un long come otto byte.
+     */
+    Funnel<Long> LONG = (from, into) -> into.putLong(from);
+
+    /**
+     * Scrive un double come gli otto byte della sua rappresentazione.
+     */
+    Funnel<Double> DOUBLE = (from, into) -> into.putDouble(from);
+
+    /**
+     * Scrive il contenuto di un oggetto in una destinazione.
+     *
+     * @param from
+     *                 l'oggetto da scrivere.
+     * @param into
+     *                 la destinazione.
+     */
+    void funnel(T from, DigestSink into);
+}
@@ -0,0 +1,92 @@
+package it.unicam.cs.asdl2425.mp1;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Classe di test per l'interfaccia {@link Funnel}. Questa classe verifica il
+ * calcolo degli hash dal contenuto dei dati, scritto direttamente nella
+ * funzione di hash.
+ * Di seguito, l'elenco dei test inclusi con una breve descrizione:
+ *
+ * <ul>
+ * <li>{@link #testBuiltInFunnels()}: Verifica che i funnel forniti scrivano
+ * gli stessi byte della loro rappresentazione big-endian, per tutte le
+ * funzioni di hash.</li>
+ *
+ * <li>{@link #testByteBufferUnchanged()}: Verifica che il funnel dei buffer
+ * non ne modifichi la posizione.</li>
+ *
+ * <li>{@link #testContentAddressedTree()}: Verifica che un albero costruito da
+ * una lista con un funnel riconosca i dati dal contenuto e che le sue prove
+ * siano valide con lo stesso funnel.</li>
+ * </ul>
+ */
+class FunnelTest {
+
+    private static final HashFunction[] FUNCTIONS = { HashFunction.MD5,
+            HashFunction.SHA256, HashFunction.MURMUR3_128 };
+
+    @Test
+    void testBuiltInFunnels() {
+        for (HashFunction fn : FUNCTIONS) {
+            byte[] bytes = "Alice paga Bob".getBytes(StandardCharsets.UTF_8);
+            assertEquals(fn.hash(bytes), fn.hashObject(bytes, Funnel.BYTES),
+                    "Il funnel degli array dovrebbe scrivere i byte così come sono.");
+            assertEquals(fn.hash(ByteBuffer.allocate(8).putLong(1234567890123L).array()),
+                    fn.hashObject(1234567890123L, Funnel.LONG),
+                    "Il funnel dei long dovrebbe scrivere otto byte big-endian.");
+            assertEquals(fn.hash(HashUtil.intToBytes(42)), fn.hashObject(42, Funnel.INTEGER),
+                    "Il funnel degli interi dovrebbe scrivere quattro byte big-endian.");
+            assertEquals(fn.hash("ab".getBytes(StandardCharsets.UTF_16BE)),
+                    fn.hashObject("ab", Funnel.CHARS),
+                    "Il funnel dei caratteri dovrebbe scrivere due byte per carattere.");
+            Funnel<String[]> record = (from, into) -> {
+                for (String field : from)
+                    into.putInt(field.length()).putChars(field);
+            };
+            assertNotEquals(fn.hashObject(new String[] { "ab", "c" }, record),
+                    fn.hashObject(new String[] { "a", "bc" }, record),
+                    "Contenuti diversi dovrebbero avere hash diversi.");
+        }
+    }
+
+    @Test
+    void testByteBufferUnchanged() {
+        ByteBuffer buffer = ByteBuffer.wrap(new byte[] { 1, 2, 3, 4, 5 });
+        buffer.position(1);
+        for (HashFunction fn : FUNCTIONS) {
+            Digest digest = fn.hashObject(buffer, Funnel.BYTE_BUFFER);
+            assertEquals(fn.hash(new byte[] { 2, 3, 4, 5 }), digest,
+                    "Dovrebbero essere considerati solo i byte rimanenti.");
+            assertEquals(1, buffer.position(), "La posizione del buffer non dovrebbe cambiare.");
+        }
+    }
+
+    @Test
+    void testContentAddressedTree() {
+        HashLinkedList<byte[]> list = new HashLinkedList<>(HashFunction.SHA256, Funnel.BYTES);
+        for (int i = 0; i < 5; i++)
+            list.addAtTail(("dato " + i).getBytes(StandardCharsets.UTF_8));
+        MerkleTree<byte[]> tree = new MerkleTree<>(list);
+        byte[] copy = "dato 3".getBytes(StandardCharsets.UTF_8);
+        assertEquals(3, tree.getIndexOfData(copy),
+                "Un array con lo stesso contenuto dovrebbe essere trovato.");
+        assertTrue(tree.validateData(copy), "Il dato dovrebbe essere valido.");
+        assertFalse(tree.validateData("dato 9".getBytes(StandardCharsets.UTF_8)),
+                "Un dato assente non dovrebbe essere valido.");
+        assertTrue(tree.getMerkleProof(copy).proveValidityOfData(copy, Funnel.BYTES),
+                "La prova dovrebbe essere valida con lo stesso funnel.");
+        assertTrue(tree.getMerkleMultiProof(List.of(copy)).proveValidityOfData(List.of(copy),
+                Funnel.BYTES), "La prova multipla dovrebbe essere valida con lo stesso funnel.");
+        tree.updateLeaf(3, "nuovo".getBytes(StandardCharsets.UTF_8));
+        assertFalse(tree.validateData(copy), "Il dato sostituito non dovrebbe essere valido.");
+        assertEquals(3, tree.getIndexOfData("nuovo".getBytes(StandardCharsets.UTF_8)),
+                "Il nuovo dato dovrebbe essere trovato dal contenuto.");
+    }
+}
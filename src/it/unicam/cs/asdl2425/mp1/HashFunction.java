@@ -0,0 +1,116 @@
+package it.unicam.cs.asdl2425.mp1;
+
+/**
+ * Una funzione di hash utilizzabile per costruire e verificare alberi di
+ * Merkle. Le implementazioni devono essere thread-safe e non devono
+ * effettuare la ricerca del provider ad ogni invocazione.
+ *
+ * <p>
+ * Sono fornite tre implementazioni:
+ * <ul>
+ * <li>{@link #MD5}, la funzione predefinita, compatibile con
+ * {@link HashUtil#computeMD5(byte[])};</li>
+ * <li>{@link #SHA256}, per cui la JVM utilizza le istruzioni SHA del
+ * processore quando disponibili;</li>
+ * <li>{@link #MURMUR3_128}, una funzione non crittografica molto più veloce,
+ * da usare solo per controlli di integrità interni in cui non è necessario
+ * resistere a collisioni costruite ad arte.</li>
+ * </ul>
+ *
+ * @author **JULIANO, SINAJ, juliano.sinaj@studenti.unicam.it**
+ */
+public interface HashFunction {
+
+    /**
+     * MD5, digest di 16 byte.
+     */
+    HashFunction MD5 = new MessageDigestHashFunction("MD5", 16);
+
+    /**
+     * SHA-256, digest di 32 byte.
+     */
+    HashFunction SHA256 = new MessageDigestHashFunction("SHA-256", 32);
+
+    /**
+     * MurmurHash3 x64 a 128 bit, non crittografica, digest di 16 byte.
+     */
+    HashFunction MURMUR3_128 = new Murmur3HashFunction();
+
+    /**
+     * Restituisce il nome della funzione di hash.
+     *
+     * @return il nome della funzione di hash.
+     */
+    String getName();
+
+    /**
+     * Restituisce la lunghezza in byte dei digest prodotti, 16 o 32.
+     *
+     * @return la lunghezza dei digest.
+     */
+    int getDigestLength();
+
+    /**
+     * Calcola l'hash di una porzione di un array di byte.
+     *
+     * @param input
+     *                   l'array di byte.
+     * @param offset
+     *                   la posizione del primo byte.
+     * @param length
+     *                   il numero di byte di cui calcolare l'hash.
+     * @return l'hash calcolato.
+     */
+    Digest hash(byte[] input, int offset, int length);
+
+    /**
+     * Calcola l'hash di una porzione di un array di byte scrivendolo in un
+     * array di destinazione, senza allocare oggetti.
+     *
+     * @param input
+     *                      l'array di byte.
+     * @param offset
+     *                      la posizione del primo byte.
+     * @param length
+     *                      il numero di byte di cui calcolare l'hash.
+     * @param out
+     *                      l'array in cui scrivere l'hash.
+     * @param outOffset
+     *                      la posizione in cui scrivere il primo byte
+     *                      dell'hash.
+     */
+    void hashInto(byte[] input, int offset, int length, byte[] out,
+            int outOffset);
+
+    /**
+     * Calcola l'hash di un array di byte.
+     *
+     * @param input
+     *                  l'array di byte.
+     * @return l'hash calcolato.
+     */
+    default Digest hash(byte[] input) {
+        return hash(input, 0, input.length);
+    }
+
+    /**
+     * Calcola l'hash del contenuto di un oggetto, scritto da un
+     * {@link Funnel}. L'implementazione predefinita accumula i byte in un
+     * array riutilizzato dal thread corrente; le funzioni che possono essere
+     * aggiornate in modo incrementale ricevono i byte direttamente.
+     *
+     * @param <T>
+     *                   il tipo dell'oggetto.
+     * @param data
+     *                   l'oggetto di cui calcolare l'hash.
+     * @param funnel
+     *                   il funnel che ne scrive il contenuto.
+     * @return l'hash calcolato.
+     */
+    default <T> Digest hashObject(T data, Funnel<? super T> funnel) {
+        BufferDigestSink sink = BufferDigestSink.local();
+        sink.reset();
+        funnel.funnel(data, sink);
+        return hash(sink.buffer(), 0, sink.size());
+    }
+}
@@ -0,0 +1,98 @@
+package it.unicam.cs.asdl2425.mp1;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Classe di test per l'interfaccia {@link HashFunction} e le sue
+ * implementazioni.
+ * Di seguito, l'elenco dei test inclusi con una breve descrizione:
+ *
+ * <ul>
+ * <li>{@link #testMD5()}: Verifica che MD5 sia compatibile con
+ * {@link HashUtil#computeMD5(byte[])}.</li>
+ *
+ * <li>{@link #testSHA256()}: Verifica SHA-256 su un vettore di test noto.</li>
+ *
+ * <li>{@link #testMurmur3()}: Verifica MurmurHash3 a 128 bit su vettori di
+ * test noti.</li>
+ *
+ * <li>{@link #testHashInto()}: Verifica che il calcolo su un buffer di
+ * destinazione produca lo stesso hash del calcolo ordinario.</li>
+ *
+ * <li>{@link #testConcurrentUse()}: Verifica che la stessa funzione di hash
+ * possa essere usata da più thread contemporaneamente.</li>
+ * </ul>
+ */
+class HashFunctionTest {
+
+    private static byte[] ascii(String s) {
+        return s.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    @Test
+    void testMD5() {
+        byte[] input = ascii("Hello, World!");
+        assertEquals(16, HashFunction.MD5.getDigestLength(),
+                "MD5 dovrebbe produrre digest di 16 byte.");
+        assertEquals(HashUtil.computeMD5(input),
+                HashFunction.MD5.hash(input).toString(),
+                "L'hash MD5 non corrisponde a quello di HashUtil.");
+    }
+
+    @Test
+    void testSHA256() {
+        assertEquals("ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad",
+                HashFunction.SHA256.hash(ascii("abc")).toString(),
+                "L'hash SHA-256 non corrisponde all'atteso.");
+    }
+
+    @Test
+    void testMurmur3() {
+        assertEquals("00000000000000000000000000000000",
+                HashFunction.MURMUR3_128.hash(new byte[0]).toString(),
+                "L'hash di un input vuoto dovrebbe essere nullo.");
+        assertEquals("6c1b07bc7bbc4be347939ac4a93c437a",
+                HashFunction.MURMUR3_128
+                        .hash(ascii("The quick brown fox jumps over the lazy dog"))
+                        .toString(),
+                "L'hash MurmurHash3 non corrisponde all'atteso.");
+    }
+
+    @Test
+    void testHashInto() {
+        byte[] input = ascii("Alice paga Bob, Bob paga Charlie");
+        for (HashFunction f : new HashFunction[] { HashFunction.MD5,
+                HashFunction.SHA256, HashFunction.MURMUR3_128 }) {
+            byte[] out = new byte[f.getDigestLength() + 3];
+            f.hashInto(input, 2, input.length - 2, out, 3);
+            assertEquals(f.hash(input, 2, input.length - 2),
+                    Digest.of(out, 3, f.getDigestLength()),
+                    "Il calcolo su buffer non è corretto per " + f.getName());
+        }
+    }
+
+    @Test
+    void testConcurrentUse() throws InterruptedException {
+        Digest expected = HashFunction.SHA256.hash(ascii("Diana paga Alice"));
+        boolean[] ok = new boolean[4];
+        Thread[] threads = new Thread[ok.length];
+        for (int t = 0; t < threads.length; t++) {
+            int id = t;
+            threads[t] = new Thread(() -> {
+                boolean all = true;
+                for (int i = 0; i < 1000; i++)
+                    all &= expected.equals(HashFunction.SHA256.hash(ascii("Diana paga Alice")));
+                ok[id] = all;
+            });
+            threads[t].start();
+        }
+        for (Thread t : threads)
+            t.join();
+        for (boolean b : ok)
+            assertTrue(b, "Ogni thread dovrebbe ottenere lo stesso hash.");
+    }
+}
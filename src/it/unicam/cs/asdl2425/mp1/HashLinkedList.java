@@ -43,12 +43,68 @@ public class HashLinkedList<T> implements Iterable<T> {
     private int size; // Numero di nodi della lista
     private int numeroModifiche; // Numero di modifiche effettuate sulla lista
                                  // per l'implementazione dell'iteratore fail-fast
+    private final HashFunction hashFunction; // Funzione di hash dei dati
+    private final Funnel<? super T> funnel; // Contenuto dei dati, o null
 
     public HashLinkedList() {
+        this(HashFunction.MD5);
+    }
+
+    /**
+     * Costruisce una lista vuota che calcola gli hash dei dati con la
+     * funzione di hash fornita.
+     *
+     * @param hashFunction
+     *                         la funzione di hash da utilizzare.
+     * @throws IllegalArgumentException
+     *                                      se la funzione di hash è null.
+     */
+    public HashLinkedList(HashFunction hashFunction) {
+        this(hashFunction, null);
+    }
+
+    /**
+     * Costruisce una lista vuota che calcola gli hash del contenuto dei dati,
+     * scritto dal funnel fornito, invece che del loro {@code hashCode()}. Dati
+     * con lo stesso contenuto hanno lo stesso hash anche se
+     * {@code hashCode()} non è ridefinito.
+     *
+     * @param hashFunction
+     *                         la funzione di hash da utilizzare.
+     * @param funnel
+     *                         il funnel dei dati, o null per usare
+     *                         {@code hashCode()}.
+     * @throws IllegalArgumentException
+     *                                      se la funzione di hash è null.
+     */
+    public HashLinkedList(HashFunction hashFunction, Funnel<? super T> funnel) {
+        if (hashFunction == null)
+            throw new IllegalArgumentException("The hash function is null");
         this.head = null;
         this.tail = null;
         this.size = 0;
         this.numeroModifiche = 0;
+        this.hashFunction = hashFunction;
+        this.funnel = funnel;
+    }
+
+    /**
+     * Restituisce la funzione di hash usata per calcolare gli hash dei dati.
+     *
+     * @return la funzione di hash della lista.
+     */
+    public HashFunction getHashFunction() {
+        return hashFunction;
+    }
+
+    /**
+     * Restituisce il funnel usato per calcolare gli hash dei dati.
+     *
+     * @return il funnel della lista, o null se gli hash dipendono da
+     *         {@code hashCode()}.
+     */
+    public Funnel<? super T> getFunnel() {
+        return funnel;
     }
 
     /**
@@ -64,12 +120,12 @@ public class HashLinkedList<T> implements Iterable<T> {
      * Rappresenta un nodo nella lista concatenata.
      */
     private class Node {
-        String hash; // Hash del dato
+        Digest hash; // Hash del dato
         T data; // Dato originale
         Node next;
         Node(T data) {
             this.data = data;
-            this.hash = HashUtil.dataToHash(data);
+            this.hash = HashUtil.dataToDigest(data, funnel, hashFunction);
             this.next = null;
         }
     }
@@ -121,7 +177,7 @@ public class HashLinkedList<T> implements Iterable<T> {
         ArrayList<String> hashes = new ArrayList<>();
         Node current = head;
         while (current != null) {
-            hashes.add(current.hash); 
+            hashes.add(current.hash.toString()); 
             current = current.next;   
         }
         if (!hashes.isEmpty()) {
@@ -130,6 +186,24 @@ public class HashLinkedList<T> implements Iterable<T> {
         return null; // if no hash was found
     }
 
+    /**
+     * Restituisce un'ArrayList contenente tutti gli hash nella lista in
+     * ordine, in forma binaria.
+     *
+     * @return una lista con tutti gli hash della lista, o null se la lista è
+     *         vuota.
+     */
+    public ArrayList<Digest> getAllDigests() {
+        if (head == null) {
+            return null;
+        }
+        ArrayList<Digest> hashes = new ArrayList<>(size);
+        for (Node current = head; current != null; current = current.next) {
+            hashes.add(current.hash);
+        }
+        return hashes;
+    }
+
     /**
      * Costruisce una stringa contenente tutti i nodi della lista, includendo
      * dati e hash. La stringa dovrebbe essere formattata come nel seguente
@@ -1,8 +1,5 @@
 package it.unicam.cs.asdl2425.mp1;
 
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
-
 /**
  * Classe fornita di utilità per calcolare gli hash MD5.
  * 
@@ -18,7 +15,86 @@ public class HashUtil {
      * @return l'hash come stringa esadecimale.
      */
     public static String dataToHash(Object data) {
-        return HashUtil.computeMD5(intToBytes(data.hashCode()));
+        return dataToDigest(data).toString();
+    }
+
+    /**
+     * Calcola l'hash del dato fornito utilizzando MD5, restituendolo in forma
+     * binaria.
+     *
+     * @param data
+     *                 il dato da hashare.
+     * @return l'hash del dato.
+     */
+    public static Digest dataToDigest(Object data) {
+        return dataToDigest(data, HashFunction.MD5);
+    }
+
+    /**
+     * Calcola l'hash del dato fornito utilizzando la funzione di hash
+     * fornita, restituendolo in forma binaria.
+     *
+     * @param data
+     *                         il dato da hashare.
+     * @param hashFunction
+     *                         la funzione di hash da utilizzare.
+     * @return l'hash del dato.
+     */
+    public static Digest dataToDigest(Object data, HashFunction hashFunction) {
+        DigestCache cache = digestCache;
+        if (cache != null && cache.getHashFunction() == hashFunction)
+            return cache.get(data.hashCode());
+        return hashFunction.hash(intToBytes(data.hashCode()));
+    }
+
+    /**
+     * Calcola l'hash del dato fornito con la funzione di hash fornita. Se il
+     * funnel non è null l'hash dipende dal contenuto scritto dal funnel,
+     * altrimenti dal solo {@code hashCode()} come in
+     * {@link #dataToDigest(Object, HashFunction)}.
+     *
+     * @param <T>
+     *                         il tipo del dato.
+     * @param data
+     *                         il dato da hashare.
+     * @param funnel
+     *                         il funnel del dato, o null.
+     * @param hashFunction
+     *                         la funzione di hash da utilizzare.
+     * @return l'hash del dato.
+     */
+    public static <T> Digest dataToDigest(T data, Funnel<? super T> funnel,
+            HashFunction hashFunction) {
+        if (funnel == null)
+            return dataToDigest(data, hashFunction);
+        return hashFunction.hashObject(data, funnel);
+    }
+
+    /**
+     * Cache degli hash dei dati, o null se disabilitata.
+     */
+    private static volatile DigestCache digestCache;
+
+    /**
+     * Imposta una cache condivisa per gli hash dei dati. Poiché l'hash di un
+     * dato dipende solo dal suo {@code hashCode()}, la cache restituisce gli
+     * stessi risultati del calcolo diretto. Viene usata solo per la funzione
+     * di hash con cui è stata creata.
+     *
+     * @param cache
+     *                  la cache da usare, o null per disabilitarla.
+     */
+    public static void setDigestCache(DigestCache cache) {
+        digestCache = cache;
+    }
+
+    /**
+     * Restituisce la cache degli hash dei dati impostata.
+     *
+     * @return la cache, o null se disabilitata.
+     */
+    public static DigestCache getDigestCache() {
+        return digestCache;
     }
 
     /**
@@ -31,19 +107,91 @@ public class HashUtil {
      *                              se l'algoritmo di hashing non è disponibile.
      */
     public static String computeMD5(byte[] input) {
-        try {
-            MessageDigest md = MessageDigest.getInstance("MD5");
-            byte[] hashBytes = md.digest(input);
-            StringBuilder hashString = new StringBuilder();
-            for (byte b : hashBytes) {
-                hashString.append(String.format("%02x", b));
-            }
-            return hashString.toString();
-        } catch (NoSuchAlgorithmException e) {
-            throw new RuntimeException("MD5 algorithm not found", e);
-        }
+        return md5(input).toString();
+    }
+
+    /**
+     * Calcola l'hash di un array di byte fornito utilizzando MD5,
+     * restituendolo in forma binaria.
+     *
+     * @param input
+     *                  l'array di byte di cui calcolare l'hash.
+     * @return l'hash dell'array.
+     * @throws RuntimeException
+     *                              se l'algoritmo di hashing non è disponibile.
+     */
+    public static Digest md5(byte[] input) {
+        return md5(input, 0, input.length);
     }
 
+    /**
+     * Calcola l'hash MD5 di una porzione di un array di byte.
+     *
+     * @param input
+     *                   l'array di byte.
+     * @param offset
+     *                   la posizione del primo byte.
+     * @param length
+     *                   il numero di byte di cui calcolare l'hash.
+     * @return l'hash della porzione dell'array.
+     * @throws RuntimeException
+     *                              se l'algoritmo di hashing non è disponibile.
+     */
+    public static Digest md5(byte[] input, int offset, int length) {
+        return HashFunction.MD5.hash(input, offset, length);
+    }
+
+    /**
+     * Calcola l'hash di un nodo a partire dagli hash dei suoi due figli,
+     * concatenati secondo la modalità fornita. Se entrambi i figli sono vuoti
+     * anche il padre è vuoto; un figlio vuoto non contribuisce alla
+     * concatenazione.
+     *
+     * @param left
+     *                   l'hash del figlio sinistro.
+     * @param right
+     *                   l'hash del figlio destro.
+     * @param mode
+     *                   la modalità di concatenazione.
+     * @return l'hash del nodo padre.
+     */
+    public static Digest combine(Digest left, Digest right,
+            Concatenation mode) {
+        return combine(left, right, mode, HashFunction.MD5);
+    }
+
+    /**
+     * Calcola l'hash di un nodo a partire dagli hash dei suoi due figli, come
+     * {@link #combine(Digest, Digest, Concatenation)}, utilizzando la funzione
+     * di hash fornita.
+     *
+     * @param left
+     *                         l'hash del figlio sinistro.
+     * @param right
+     *                         l'hash del figlio destro.
+     * @param mode
+     *                         la modalità di concatenazione.
+     * @param hashFunction
+     *                         la funzione di hash da utilizzare.
+     * @return l'hash del nodo padre.
+     */
+    public static Digest combine(Digest left, Digest right,
+            Concatenation mode, HashFunction hashFunction) {
+        if (left.isEmpty() && right.isEmpty())
+            return Digest.EMPTY;
+        byte[] input = SCRATCH.get();
+        int n = mode.write(left, input, 0);
+        n += mode.write(right, input, n);
+        return hashFunction.hash(input, 0, n);
+    }
+
+    /**
+     * Buffer riutilizzato da ogni thread per concatenare gli hash dei figli,
+     * sufficiente per due digest di 32 byte in forma esadecimale.
+     */
+    private static final ThreadLocal<byte[]> SCRATCH = ThreadLocal
+            .withInitial(() -> new byte[128]);
+
     /**
      * Converte un valore intero (int) in un array di byte.
      *
@@ -61,4 +209,4 @@ public class HashUtil {
         return new byte[] { (byte) (value >> 24), (byte) (value >> 16),
                 (byte) (value >> 8), (byte) value };
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,117 @@
+package it.unicam.cs.asdl2425.mp1;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Confronto tra le disposizioni {@link NodeLayout#LEVELS} e
+ * {@link NodeLayout#BLOCKED} di un albero su file. Per ogni disposizione
+ * vengono riportati il numero medio di pagine distinte lette da una prova di
+ * Merkle, che non dipende dalla macchina, e i tempi di costruzione del file,
+ * di generazione di prove per foglie casuali e di confronto con un albero
+ * che differisce in una sola foglia.
+ *
+ * <p>
+ * I tempi misurano pagine già nella cache del sistema operativo, salvo
+ * svuotarla tra la costruzione e le misure; con file più grandi della
+ * memoria la differenza segue quella del numero di pagine. Uso:
+ * {@code LayoutBenchmark [foglie] [prove] [directory]}.
+ *
+ * @author **JULIANO, SINAJ, juliano.sinaj@studenti.unicam.it**
+ */
+final class LayoutBenchmark {
+
+    private LayoutBenchmark() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        long width = args.length > 0 ? Long.parseLong(args[0]) : 1L << 22;
+        int proofs = args.length > 1 ? Integer.parseInt(args[1]) : 100_000;
+        Path dir = args.length > 2 ? Path.of(args[2]) : Files.createTempDirectory("layout");
+        HashFunction hashFunction = HashFunction.SHA256;
+        System.out.printf("SHA-256, %,d foglie, %,d prove%n", width, proofs);
+        for (long w : new long[] { width, 1L << 30 })
+            for (NodeLayout layout : NodeLayout.values())
+                System.out.printf("%-8s %,14d foglie: %.2f pagine per prova%n", layout, w,
+                        pagesPerProof(new MerkleTreeFile(hashFunction, Concatenation.BINARY,
+                                TreeShape.PAD, w, layout), 10_000));
+        for (NodeLayout layout : NodeLayout.values()) {
+            Path a = dir.resolve("a-" + layout);
+            Path b = dir.resolve("b-" + layout);
+            long start = System.nanoTime();
+            MappedMerkleTree.create(a, leaves(width, hashFunction, -1), hashFunction,
+                    Concatenation.BINARY, TreeShape.PAD, layout).close();
+            long built = System.nanoTime() - start;
+            MappedMerkleTree.create(b, leaves(width, hashFunction, width / 3), hashFunction,
+                    Concatenation.BINARY, TreeShape.PAD, layout).close();
+            try (MappedMerkleTree ta = MappedMerkleTree.open(a);
+                    MappedMerkleTree tb = MappedMerkleTree.open(b)) {
+                Random random = new Random(1);
+                start = System.nanoTime();
+                int valid = 0;
+                for (int p = 0; p < proofs; p++) {
+                    long leaf = (random.nextLong() >>> 1) % width;
+                    if (ta.getMerkleProof(leaf).getSize() > 0)
+                        valid++;
+                }
+                long proving = System.nanoTime() - start;
+                start = System.nanoTime();
+                int changed = ta.findInvalidDataIndices(tb).length;
+                long diff = System.nanoTime() - start;
+                System.out.printf("%-8s costruzione %,d ms, %,d ns per prova (%d), "
+                        + "confronto %,d us (%d foglie), file %,d byte%n", layout,
+                        built / 1_000_000, proving / proofs, valid, diff / 1000, changed,
+                        Files.size(a));
+            }
+            Files.delete(a);
+            Files.delete(b);
+        }
+    }
+
+    /**
+     * Restituisce il numero medio di pagine distinte che contengono i nodi
+     * letti dalla prova di foglie casuali: i fratelli del cammino e la
+     * radice.
+     */
+    static double pagesPerProof(MerkleTreeFile format, int samples) {
+        Random random = new Random(1);
+        long total = 0;
+        Set<Long> pages = new HashSet<>();
+        for (int s = 0; s < samples; s++) {
+            long leaf = (random.nextLong() >>> 1) % format.width;
+            pages.clear();
+            for (int l = 0; l < format.height; l++)
+                pages.add(format.nodeOffset(l, (leaf >>> l) ^ 1) / MerkleTreeFile.PAGE_SIZE);
+            pages.add(format.nodeOffset(format.height, 0) / MerkleTreeFile.PAGE_SIZE);
+            total += pages.size();
+        }
+        return (double) total / samples;
+    }
+
+    /**
+     * Restituisce gli hash di foglie generate, con una foglia diversa nella
+     * posizione fornita.
+     */
+    private static Iterator<Digest> leaves(long width, HashFunction hashFunction,
+            long changed) {
+        return new Iterator<Digest>() {
+            private long next;
+
+            @Override
+            public boolean hasNext() {
+                return next < width;
+            }
+
+            @Override
+            public Digest next() {
+                long i = next++;
+                return hashFunction.hashObject(i == changed ? -i - 1 : i, Funnel.LONG);
+            }
+        };
+    }
+}
@@ -0,0 +1,336 @@
+package it.unicam.cs.asdl2425.mp1;
+
+import java.util.Arrays;
+
+/**
+ * Indice dagli hash delle foglie di un albero di Merkle alle loro posizioni,
+ * realizzato come tabella a indirizzamento aperto con scansione lineare su
+ * array di tipi primitivi. Ogni hash distinto occupa una sola voce, con le
+ * parole dell'hash e un {@code int} per la prima posizione, senza oggetti per
+ * voce: circa 20 byte per hash di 128 bit più 8 byte per posizione, contro
+ * gli oltre 100 di una {@code HashMap}.
+ *
+ * <p>
+ * Le posizioni di uno stesso hash formano una lista doppiamente collegata in
+ * ordine crescente, memorizzata in due array indicizzati dalla posizione; il
+ * precedente della prima posizione è l'ultima. Le posizioni ripetute non
+ * allungano quindi le sequenze di scansione: la prima posizione si trova in
+ * tempo costante, tutte le posizioni in tempo proporzionale al loro numero,
+ * e inserire posizioni crescenti o rimuoverne una costa tempo costante. Ogni
+ * posizione può essere associata a un solo hash alla volta, come le foglie
+ * di un albero. Le voci rimosse vengono eliminate spostando all'indietro
+ * quelle successive nella stessa sequenza di scansione, per cui la tabella
+ * non accumula marcatori di cancellazione.
+ *
+ * @author **JULIANO, SINAJ, juliano.sinaj@studenti.unicam.it**
+ */
+final class LeafIndex implements LeafLookup {
+
+    /**
+     * Fattore di carico massimo prima di un ridimensionamento.
+     */
+    private static final double MAX_LOAD = 0.75;
+
+    private final int words; // Numero di long per hash
+    private long[] keys; // Hash delle voci, words parole per voce
+    private int[] heads; // Prima posizione delle voci, -1 per le voci libere
+    private int capacity;
+    private int distinct; // Numero di voci occupate
+    private int size; // Numero di posizioni
+    private int[] next; // Posizione successiva con lo stesso hash, o -1
+    private int[] prev; // Posizione precedente, o l'ultima per la prima; -1 se assente
+
+    /**
+     * Crea un indice vuoto.
+     *
+     * @param words
+     *                     il numero di long di un hash, 2 o 4.
+     * @param expected
+     *                     il numero di voci previsto.
+     */
+    LeafIndex(int words, int expected) {
+        this.words = words;
+        allocate((int) Math.min(Integer.MAX_VALUE - 8, expected / MAX_LOAD + 1));
+        this.next = new int[0];
+        this.prev = new int[0];
+        ensurePositions(expected);
+    }
+
+    private void allocate(int capacity) {
+        this.capacity = Math.max(capacity, 4);
+        this.keys = new long[this.capacity * words];
+        this.heads = new int[this.capacity];
+        Arrays.fill(heads, -1);
+    }
+
+    private void ensurePositions(int length) {
+        if (length <= prev.length)
+            return;
+        int old = prev.length;
+        int grown = (int) Math.min(Integer.MAX_VALUE - 8, Math.max(length, old * 2L));
+        next = Arrays.copyOf(next, grown);
+        prev = Arrays.copyOf(prev, grown);
+        Arrays.fill(prev, old, grown, -1);
+    }
+
+    /**
+     * Restituisce il numero di posizioni indicizzate.
+     *
+     * @return il numero di posizioni.
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Restituisce il numero di hash distinti indicizzati.
+     *
+     * @return il numero di hash distinti.
+     */
+    int distinct() {
+        return distinct;
+    }
+
+    /**
+     * Restituisce la memoria occupata dagli array dell'indice, in byte.
+     *
+     * @return la memoria occupata in byte.
+     */
+    long memoryBytes() {
+        return keys.length * 8L + heads.length * 4L + next.length * 4L + prev.length * 4L;
+    }
+
+    /**
+     * Aggiunge una posizione a un hash. Non controlla se la posizione è già
+     * presente.
+     *
+     * @param digest
+     *                   l'hash della foglia.
+     * @param index
+     *                   la posizione della foglia.
+     */
+    void add(Digest digest, int index) {
+        ensurePositions(index + 1);
+        int slot = find(digest);
+        if (slot >= 0) {
+            link(slot, index);
+        } else {
+            if (distinct + 1 > capacity * MAX_LOAD)
+                grow();
+            slot = home(digest.word(0));
+            while (heads[slot] >= 0)
+                slot = nextSlot(slot);
+            for (int w = 0; w < words; w++)
+                keys[slot * words + w] = digest.word(w);
+            heads[slot] = index;
+            next[index] = -1;
+            prev[index] = index;
+            distinct++;
+        }
+        size++;
+    }
+
+    /**
+     * Inserisce una posizione nella lista ordinata di una voce: in fondo o in
+     * testa in tempo costante, altrimenti scorrendo la lista.
+     */
+    private void link(int slot, int index) {
+        int head = heads[slot];
+        int tail = prev[head];
+        if (index > tail) {
+            next[tail] = index;
+            next[index] = -1;
+            prev[index] = tail;
+            prev[head] = index;
+        } else if (index < head) {
+            next[index] = head;
+            prev[index] = tail;
+            prev[head] = index;
+            heads[slot] = index;
+        } else {
+            int p = head;
+            while (next[p] < index)
+                p = next[p];
+            int q = next[p];
+            next[p] = index;
+            next[index] = q;
+            prev[index] = p;
+            prev[q] = index;
+        }
+    }
+
+    /**
+     * Rimuove la posizione fornita da un hash.
+     *
+     * @param digest
+     *                   l'hash della foglia.
+     * @param index
+     *                   la posizione della foglia, che deve essere associata
+     *                   a questo hash se presente.
+     * @return true se la posizione era presente, false altrimenti.
+     */
+    boolean remove(Digest digest, int index) {
+        if (index < 0 || index >= prev.length || prev[index] < 0)
+            return false;
+        int slot = find(digest);
+        if (slot < 0)
+            return false;
+        int head = heads[slot];
+        int tail = prev[head];
+        if (index == head) {
+            if (next[index] < 0) {
+                shiftBack(slot);
+                distinct--;
+            } else {
+                heads[slot] = next[index];
+                prev[next[index]] = tail;
+            }
+        } else {
+            next[prev[index]] = next[index];
+            if (index == tail)
+                prev[head] = prev[index];
+            else prev[next[index]] = prev[index];
+        }
+        prev[index] = -1;
+        size--;
+        return true;
+    }
+
+    /**
+     * Restituisce la posizione minima associata a un hash.
+     *
+     * @param digest
+     *                   l'hash da cercare.
+     * @return la prima posizione dell'hash, o -1 se non presente.
+     */
+    @Override
+    public int first(Digest digest) {
+        int slot = find(digest);
+        return slot < 0 ? -1 : heads[slot];
+    }
+
+    /**
+     * Restituisce true se l'hash compare in almeno una posizione.
+     *
+     * @param digest
+     *                   l'hash da cercare.
+     * @return true se l'hash è presente, false altrimenti.
+     */
+    @Override
+    public boolean contains(Digest digest) {
+        return find(digest) >= 0;
+    }
+
+    /**
+     * Restituisce tutte le posizioni associate a un hash.
+     *
+     * @param digest
+     *                   l'hash da cercare.
+     * @return le posizioni dell'hash in ordine crescente, eventualmente
+     *         nessuna.
+     */
+    @Override
+    public int[] all(Digest digest) {
+        int slot = find(digest);
+        if (slot < 0)
+            return new int[0];
+        int[] found = new int[4];
+        int n = 0;
+        for (int p = heads[slot]; p >= 0; p = next[p]) {
+            if (n == found.length)
+                found = Arrays.copyOf(found, n * 2);
+            found[n++] = p;
+        }
+        return Arrays.copyOf(found, n);
+    }
+
+    /**
+     * Restituisce la posizione successiva con lo stesso hash di una posizione
+     * presente.
+     *
+     * @param index
+     *                  una posizione presente nell'indice.
+     * @return la posizione successiva, o -1 se è l'ultima.
+     */
+    int next(int index) {
+        return next[index];
+    }
+
+    @Override
+    public int probeOrder(Digest digest) {
+        return home(digest.word(0));
+    }
+
+    /**
+     * Restituisce la voce di un hash, o -1 se non presente.
+     */
+    private int find(Digest digest) {
+        if (digest.length() != words * 8)
+            return -1;
+        int slot = home(digest.word(0));
+        while (heads[slot] >= 0) {
+            if (matches(slot, digest))
+                return slot;
+            slot = nextSlot(slot);
+        }
+        return -1;
+    }
+
+    private boolean matches(int slot, Digest digest) {
+        for (int w = 0; w < words; w++)
+            if (keys[slot * words + w] != digest.word(w))
+                return false;
+        return true;
+    }
+    /**
+     * Libera una voce spostando indietro le voci successive della stessa
+     * sequenza che non si trovano già nella loro posizione ideale.
+     */
+    private void shiftBack(int free) {
+        int slot = free;
+        while (true) {
+            slot = nextSlot(slot);
+            if (heads[slot] < 0)
+                break;
+            int home = home(keys[slot * words]);
+            //la voce può occupare free solo se free è tra home e slot
+            boolean movable = free <= slot ? (home <= free || home > slot)
+                    : (home <= free && home > slot);
+            if (movable) {
+                System.arraycopy(keys, slot * words, keys, free * words, words);
+                heads[free] = heads[slot];
+                free = slot;
+            }
+        }
+        heads[free] = -1;
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        int[] oldHeads = heads;
+        int oldCapacity = capacity;
+        allocate((int) Math.min(Integer.MAX_VALUE - 8, oldCapacity * 2L));
+        for (int s = 0; s < oldCapacity; s++) {
+            if (oldHeads[s] < 0)
+                continue;
+            int slot = home(oldKeys[s * words]);
+            while (heads[slot] >= 0)
+                slot = nextSlot(slot);
+            System.arraycopy(oldKeys, s * words, keys, slot * words, words);
+            heads[slot] = oldHeads[s];
+        }
+    }
+
+    /**
+     * Posizione ideale di una voce, ricavata dalla prima parola dell'hash
+     * senza richiedere una capacità potenza di due.
+     */
+    private int home(long word) {
+        long h = (word ^ (word >>> 32)) * 0x9E3779B97F4A7C15L;
+        return (int) (((h >>> 32) * capacity) >>> 32);
+    }
+
+    private int nextSlot(int slot) {
+        return slot + 1 == capacity ? 0 : slot + 1;
+    }
+}
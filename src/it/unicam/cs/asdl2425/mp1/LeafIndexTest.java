@@ -0,0 +1,110 @@
+package it.unicam.cs.asdl2425.mp1;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Classe di test per la classe {@link LeafIndex}. Questa classe verifica la
+ * tabella a indirizzamento aperto che associa gli hash delle foglie alle loro
+ * posizioni.
+ * Di seguito, l'elenco dei test inclusi con una breve descrizione:
+ *
+ * <ul>
+ * <li>{@link #testAddAndFind()}: Verifica l'inserimento e la ricerca di hash,
+ * anche oltre la capacità iniziale.</li>
+ *
+ * <li>{@link #testDuplicates()}: Verifica che uno stesso hash possa essere
+ * associato a più posizioni.</li>
+ *
+ * <li>{@link #testRemove()}: Verifica che dopo molte rimozioni le voci rimaste
+ * siano ancora raggiungibili.</li>
+ *
+ * <li>{@link #testManyDuplicates()}: Verifica che molte posizioni dello stesso
+ * hash occupino una sola voce e restino ordinate dopo inserimenti e rimozioni
+ * in testa, in mezzo e in fondo.</li>
+ * </ul>
+ */
+class LeafIndexTest {
+
+    @Test
+    void testAddAndFind() {
+        LeafIndex index = new LeafIndex(2, 4);
+        for (int i = 0; i < 1000; i++)
+            index.add(HashUtil.dataToDigest(i), i);
+        assertEquals(1000, index.size(), "L'indice dovrebbe contenere 1000 voci.");
+        for (int i = 0; i < 1000; i++)
+            assertEquals(i, index.first(HashUtil.dataToDigest(i)),
+                    "La posizione dell'hash " + i + " non è corretta.");
+        assertEquals(-1, index.first(HashUtil.dataToDigest(-1)),
+                "Un hash non presente non dovrebbe essere trovato.");
+        assertFalse(index.contains(HashUtil.dataToDigest(-1)),
+                "Un hash non presente non dovrebbe essere contenuto.");
+    }
+
+    @Test
+    void testDuplicates() {
+        LeafIndex index = new LeafIndex(4, 8);
+        Digest digest = HashUtil.dataToDigest("dato", HashFunction.SHA256);
+        index.add(digest, 7);
+        index.add(digest, 2);
+        index.add(digest, 5);
+        assertEquals(2, index.first(digest), "Dovrebbe essere restituita la prima posizione.");
+        assertArrayEquals(new int[] { 2, 5, 7 }, index.all(digest),
+                "Dovrebbero essere restituite tutte le posizioni.");
+        assertTrue(index.remove(digest, 2), "La voce dovrebbe essere rimossa.");
+        assertFalse(index.remove(digest, 2), "La voce non dovrebbe essere più presente.");
+        assertArrayEquals(new int[] { 5, 7 }, index.all(digest),
+                "Le altre posizioni dovrebbero restare.");
+    }
+
+    @Test
+    void testRemove() {
+        LeafIndex index = new LeafIndex(2, 64);
+        Random random = new Random(42);
+        List<Integer> kept = new ArrayList<>();
+        for (int i = 0; i < 500; i++)
+            index.add(HashUtil.dataToDigest(i), i);
+        for (int i = 0; i < 500; i++) {
+            if (random.nextBoolean())
+                assertTrue(index.remove(HashUtil.dataToDigest(i), i), "La voce " + i + " dovrebbe essere rimossa.");
+            else
+                kept.add(i);
+        }
+        assertEquals(kept.size(), index.size(), "Il numero di voci non è corretto.");
+        for (int i : kept)
+            assertEquals(i, index.first(HashUtil.dataToDigest(i)),
+                    "La voce " + i + " dovrebbe essere ancora raggiungibile.");
+    }
+
+
+    @Test
+    void testManyDuplicates() {
+        LeafIndex index = new LeafIndex(2, 16);
+        Digest digest = HashUtil.dataToDigest(0);
+        Digest other = HashUtil.dataToDigest(1);
+        for (int i = 0; i < 200_000; i++)
+            index.add(i % 1000 == 999 ? other : digest, i);
+        assertEquals(200_000, index.size(), "Il numero di posizioni non è corretto.");
+        assertEquals(2, index.distinct(), "Dovrebbero esserci due hash distinti.");
+        assertEquals(0, index.first(digest), "Dovrebbe essere restituita la prima posizione.");
+        assertEquals(199_800, index.all(digest).length, "Il numero di posizioni non è corretto.");
+        assertTrue(index.remove(digest, 0), "La prima posizione dovrebbe essere rimossa.");
+        assertTrue(index.remove(digest, 500), "Una posizione intermedia dovrebbe essere rimossa.");
+        assertTrue(index.remove(digest, 199_998), "L'ultima posizione dovrebbe essere rimossa.");
+        assertFalse(index.remove(digest, 500), "La posizione non dovrebbe essere più presente.");
+        index.add(digest, 500);
+        index.add(digest, 0);
+        int[] all = index.all(digest);
+        assertEquals(199_799, all.length, "Il numero di posizioni non è corretto.");
+        assertEquals(0, all[0], "La posizione reinserita dovrebbe essere la prima.");
+        assertEquals(199_997, all[all.length - 1], "L'ultima posizione non è corretta.");
+        for (int i = 1; i < all.length; i++)
+            assertTrue(all[i - 1] < all[i], "Le posizioni dovrebbero essere ordinate.");
+        assertEquals(999, index.first(other), "L'altro hash dovrebbe essere trovato.");
+    }
+}
@@ -0,0 +1,49 @@
+package it.unicam.cs.asdl2425.mp1;
+
+/**
+ * Ricerca delle posizioni delle foglie di un albero di Merkle a partire dal
+ * loro hash.
+ *
+ * @author **JULIANO, SINAJ, juliano.sinaj@studenti.unicam.it**
+ */
+interface LeafLookup {
+
+    /**
+     * Restituisce la posizione minima associata a un hash.
+     *
+     * @param digest
+     *                   l'hash da cercare.
+     * @return la prima posizione dell'hash, o -1 se non presente.
+     */
+    int first(Digest digest);
+
+    /**
+     * Restituisce true se l'hash compare in almeno una posizione.
+     *
+     * @param digest
+     *                   l'hash da cercare.
+     * @return true se l'hash è presente, false altrimenti.
+     */
+    boolean contains(Digest digest);
+
+    /**
+     * Restituisce tutte le posizioni associate a un hash.
+     *
+     * @param digest
+     *                   l'hash da cercare.
+     * @return le posizioni dell'hash in ordine crescente, eventualmente
+     *         nessuna.
+     */
+    int[] all(Digest digest);
+
+    /**
+     * Restituisce la posizione della tabella da cui inizia la ricerca di un
+     * hash. Ricerche multiple ordinate secondo questo valore accedono alla
+     * tabella in modo sequenziale.
+     *
+     * @param digest
+     *                   l'hash da cercare.
+     * @return la posizione iniziale della ricerca.
+     */
+    int probeOrder(Digest digest);
+}
@@ -0,0 +1,136 @@
+package it.unicam.cs.asdl2425.mp1;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * File mappato in memoria a blocchi di {@value #CHUNK_SIZE} byte, in modo da
+ * superare il limite di 2 GB di un singolo MappedByteBuffer. I valori sono
+ * letti e scritti in ordine big-endian; un valore non deve attraversare il
+ * confine tra due blocchi, condizione garantita per i long allineati a 8
+ * byte.
+ *
+ * @author **JULIANO, SINAJ, juliano.sinaj@studenti.unicam.it**
+ */
+final class MappedFile implements Closeable {
+
+    /**
+     * Logaritmo in base 2 della dimensione di un blocco.
+     */
+    private static final int CHUNK_BITS = 30;
+
+    /**
+     * Dimensione di un blocco mappato.
+     */
+    static final long CHUNK_SIZE = 1L << CHUNK_BITS;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer[] chunks;
+    private final long size;
+
+    /**
+     * Mappa un file in sola lettura.
+     *
+     * @param path
+     *                 il percorso del file.
+     * @throws IOException
+     *                         se il file non può essere aperto o mappato.
+     */
+    MappedFile(Path path) throws IOException {
+        this(FileChannel.open(path, StandardOpenOption.READ), -1);
+    }
+
+    /**
+     * Mappa un file in lettura e scrittura, portandolo alla dimensione
+     * fornita.
+     *
+     * @param path
+     *                 il percorso del file, creato se non esiste.
+     * @param size
+     *                 la dimensione del file in byte.
+     * @throws IOException
+     *                         se il file non può essere aperto o mappato.
+     */
+    MappedFile(Path path, long size) throws IOException {
+        this(FileChannel.open(path, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.CREATE), size);
+    }
+
+    private MappedFile(FileChannel channel, long size) throws IOException {
+        try {
+            boolean writable = size >= 0;
+            if (writable && channel.size() != size) {
+                channel.truncate(Math.min(size, channel.size()));
+                if (size > 0)
+                    channel.write(ByteBuffer.allocate(1), size - 1);
+            }
+            this.size = writable ? size : channel.size();
+            FileChannel.MapMode mode = writable ? FileChannel.MapMode.READ_WRITE
+                    : FileChannel.MapMode.READ_ONLY;
+            this.chunks = new MappedByteBuffer[(int) ((this.size + CHUNK_SIZE - 1) >>> CHUNK_BITS)];
+            for (int c = 0; c < chunks.length; c++) {
+                long start = (long) c << CHUNK_BITS;
+                chunks[c] = channel.map(mode, start, Math.min(CHUNK_SIZE, this.size - start));
+            }
+            this.channel = channel;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Restituisce la dimensione del file in byte.
+     *
+     * @return la dimensione del file.
+     */
+    long size() {
+        return size;
+    }
+
+    byte get(long offset) {
+        return chunks[(int) (offset >>> CHUNK_BITS)].get((int) (offset & (CHUNK_SIZE - 1)));
+    }
+
+    int getInt(long offset) {
+        return chunks[(int) (offset >>> CHUNK_BITS)].getInt((int) (offset & (CHUNK_SIZE - 1)));
+    }
+
+    long getLong(long offset) {
+        return chunks[(int) (offset >>> CHUNK_BITS)].getLong((int) (offset & (CHUNK_SIZE - 1)));
+    }
+
+    void putLong(long offset, long value) {
+        chunks[(int) (offset >>> CHUNK_BITS)].putLong((int) (offset & (CHUNK_SIZE - 1)), value);
+    }
+
+    /**
+     * Restituisce una vista sui primi byte del file, che devono cadere nel
+     * primo blocco.
+     *
+     * @param length
+     *                   il numero di byte.
+     * @return una vista sui primi byte.
+     */
+    ByteBuffer head(int length) {
+        return chunks[0].slice(0, length);
+    }
+
+    /**
+     * Scrive su disco le modifiche ai blocchi mappati.
+     */
+    void force() {
+        for (MappedByteBuffer chunk : chunks)
+            chunk.force();
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
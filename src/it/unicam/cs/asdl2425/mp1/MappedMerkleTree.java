@@ -0,0 +1,656 @@
+package it.unicam.cs.asdl2425.mp1;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Iterator;
+
+/**
+ * Albero di Merkle memorizzato su file e letto tramite mappatura in memoria,
+ * per alberi più grandi della heap. Gli hash dei nodi e l'indice delle
+ * foglie vengono letti direttamente dalle pagine mappate, per cui la heap
+ * contiene solo la descrizione del file e la memoria occupata dall'albero è
+ * quella della cache delle pagine del sistema operativo. Il formato del file
+ * è descritto in {@link MerkleTreeFile}.
+ *
+ * <p>
+ * Un file può essere scritto da un {@link MerkleTree} con
+ * {@link #write(MerkleTree, Path)}, o costruito da una sequenza di hash delle
+ * foglie con
+ * {@link #create(Path, Iterator, HashFunction, Concatenation, TreeShape)},
+ * che calcola i livelli sul file stesso senza mai caricare l'albero in
+ * memoria. L'albero aperto è in sola lettura.
+ *
+ * <p>
+ * Entrambi i metodi possono scrivere i nodi con la disposizione
+ * {@link NodeLayout#BLOCKED}, con cui una prova di Merkle o un confronto
+ * leggono una pagina per fascia di livelli invece di una per livello; le
+ * operazioni sull'albero aperto non dipendono dalla disposizione.
+ *
+ * @author **JULIANO, SINAJ, juliano.sinaj@studenti.unicam.it**
+ */
+public final class MappedMerkleTree implements Closeable {
+
+    /**
+     * Dimensione del buffer usato per le scritture sequenziali.
+     */
+    private static final int WRITE_BUFFER = 1 << 20;
+
+    private final MappedFile file;
+    private final MerkleTreeFile format;
+    private final int words; // Numero di long per hash
+
+    private MappedMerkleTree(MappedFile file, MerkleTreeFile format) {
+        this.file = file;
+        this.format = format;
+        this.words = format.digestLength / 8;
+    }
+
+    /**
+     * Apre in sola lettura un albero memorizzato su file.
+     *
+     * @param path
+     *                 il percorso del file.
+     * @return l'albero mappato.
+     * @throws IOException
+     *                         se il file non può essere letto o non contiene
+     *                         un albero valido.
+     */
+    public static MappedMerkleTree open(Path path) throws IOException {
+        MappedFile file = new MappedFile(path);
+        try {
+            if (file.size() < MerkleTreeFile.HEADER_SIZE)
+                throw new IOException("Not a Merkle tree file");
+            MerkleTreeFile format = MerkleTreeFile.readHeader(
+                    file.head(MerkleTreeFile.HEADER_SIZE), file.size());
+            return new MappedMerkleTree(file, format);
+        } catch (IOException | RuntimeException e) {
+            file.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Scrive su file un albero di Merkle, senza ricalcolarne gli hash.
+     *
+     * @param tree
+     *                 l'albero da scrivere.
+     * @param path
+     *                 il percorso del file, sostituito se esiste.
+     * @throws IOException
+     *                                      se il file non può essere
+     *                                      scritto.
+     * @throws IllegalArgumentException
+     *                                      se l'albero o il percorso sono
+     *                                      null, o la funzione di hash
+     *                                      dell'albero non ha una codifica
+     *                                      binaria.
+     */
+    public static void write(MerkleTree<?> tree, Path path) throws IOException {
+        write(tree, path, NodeLayout.LEVELS);
+    }
+
+    /**
+     * Scrive su file un albero di Merkle con la disposizione dei nodi
+     * fornita, senza ricalcolarne gli hash. I nodi vengono scritti in
+     * sequenza nell'ordine del file.
+     *
+     * @param tree
+     *                   l'albero da scrivere.
+     * @param path
+     *                   il percorso del file, sostituito se esiste.
+     * @param layout
+     *                   la disposizione dei nodi nel file.
+     * @throws IOException
+     *                                      se il file non può essere
+     *                                      scritto.
+     * @throws IllegalArgumentException
+     *                                      se un parametro è null o la
+     *                                      funzione di hash dell'albero non
+     *                                      ha una codifica binaria.
+     */
+    public static void write(MerkleTree<?> tree, Path path, NodeLayout layout)
+            throws IOException {
+        if (tree == null || path == null || layout == null)
+            throw new IllegalArgumentException();
+        MerkleLevels levels = tree.getLevels();
+        MerkleTreeFile format = new MerkleTreeFile(levels.getHashFunction(),
+                levels.getConcatenation(), levels.getShape(), levels.getWidth(), layout);
+        BinaryFormat.idOf(format.hashFunction);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.allocate(WRITE_BUFFER);
+            format.writeHeader(buffer);
+            if (layout == NodeLayout.LEVELS)
+                writeLevels(channel, buffer, levels, format);
+            else writeBlocks(channel, buffer, levels, format);
+            flush(channel, buffer);
+        }
+        finish(path, format);
+    }
+
+    private static void writeLevels(FileChannel channel, ByteBuffer buffer,
+            MerkleLevels levels, MerkleTreeFile format) throws IOException {
+        for (int l = 0; l <= format.height; l++) {
+            long[] level = levels.levelArray(l);
+            for (int w = 0; w < level.length; w++) {
+                if (!buffer.hasRemaining())
+                    flush(channel, buffer);
+                buffer.putLong(level[w]);
+            }
+        }
+    }
+
+    /**
+     * Scrive i blocchi di ogni fascia in ordine, con zeri nelle posizioni dei
+     * nodi che non coprono foglie reali e in fondo a ogni blocco.
+     */
+    private static void writeBlocks(FileChannel channel, ByteBuffer buffer,
+            MerkleLevels levels, MerkleTreeFile format) throws IOException {
+        int words = format.digestLength / 8;
+        buffer.put(new byte[MerkleTreeFile.PAGE_SIZE - MerkleTreeFile.HEADER_SIZE]);
+        byte[] padding = new byte[(int) format.blockSize - format.blockNodes() * format.digestLength];
+        for (int band = 0; band < format.bands(); band++) {
+            for (long block = 0; block < format.blocks(band); block++) {
+                for (int slot = 0; slot < format.blockNodes(); slot++) {
+                    if (buffer.remaining() < format.digestLength)
+                        flush(channel, buffer);
+                    int l = format.slotLevel(band, slot);
+                    long i = format.slotIndex(block, slot);
+                    long[] level = l <= format.height && i < format.count(l)
+                            ? levels.levelArray(l) : null;
+                    for (int w = 0; w < words; w++)
+                        buffer.putLong(level == null ? 0 : level[(int) i * words + w]);
+                }
+                if (buffer.remaining() < padding.length)
+                    flush(channel, buffer);
+                buffer.put(padding);
+            }
+        }
+    }
+
+    /**
+     * Costruisce su file un albero di Merkle a partire dagli hash delle sue
+     * foglie. Le foglie vengono scritte in sequenza; i livelli superiori e
+     * l'indice delle foglie vengono poi calcolati sul file mappato, per cui
+     * la memoria necessaria non dipende dal numero di foglie.
+     *
+     * @param path
+     *                          il percorso del file, sostituito se esiste.
+     * @param leaves
+     *                          gli hash delle foglie, in ordine.
+     * @param hashFunction
+     *                          la funzione di hash delle foglie e dei nodi.
+     * @param concatenation
+     *                          la modalità di concatenazione.
+     * @param shape
+     *                          la forma dell'albero.
+     * @return l'albero costruito, aperto in sola lettura.
+     * @throws IOException
+     *                                      se il file non può essere
+     *                                      scritto.
+     * @throws IllegalArgumentException
+     *                                      se un parametro è null, un hash ha
+     *                                      una lunghezza diversa da quella
+     *                                      della funzione, o la funzione non
+     *                                      ha una codifica binaria.
+     */
+    public static MappedMerkleTree create(Path path, Iterator<Digest> leaves,
+            HashFunction hashFunction, Concatenation concatenation,
+            TreeShape shape) throws IOException {
+        return create(path, leaves, hashFunction, concatenation, shape, NodeLayout.LEVELS);
+    }
+
+    /**
+     * Costruisce su file un albero di Merkle a partire dagli hash delle sue
+     * foglie, con la disposizione dei nodi fornita. Poiché la posizione di
+     * una foglia nel file non dipende dal numero di foglie, le foglie vengono
+     * scritte in sequenza come in
+     * {@link #create(Path, Iterator, HashFunction, Concatenation, TreeShape)}.
+     *
+     * @param path
+     *                          il percorso del file, sostituito se esiste.
+     * @param leaves
+     *                          gli hash delle foglie, in ordine.
+     * @param hashFunction
+     *                          la funzione di hash delle foglie e dei nodi.
+     * @param concatenation
+     *                          la modalità di concatenazione.
+     * @param shape
+     *                          la forma dell'albero.
+     * @param layout
+     *                          la disposizione dei nodi nel file.
+     * @return l'albero costruito, aperto in sola lettura.
+     * @throws IOException
+     *                                      se il file non può essere
+     *                                      scritto.
+     * @throws IllegalArgumentException
+     *                                      se un parametro è null, un hash ha
+     *                                      una lunghezza diversa da quella
+     *                                      della funzione, o la funzione non
+     *                                      ha una codifica binaria.
+     */
+    public static MappedMerkleTree create(Path path, Iterator<Digest> leaves,
+            HashFunction hashFunction, Concatenation concatenation,
+            TreeShape shape, NodeLayout layout) throws IOException {
+        if (path == null || leaves == null || hashFunction == null
+                || concatenation == null || shape == null || layout == null)
+            throw new IllegalArgumentException();
+        BinaryFormat.idOf(hashFunction);
+        //le posizioni delle foglie sono le stesse per qualsiasi numero di foglie
+        MerkleTreeFile positions = new MerkleTreeFile(hashFunction, concatenation, shape, 0,
+                layout);
+        long width = 0;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.allocate(WRITE_BUFFER);
+            long start = positions.nodeOffset(0, 0); // Posizione nel file dell'inizio del buffer
+            while (leaves.hasNext()) {
+                Digest leaf = leaves.next();
+                if (leaf == null || leaf.length() != hashFunction.getDigestLength())
+                    throw new IllegalArgumentException("Invalid leaf hash at " + width);
+                long offset = positions.nodeOffset(0, width);
+                if (buffer.remaining() < leaf.length()
+                        || offset != start + buffer.position()) {
+                    flush(channel, buffer, start);
+                    start = offset;
+                }
+                buffer.put(leaf.toByteArray());
+                width++;
+            }
+            flush(channel, buffer, start);
+        }
+        MerkleTreeFile format = new MerkleTreeFile(hashFunction, concatenation, shape, width,
+                layout);
+        try (MappedFile file = new MappedFile(path, format.fileSize())) {
+            computeLevels(file, format);
+        }
+        finish(path, format);
+        return open(path);
+    }
+
+    /**
+     * Restituisce il numero di foglie dell'albero.
+     *
+     * @return il numero di foglie.
+     */
+    public long getWidth() {
+        return format.width;
+    }
+
+    /**
+     * Restituisce l'altezza dell'albero.
+     *
+     * @return l'altezza dell'albero.
+     */
+    public int getHeight() {
+        return format.height;
+    }
+
+    /**
+     * Restituisce la funzione di hash dell'albero.
+     *
+     * @return la funzione di hash.
+     */
+    public HashFunction getHashFunction() {
+        return format.hashFunction;
+    }
+
+    /**
+     * Restituisce la modalità di concatenazione dell'albero.
+     *
+     * @return la modalità di concatenazione.
+     */
+    public Concatenation getConcatenation() {
+        return format.concatenation;
+    }
+
+    /**
+     * Restituisce la forma dell'albero.
+     *
+     * @return la forma dell'albero.
+     */
+    public TreeShape getShape() {
+        return format.shape;
+    }
+
+    /**
+     * Restituisce la disposizione dei nodi nel file.
+     *
+     * @return la disposizione dei nodi.
+     */
+    public NodeLayout getLayout() {
+        return format.layout;
+    }
+
+    /**
+     * Restituisce la radice dell'albero, come nodo senza figli.
+     *
+     * @return la radice dell'albero.
+     */
+    public MerkleNode getRoot() {
+        return new MerkleNode(getDigest(format.height, 0));
+    }
+
+    /**
+     * Restituisce l'hash di un nodo, o {@link Digest#EMPTY} se il nodo è di
+     * padding.
+     *
+     * @param level
+     *                  il livello del nodo.
+     * @param index
+     *                  la posizione del nodo nel livello.
+     * @return l'hash del nodo.
+     * @throws IllegalArgumentException
+     *                                      se la posizione non è valida.
+     */
+    public Digest getDigest(int level, long index) {
+        if (level < 0 || level > format.height || index < 0
+                || index >= 1L << (format.height - level))
+            throw new IllegalArgumentException("Invalid node position");
+        if (index >= format.count(level))
+            return Digest.EMPTY;
+        long[] digest = new long[words];
+        long offset = format.nodeOffset(level, index);
+        for (int w = 0; w < words; w++)
+            digest[w] = file.getLong(offset + w * 8L);
+        return Digest.read(digest, 0, words);
+    }
+
+    /**
+     * Restituisce la prima posizione di una foglia con l'hash fornito,
+     * cercandola nell'indice memorizzato nel file.
+     *
+     * @param hash
+     *                 l'hash da cercare.
+     * @return la posizione della foglia, o -1 se non presente.
+     * @throws IllegalArgumentException
+     *                                      se l'hash è null.
+     */
+    public long getIndexOfHash(Digest hash) {
+        if (hash == null)
+            throw new IllegalArgumentException();
+        if (hash.length() != format.digestLength || format.width == 0)
+            return -1;
+        long base = format.indexOffset();
+        long mask = format.indexCapacity - 1;
+        long slot = format.indexSlot(hash.word(0));
+        while (true) {
+            long entry = file.getLong(base + slot * 8);
+            if (entry == 0)
+                return -1;
+            if (leafEquals(entry - 1, hash))
+                return entry - 1;
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    private boolean leafEquals(long index, Digest hash) {
+        long offset = format.nodeOffset(0, index);
+        for (int w = 0; w < words; w++)
+            if (file.getLong(offset + w * 8L) != hash.word(w))
+                return false;
+        return true;
+    }
+
+    /**
+     * Restituisce la prima posizione di un dato, il cui hash è calcolato da
+     * {@code hashCode()} come in {@link HashUtil#dataToDigest(Object)}.
+     *
+     * @param data
+     *                 il dato da cercare.
+     * @return la posizione del dato, o -1 se non presente.
+     * @throws IllegalArgumentException
+     *                                      se il dato è null.
+     */
+    public long getIndexOfData(Object data) {
+        if (data == null)
+            throw new IllegalArgumentException();
+        return getIndexOfHash(HashUtil.dataToDigest(data, format.hashFunction));
+    }
+
+    /**
+     * Restituisce true se il dato è una foglia dell'albero.
+     *
+     * @param data
+     *                 il dato da validare.
+     * @return true se l'hash del dato è quello di una foglia; false
+     *         altrimenti o se il dato è null.
+     */
+    public boolean validateData(Object data) {
+        return data != null && getIndexOfData(data) >= 0;
+    }
+
+    /**
+     * Restituisce true se il dato è una foglia dell'albero, calcolandone
+     * l'hash con un funnel.
+     *
+     * @param <T>
+     *                   il tipo del dato.
+     * @param data
+     *                   il dato da validare.
+     * @param funnel
+     *                   il funnel del dato.
+     * @return true se l'hash del dato è quello di una foglia; false
+     *         altrimenti o se il dato è null.
+     * @throws IllegalArgumentException
+     *                                      se il funnel è null.
+     */
+    public <T> boolean validateData(T data, Funnel<? super T> funnel) {
+        if (funnel == null)
+            throw new IllegalArgumentException();
+        return data != null
+                && getIndexOfHash(format.hashFunction.hashObject(data, funnel)) >= 0;
+    }
+
+    /**
+     * Restituisce la prova di Merkle della foglia in una data posizione,
+     * leggendo dal file solo i fratelli del suo cammino.
+     *
+     * @param leafIndex
+     *                      la posizione della foglia.
+     * @return la prova di Merkle della foglia.
+     * @throws IllegalArgumentException
+     *                                      se la posizione non è valida.
+     */
+    public MerkleProof getMerkleProof(long leafIndex) {
+        if (leafIndex < 0 || leafIndex >= format.width)
+            throw new IllegalArgumentException("Invalid leaf index");
+        boolean promote = format.shape == TreeShape.PROMOTE;
+        int length = 0;
+        for (int l = 0; l < format.height; l++)
+            if (!promote || ((leafIndex >>> l) ^ 1) < format.count(l))
+                length++;
+        MerkleProof proof = new MerkleProof(getDigest(format.height, 0), length,
+                format.concatenation, format.hashFunction);
+        for (int l = 0; l < format.height; l++) {
+            long index = leafIndex >>> l;
+            if (!promote || (index ^ 1) < format.count(l))
+                proof.addHash(getDigest(l, index ^ 1), (index & 1) == 1);
+        }
+        return proof;
+    }
+
+    /**
+     * Restituisce la prova di Merkle della prima foglia con l'hash del dato
+     * fornito.
+     *
+     * @param data
+     *                 il dato.
+     * @return la prova di Merkle del dato, o null se il dato non è presente.
+     * @throws IllegalArgumentException
+     *                                      se il dato è null.
+     */
+    public MerkleProof getMerkleProof(Object data) {
+        long index = getIndexOfData(data);
+        return index < 0 ? null : getMerkleProof(index);
+    }
+
+    /**
+     * Restituisce le posizioni delle foglie che differiscono tra questo albero
+     * e un altro con le stesse caratteristiche, scendendo solo nei
+     * sottoalberi con hash diversi.
+     *
+     * @param other
+     *                  l'albero da confrontare.
+     * @return le posizioni delle foglie diverse, in ordine crescente.
+     * @throws IllegalArgumentException
+     *                                      se l'altro albero è null o ha un
+     *                                      numero di foglie, una forma, una
+     *                                      funzione di hash o una
+     *                                      concatenazione diversi.
+     */
+    public long[] findInvalidDataIndices(MappedMerkleTree other) {
+        if (other == null || other.format.width != format.width
+                || other.format.shape != format.shape
+                || other.format.hashFunction != format.hashFunction
+                || other.format.concatenation != format.concatenation)
+            throw new IllegalArgumentException("The trees have a different shape");
+        long[] out = new long[16];
+        int n = 0;
+        if (format.width == 0)
+            return new long[0];
+        //discesa in profondità da sinistra, con una pila di nodi da visitare
+        int[] levels = new int[format.height + 2];
+        long[] indices = new long[format.height + 2];
+        levels[0] = format.height;
+        indices[0] = 0;
+        int top = 1;
+        while (top > 0) {
+            top--;
+            int l = levels[top];
+            long i = indices[top];
+            if (i >= format.count(l) || sameNode(other, l, i))
+                continue;
+            if (l == 0) {
+                if (n == out.length)
+                    out = Arrays.copyOf(out, n * 2);
+                out[n++] = i;
+                continue;
+            }
+            levels[top] = l - 1;
+            indices[top++] = 2 * i + 1;
+            levels[top] = l - 1;
+            indices[top++] = 2 * i;
+        }
+        return Arrays.copyOf(out, n);
+    }
+
+    private boolean sameNode(MappedMerkleTree other, int level, long index) {
+        long a = format.nodeOffset(level, index);
+        long b = other.format.nodeOffset(level, index);
+        for (int w = 0; w < words; w++)
+            if (file.getLong(a + w * 8L) != other.file.getLong(b + w * 8L))
+                return false;
+        return true;
+    }
+
+    /**
+     * Chiude il file. Le pagine mappate vengono rilasciate quando l'albero
+     * non è più raggiungibile.
+     *
+     * @throws IOException
+     *                         se il file non può essere chiuso.
+     */
+    @Override
+    public void close() throws IOException {
+        file.close();
+    }
+
+    private static void flush(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining())
+            channel.write(buffer);
+        buffer.clear();
+    }
+
+    private static void flush(FileChannel channel, ByteBuffer buffer, long position)
+            throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining())
+            position += channel.write(buffer, position);
+        buffer.clear();
+    }
+
+    /**
+     * Completa un file di cui sono stati scritti i livelli, aggiungendo
+     * l'indice delle foglie e l'intestazione.
+     */
+    private static void finish(Path path, MerkleTreeFile format) throws IOException {
+        try (MappedFile file = new MappedFile(path, format.fileSize())) {
+            writeIndex(file, format);
+            format.writeHeader(file.head(MerkleTreeFile.HEADER_SIZE));
+            file.force();
+        }
+    }
+
+    /**
+     * Calcola i livelli superiori dell'albero sul file, livello per livello,
+     * leggendo i figli dalle pagine mappate.
+     */
+    private static void computeLevels(MappedFile file, MerkleTreeFile format) {
+        int words = format.digestLength / 8;
+        long[] children = new long[2 * words];
+        byte[] buffer = new byte[format.digestLength * 5];
+        int out = format.digestLength * 4;
+        for (int l = 1; l <= format.height; l++) {
+            long below = format.count(l - 1);
+            for (long i = 0; i < format.count(l); i++) {
+                boolean single = 2 * i + 1 >= below;
+                int count = single ? words : 2 * words;
+                long from = format.nodeOffset(l - 1, 2 * i);
+                for (int w = 0; w < count; w++)
+                    children[w] = file.getLong(from + w * 8L);
+                long to = format.nodeOffset(l, i);
+                if (single && format.shape == TreeShape.PROMOTE) {
+                    for (int w = 0; w < words; w++)
+                        file.putLong(to + w * 8L, children[w]);
+                    continue;
+                }
+                int n = format.concatenation.write(children, 0, words, buffer, 0);
+                if (!single)
+                    n += format.concatenation.write(children, words, words, buffer, n);
+                format.hashFunction.hashInto(buffer, 0, n, buffer, out);
+                Digest.readWords(buffer, out, words, children, 0);
+                for (int w = 0; w < words; w++)
+                    file.putLong(to + w * 8L, children[w]);
+            }
+        }
+    }
+
+    /**
+     * Scrive l'indice delle foglie, inserendo le posizioni in ordine
+     * crescente e solo la prima di ogni hash ripetuto.
+     */
+    private static void writeIndex(MappedFile file, MerkleTreeFile format) {
+        long base = format.indexOffset();
+        long mask = format.indexCapacity - 1;
+        int words = format.digestLength / 8;
+        for (long p = 0; p < format.width; p++) {
+            long slot = format.indexSlot(file.getLong(format.nodeOffset(0, p)));
+            while (true) {
+                long entry = file.getLong(base + slot * 8);
+                if (entry == 0) {
+                    file.putLong(base + slot * 8, p + 1);
+                    break;
+                }
+                if (sameLeaf(file, format, entry - 1, p, words))
+                    break;
+                slot = (slot + 1) & mask;
+            }
+        }
+    }
+
+    private static boolean sameLeaf(MappedFile file, MerkleTreeFile format,
+            long a, long b, int words) {
+        for (int w = 0; w < words; w++)
+            if (file.getLong(format.nodeOffset(0, a) + w * 8L)
+                    != file.getLong(format.nodeOffset(0, b) + w * 8L))
+                return false;
+        return true;
+    }
+}
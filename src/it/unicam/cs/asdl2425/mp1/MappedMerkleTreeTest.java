@@ -0,0 +1,200 @@
+package it.unicam.cs.asdl2425.mp1;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Classe di test per la classe {@link MappedMerkleTree}. Questa classe
+ * verifica la scrittura su file di un albero di Merkle e le operazioni
+ * eseguite direttamente sul file mappato.
+ * Di seguito, l'elenco dei test inclusi con una breve descrizione:
+ *
+ * <ul>
+ * <li>{@link #testWriteAndOpen()}: Verifica che un albero scritto su file e
+ * riaperto abbia gli stessi nodi, le stesse prove e le stesse ricerche
+ * dell'albero originale, per entrambe le forme.</li>
+ *
+ * <li>{@link #testCreate()}: Verifica che un albero costruito sul file dagli
+ * hash delle foglie produca lo stesso file dell'albero costruito in
+ * memoria.</li>
+ *
+ * <li>{@link #testFindInvalidDataIndices()}: Verifica che il confronto tra due
+ * alberi mappati restituisca le foglie diverse.</li>
+ *
+ * <li>{@link #testInvalidFile()}: Verifica che un file non valido o troncato
+ * venga respinto.</li>
+ *
+ * <li>{@link #testBlockedLayout()}: Verifica che un albero disposto a blocchi,
+ * scritto o costruito sul file, abbia gli stessi nodi, prove e ricerche
+ * dell'albero originale e venga caricato da {@link MerkleTree#load}.</li>
+ *
+ * <li>{@link #testBlockedPages()}: Verifica che una prova su un albero disposto
+ * a blocchi legga una pagina per fascia di livelli.</li>
+ * </ul>
+ */
+class MappedMerkleTreeTest {
+
+    @TempDir
+    Path dir;
+
+    private static MerkleTree<Integer> tree(int width, TreeShape shape, int changed) {
+        HashLinkedList<Integer> list = new HashLinkedList<>(HashFunction.SHA256);
+        for (int i = 0; i < width; i++)
+            list.addAtTail(i == changed ? -1 : i % 10);
+        return new MerkleTree<>(list, new MerkleTree.Options()
+                .setConcatenation(Concatenation.BINARY).setShape(shape));
+    }
+
+    @Test
+    void testWriteAndOpen() throws IOException {
+        for (TreeShape shape : TreeShape.values()) {
+            MerkleTree<Integer> tree = tree(13, shape, -1);
+            Path path = dir.resolve("tree-" + shape);
+            MappedMerkleTree.write(tree, path);
+            try (MappedMerkleTree mapped = MappedMerkleTree.open(path)) {
+                assertEquals(13, mapped.getWidth(), "Il numero di foglie non è corretto");
+                assertEquals(tree.getHeight(), mapped.getHeight(), "L'altezza non è corretta");
+                assertEquals(shape, mapped.getShape(), "La forma non è corretta");
+                assertEquals(tree.getRoot().getDigest(), mapped.getRoot().getDigest(),
+                        "La radice dovrebbe coincidere");
+                for (int l = 0; l <= tree.getHeight(); l++)
+                    for (int i = 0; i < 1 << (tree.getHeight() - l); i++)
+                        assertEquals(tree.getNode(l, i).getDigest(), mapped.getDigest(l, i),
+                                "Il nodo (" + l + ", " + i + ") dovrebbe coincidere");
+                for (int i = 0; i < 13; i++) {
+                    MerkleProof proof = mapped.getMerkleProof((long) i);
+                    assertEquals(tree.getMerkleProof(i).getSize(), proof.getSize(),
+                            "La prova della foglia " + i + " dovrebbe avere la stessa lunghezza");
+                    assertTrue(proof.proveValidityOfData(i % 10),
+                            "La prova della foglia " + i + " dovrebbe essere valida");
+                }
+                assertEquals(3, mapped.getIndexOfData(3), "Dovrebbe essere trovata la prima posizione");
+                assertTrue(mapped.validateData(12 % 10), "Il dato dovrebbe essere valido");
+                assertFalse(mapped.validateData(42), "Un dato assente non dovrebbe essere valido");
+                assertNull(mapped.getMerkleProof(Integer.valueOf(42)),
+                        "Un dato assente non dovrebbe avere una prova");
+            }
+        }
+    }
+
+    @Test
+    void testCreate() throws IOException {
+        MerkleTree<Integer> tree = tree(1000, TreeShape.PROMOTE, -1);
+        Path written = dir.resolve("written");
+        MappedMerkleTree.write(tree, written);
+        List<Digest> leaves = new ArrayList<>();
+        for (int i = 0; i < 1000; i++)
+            leaves.add(tree.getNode(0, i).getDigest());
+        Path created = dir.resolve("created");
+        try (MappedMerkleTree mapped = MappedMerkleTree.create(created, leaves.iterator(),
+                HashFunction.SHA256, Concatenation.BINARY, TreeShape.PROMOTE)) {
+            assertEquals(tree.getRoot().getDigest(), mapped.getRoot().getDigest(),
+                    "La radice dovrebbe coincidere");
+        }
+        assertEquals(-1, Files.mismatch(written, created), "I due file dovrebbero coincidere");
+        try (MappedMerkleTree empty = MappedMerkleTree.create(dir.resolve("empty"),
+                new ArrayList<Digest>().iterator(), HashFunction.MD5, Concatenation.HEX,
+                TreeShape.PAD)) {
+            assertEquals(Digest.EMPTY, empty.getRoot().getDigest(), "La radice dovrebbe essere vuota");
+            assertEquals(-1, empty.getIndexOfData(1), "Un albero vuoto non ha foglie");
+        }
+    }
+
+    @Test
+    void testFindInvalidDataIndices() throws IOException {
+        MappedMerkleTree.write(tree(300, TreeShape.PAD, -1), dir.resolve("a"));
+        MappedMerkleTree.write(tree(300, TreeShape.PAD, 257), dir.resolve("b"));
+        MappedMerkleTree.write(tree(299, TreeShape.PAD, -1), dir.resolve("c"));
+        try (MappedMerkleTree a = MappedMerkleTree.open(dir.resolve("a"));
+                MappedMerkleTree b = MappedMerkleTree.open(dir.resolve("b"));
+                MappedMerkleTree c = MappedMerkleTree.open(dir.resolve("c"))) {
+            assertArrayEquals(new long[] { 257 }, a.findInvalidDataIndices(b),
+                    "Dovrebbe differire solo la foglia 257");
+            assertArrayEquals(new long[0], a.findInvalidDataIndices(a),
+                    "Un albero non dovrebbe differire da se stesso");
+            assertThrows(IllegalArgumentException.class, () -> a.findInvalidDataIndices(c),
+                    "Alberi con un numero di foglie diverso non dovrebbero essere confrontati");
+        }
+    }
+
+    @Test
+    void testInvalidFile() throws IOException {
+        Path garbage = dir.resolve("garbage");
+        Files.write(garbage, new byte[100]);
+        assertThrows(IOException.class, () -> MappedMerkleTree.open(garbage),
+                "Un file senza intestazione dovrebbe essere respinto");
+        Path path = dir.resolve("tree");
+        MappedMerkleTree.write(tree(10, TreeShape.PAD, -1), path);
+        byte[] bytes = Files.readAllBytes(path);
+        Path truncated = dir.resolve("truncated");
+        Files.write(truncated, Arrays.copyOf(bytes, bytes.length - 8));
+        assertThrows(IOException.class, () -> MappedMerkleTree.open(truncated),
+                "Un file troncato dovrebbe essere respinto");
+    }
+
+
+    @Test
+    void testBlockedLayout() throws IOException {
+        for (TreeShape shape : TreeShape.values()) {
+            for (int width : new int[] { 1, 13, 1000 }) {
+                MerkleTree<Integer> tree = tree(width, shape, -1);
+                Path path = dir.resolve("blocked-" + shape + "-" + width);
+                tree.save(path, NodeLayout.BLOCKED);
+                try (MappedMerkleTree mapped = MappedMerkleTree.open(path)) {
+                    assertEquals(NodeLayout.BLOCKED, mapped.getLayout(), "La disposizione non è corretta");
+                    for (int l = 0; l <= tree.getHeight(); l++)
+                        for (int i = 0; i < 1 << (tree.getHeight() - l); i++)
+                            assertEquals(tree.getNode(l, i).getDigest(), mapped.getDigest(l, i),
+                                    "Il nodo (" + l + ", " + i + ") dovrebbe coincidere");
+                    for (int i = 0; i < width; i++)
+                        assertTrue(mapped.getMerkleProof((long) i).proveValidityOfData(i % 10),
+                                "La prova della foglia " + i + " dovrebbe essere valida");
+                    assertEquals(Math.min(3, width - 1), mapped.getIndexOfData(3 % width),
+                            "Dovrebbe essere trovata la prima posizione");
+                }
+                List<Digest> leaves = new ArrayList<>();
+                for (int i = 0; i < width; i++)
+                    leaves.add(tree.getNode(0, i).getDigest());
+                Path created = dir.resolve("created-" + shape + "-" + width);
+                MappedMerkleTree.create(created, leaves.iterator(), HashFunction.SHA256,
+                        Concatenation.BINARY, shape, NodeLayout.BLOCKED).close();
+                assertEquals(-1, Files.mismatch(path, created), "I due file dovrebbero coincidere");
+                MerkleTree<Integer> loaded = MerkleTree.load(path);
+                assertEquals(tree.getRoot(), loaded.getRoot(), "La radice caricata dovrebbe coincidere");
+                assertArrayEquals(tree.getIndicesOfData(0), loaded.getIndicesOfData(0),
+                        "Le posizioni caricate dovrebbero coincidere");
+            }
+        }
+        MappedMerkleTree.write(tree(1000, TreeShape.PAD, -1), dir.resolve("levels"));
+        MappedMerkleTree.write(tree(1000, TreeShape.PAD, 700), dir.resolve("blocked"),
+                NodeLayout.BLOCKED);
+        try (MappedMerkleTree a = MappedMerkleTree.open(dir.resolve("levels"));
+                MappedMerkleTree b = MappedMerkleTree.open(dir.resolve("blocked"))) {
+            assertArrayEquals(new long[] { 700 }, a.findInvalidDataIndices(b),
+                    "Alberi con disposizioni diverse dovrebbero essere confrontabili");
+        }
+    }
+
+    @Test
+    void testBlockedPages() {
+        long width = 1L << 30;
+        MerkleTreeFile levels = new MerkleTreeFile(HashFunction.SHA256, Concatenation.BINARY,
+                TreeShape.PAD, width, NodeLayout.LEVELS);
+        MerkleTreeFile blocked = new MerkleTreeFile(HashFunction.SHA256, Concatenation.BINARY,
+                TreeShape.PAD, width, NodeLayout.BLOCKED);
+        assertEquals(6, blocked.blockLevels, "Un blocco di SHA-256 dovrebbe avere 6 livelli per sottoalbero");
+        assertTrue(LayoutBenchmark.pagesPerProof(levels, 100) > 25,
+                "Per livelli dovrebbe essere letta quasi una pagina per livello");
+        assertEquals(blocked.bands(), LayoutBenchmark.pagesPerProof(blocked, 100), 1e-9,
+                "A blocchi dovrebbe essere letta una pagina per fascia");
+    }
+}
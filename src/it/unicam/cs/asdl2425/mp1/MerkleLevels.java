@@ -0,0 +1,677 @@
+package it.unicam.cs.asdl2425.mp1;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Memorizzazione piatta dei livelli di un albero di Merkle. Ogni livello è
+ * mantenuto in un unico array contiguo di {@code long}, in cui ogni hash
+ * occupa due (128 bit) o quattro (256 bit) posizioni consecutive. Il livello 0
+ * contiene le foglie, il livello {@code height} contiene la sola radice.
+ *
+ * <p>
+ * I nodi di padding, necessari a portare il numero di foglie alla potenza di
+ * due successiva, non hanno un hash proprio né spazio nei livelli: un nodo è
+ * vuoto se tutte le foglie che rappresenta cadono oltre la larghezza
+ * dell'albero, per cui la condizione è puramente posizionale. Ogni livello
+ * memorizza quindi solo i nodi che coprono almeno una foglia reale, e la
+ * memoria e il tempo di costruzione crescono con il numero di foglie reali.
+ * Tutti i sottoalberi vuoti condividono lo stesso hash canonico
+ * {@link Digest#EMPTY}, qualunque sia il loro livello, perché l'hash di un
+ * nodo con entrambi i figli vuoti è a sua volta vuoto.
+ *
+ * @author **JULIANO, SINAJ, juliano.sinaj@studenti.unicam.it**
+ */
+final class MerkleLevels {
+
+    /**
+     * I livelli dell'albero, dalle foglie (indice 0) alla radice.
+     */
+    private final long[][] levels;
+
+    /**
+     * Numero di foglie reali, escluso il padding.
+     */
+    private final int width;
+
+    /**
+     * Modalità di concatenazione degli hash dei figli.
+     */
+    private final Concatenation concatenation;
+
+    /**
+     * Funzione di hash usata per i nodi interni.
+     */
+    private final HashFunction hashFunction;
+
+    /**
+     * Trattamento dei nodi senza fratello.
+     */
+    private final TreeShape shape;
+
+    /**
+     * Numero di long necessari per memorizzare un hash.
+     */
+    private final int words;
+
+    /**
+     * Altezza dell'albero.
+     */
+    private final int height;
+
+    /**
+     * Alloca i livelli di un albero con la larghezza e l'altezza fornite.
+     *
+     * @param width
+     *                          il numero di foglie reali.
+     * @param height
+     *                          l'altezza dell'albero.
+     * @param concatenation
+     *                          la modalità di concatenazione degli hash.
+     * @param hashFunction
+     *                          la funzione di hash per i nodi interni.
+     */
+    MerkleLevels(int width, int height, Concatenation concatenation,
+            HashFunction hashFunction) {
+        this(width, height, concatenation, hashFunction, TreeShape.PAD);
+    }
+
+    /**
+     * Alloca i livelli di un albero con la forma fornita.
+     *
+     * @param width
+     *                          il numero di foglie reali.
+     * @param height
+     *                          l'altezza dell'albero.
+     * @param concatenation
+     *                          la modalità di concatenazione degli hash.
+     * @param hashFunction
+     *                          la funzione di hash per i nodi interni.
+     * @param shape
+     *                          il trattamento dei nodi senza fratello.
+     */
+    MerkleLevels(int width, int height, Concatenation concatenation,
+            HashFunction hashFunction, TreeShape shape) {
+        this.width = width;
+        this.shape = shape;
+        this.height = height;
+        this.concatenation = concatenation;
+        this.hashFunction = hashFunction;
+        this.words = hashFunction.getDigestLength() / 8;
+        this.levels = new long[height + 1][];
+        for (int l = 0; l <= height; l++)
+            levels[l] = new long[count(l) * words];
+    }
+
+    int getWidth() {
+        return width;
+    }
+
+    int getHeight() {
+        return height;
+    }
+
+    Concatenation getConcatenation() {
+        return concatenation;
+    }
+
+    HashFunction getHashFunction() {
+        return hashFunction;
+    }
+
+    TreeShape getShape() {
+        return shape;
+    }
+
+    /**
+     * Restituisce l'array di un livello, con {@link #count(int)} hash, per la
+     * lettura e la scrittura su file.
+     *
+     * @param level
+     *                  il livello.
+     * @return l'array del livello.
+     */
+    long[] levelArray(int level) {
+        return levels[level];
+    }
+
+    /**
+     * Restituisce il numero di nodi di un livello, padding incluso.
+     *
+     * @param level
+     *                  il livello.
+     * @return il numero di nodi del livello.
+     */
+    int size(int level) {
+        return 1 << (height - level);
+    }
+
+    /**
+     * Restituisce il numero di nodi non vuoti di un livello, ovvero di nodi
+     * memorizzati.
+     *
+     * @param level
+     *                  il livello.
+     * @return il numero di nodi non vuoti del livello.
+     */
+    int count(int level) {
+        return (int) ((width + (1L << level) - 1) >>> level);
+    }
+
+    /**
+     * Restituisce true se il nodo è di padding, ovvero se non copre alcuna
+     * foglia reale.
+     *
+     * @param level
+     *                  il livello del nodo.
+     * @param index
+     *                  la posizione del nodo nel livello.
+     * @return true se il nodo è vuoto, false altrimenti.
+     */
+    boolean isEmpty(int level, int index) {
+        return ((long) index << level) >= width;
+    }
+
+    /**
+     * Memorizza l'hash di una foglia.
+     *
+     * @param index
+     *                   la posizione della foglia.
+     * @param digest
+     *                   l'hash della foglia.
+     * @throws IllegalArgumentException
+     *                                      se la lunghezza dell'hash non è
+     *                                      quella della funzione di hash.
+     */
+    void setLeaf(int index, Digest digest) {
+        if (digest.length() != words * 8)
+            throw new IllegalArgumentException("Leaf digest length mismatch");
+        digest.write(levels[0], index * words);
+    }
+
+    /**
+     * Calcola gli hash di tutti i nodi interni a partire dalle foglie. Un
+     * nodo con entrambi i figli vuoti resta vuoto; altrimenti il suo hash è
+     * l'hash della concatenazione degli hash dei figli.
+     */
+    void build() {
+        buildSubtree(height, 0, newBuffer());
+    }
+
+    /**
+     * Calcola gli hash di tutti i nodi interni del sottoalbero con radice
+     * nel nodo fornito, livello per livello.
+     *
+     * @param level
+     *                   il livello della radice del sottoalbero.
+     * @param index
+     *                   la posizione della radice nel livello.
+     * @param buffer
+     *                   un buffer di lavoro ottenuto da {@link #newBuffer()}.
+     */
+    private void buildSubtree(int level, int index, byte[] buffer) {
+        for (int l = 1; l <= level; l++) {
+            int first = index << (level - l);
+            int last = first + (1 << (level - l));
+            for (int i = first; i < last && !isEmpty(l, i); i++)
+                computeNode(l, i, buffer);
+        }
+    }
+
+    /**
+     * Restituisce un task che calcola gli hash di tutti i nodi interni
+     * suddividendo l'albero in sottoalberi indipendenti, costruiti in
+     * parallelo quando hanno più di {@code cutoff} foglie. Il risultato è
+     * identico a quello di {@link #build()}.
+     *
+     * @param cutoff
+     *                   il numero di foglie sotto il quale un sottoalbero
+     *                   viene costruito sequenzialmente.
+     * @return il task di costruzione.
+     */
+    RecursiveAction buildTask(int cutoff) {
+        return new BuildTask(height, 0, cutoff);
+    }
+
+    private final class BuildTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int level;
+        private final int index;
+        private final int cutoff;
+
+        BuildTask(int level, int index, int cutoff) {
+            this.level = level;
+            this.index = index;
+            this.cutoff = cutoff;
+        }
+
+        @Override
+        protected void compute() {
+            if (isEmpty(level, index))
+                return; // sottoalbero interamente di padding
+            if ((1L << level) <= cutoff) {
+                buildSubtree(level, index, newBuffer());
+                return;
+            }
+            invokeAll(new BuildTask(level - 1, 2 * index, cutoff),
+                    new BuildTask(level - 1, 2 * index + 1, cutoff));
+            computeNode(level, index, newBuffer());
+        }
+    }
+
+    /**
+     * Restituisce un task che ricalcola gli hash di tutti i nodi interni a
+     * partire da quelli memorizzati nei figli e li confronta con quelli
+     * memorizzati, senza modificarli. I sottoalberi con più di {@code cutoff}
+     * foglie vengono controllati in parallelo.
+     *
+     * @param cutoff
+     *                   il numero di foglie sotto il quale un sottoalbero
+     *                   viene controllato sequenzialmente.
+     * @return il task di controllo, che restituisce true se tutti i nodi sono
+     *         coerenti con i figli.
+     */
+    RecursiveTask<Boolean> verifyTask(int cutoff) {
+        return new VerifyTask(height, 0, cutoff);
+    }
+
+    private final class VerifyTask extends RecursiveTask<Boolean> {
+        private static final long serialVersionUID = 1L;
+
+        private final int level;
+        private final int index;
+        private final int cutoff;
+
+        VerifyTask(int level, int index, int cutoff) {
+            this.level = level;
+            this.index = index;
+            this.cutoff = cutoff;
+        }
+
+        @Override
+        protected Boolean compute() {
+            if (isEmpty(level, index))
+                return true;
+            if ((1L << level) <= cutoff)
+                return verifySubtree(level, index);
+            VerifyTask right = new VerifyTask(level - 1, 2 * index + 1, cutoff);
+            right.fork();
+            boolean valid = new VerifyTask(level - 1, 2 * index, cutoff).compute();
+            valid &= right.join();
+            return valid && checkNode(level, index, newBuffer(), new long[words]);
+        }
+    }
+
+    /**
+     * Controlla tutti i nodi interni del sottoalbero con radice nel nodo
+     * fornito, livello per livello.
+     */
+    private boolean verifySubtree(int level, int index) {
+        byte[] buffer = newBuffer();
+        long[] scratch = new long[words];
+        for (int l = 1; l <= level; l++) {
+            int first = index << (level - l);
+            int last = first + (1 << (level - l));
+            for (int i = first; i < last && !isEmpty(l, i); i++)
+                if (!checkNode(l, i, buffer, scratch))
+                    return false;
+        }
+        return true;
+    }
+
+    /**
+     * Restituisce true se l'hash memorizzato di un nodo interno non vuoto
+     * coincide con quello calcolato dai figli come in {@link #computeNode}.
+     */
+    private boolean checkNode(int level, int index, byte[] buffer, long[] scratch) {
+        long[] children = levels[level - 1];
+        boolean single = isEmpty(level - 1, 2 * index + 1);
+        if (single && shape == TreeShape.PROMOTE)
+            return Arrays.equals(children, 2 * index * words, (2 * index + 1) * words,
+                    levels[level], index * words, (index + 1) * words);
+        int n = concatenation.write(children, 2 * index * words, words,
+                buffer, 0);
+        if (!single)
+            n += concatenation.write(children, (2 * index + 1) * words, words,
+                    buffer, n);
+        int out = words * 8 * 4;
+        hashFunction.hashInto(buffer, 0, n, buffer, out);
+        Digest.readWords(buffer, out, words, scratch, 0);
+        return Arrays.equals(scratch, 0, words, levels[level], index * words,
+                (index + 1) * words);
+    }
+
+    /**
+     * Sostituisce l'hash di una foglia e ricalcola solo i nodi nel cammino
+     * dalla foglia alla radice.
+     *
+     * @param index
+     *                   la posizione della foglia.
+     * @param digest
+     *                   il nuovo hash della foglia.
+     */
+    void updateLeaf(int index, Digest digest) {
+        setLeaf(index, digest);
+        byte[] buffer = newBuffer();
+        for (int l = 1; l <= height; l++) {
+            index >>>= 1;
+            computeNode(l, index, buffer);
+        }
+    }
+
+    /**
+     * Sostituisce gli hash di un insieme di foglie e ricalcola i loro
+     * antenati livello per livello, dal basso verso l'alto. Ogni antenato
+     * comune a più foglie viene ricalcolato una sola volta.
+     *
+     * @param indices
+     *                    le posizioni delle foglie, distinte.
+     * @param digests
+     *                    i nuovi hash, nello stesso ordine delle posizioni.
+     */
+    void updateLeaves(int[] indices, Digest[] digests) {
+        rehashBatch(indices, digests, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Restituisce un task che esegue {@link #updateLeaves(int[], Digest[])},
+     * ricalcolando in parallelo i nodi di un livello quando quelli da
+     * aggiornare sono più di {@code cutoff}.
+     *
+     * @param indices
+     *                    le posizioni delle foglie, distinte.
+     * @param digests
+     *                    i nuovi hash, nello stesso ordine delle posizioni.
+     * @param cutoff
+     *                    il numero di nodi sotto il quale un livello viene
+     *                    ricalcolato sequenzialmente.
+     * @return il task di aggiornamento.
+     */
+    RecursiveAction updateLeavesTask(int[] indices, Digest[] digests,
+            int cutoff) {
+        return new RecursiveAction() {
+            @Override
+            protected void compute() {
+                rehashBatch(indices, digests, cutoff);
+            }
+        };
+    }
+
+    private void rehashBatch(int[] indices, Digest[] digests, int cutoff) {
+        for (int k = 0; k < indices.length; k++)
+            setLeaf(indices[k], digests[k]);
+        int[] dirty = indices.clone();
+        Arrays.sort(dirty);
+        int count = dirty.length;
+        byte[] buffer = newBuffer();
+        for (int l = 1; l <= height; l++) {
+            //i padri dei nodi modificati, senza ripetizioni
+            count = parents(dirty, count);
+            if (count > cutoff) {
+                new RehashTask(l, dirty, 0, count, cutoff).invoke();
+            } else {
+                for (int k = 0; k < count; k++)
+                    computeNode(l, dirty[k], buffer);
+            }
+        }
+    }
+
+    /**
+     * Sostituisce le prime {@code count} posizioni di un array ordinato con
+     * quelle dei loro padri, senza ripetizioni.
+     *
+     * @param nodes
+     *                  le posizioni dei nodi di un livello, in ordine
+     *                  crescente.
+     * @param count
+     *                  il numero di posizioni valide nell'array.
+     * @return il numero di padri distinti.
+     */
+    static int parents(int[] nodes, int count) {
+        int parents = 0;
+        for (int k = 0; k < count; k++) {
+            int parent = nodes[k] >>> 1;
+            if (parents == 0 || nodes[parents - 1] != parent)
+                nodes[parents++] = parent;
+        }
+        return parents;
+    }
+
+    private final class RehashTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int level;
+        private final int[] nodes;
+        private final int from;
+        private final int to;
+        private final int cutoff;
+
+        RehashTask(int level, int[] nodes, int from, int to, int cutoff) {
+            this.level = level;
+            this.nodes = nodes;
+            this.from = from;
+            this.to = to;
+            this.cutoff = cutoff;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= cutoff) {
+                byte[] buffer = newBuffer();
+                for (int k = from; k < to; k++)
+                    computeNode(level, nodes[k], buffer);
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new RehashTask(level, nodes, from, mid, cutoff),
+                    new RehashTask(level, nodes, mid, to, cutoff));
+        }
+    }
+
+    /**
+     * Alloca un buffer sufficiente per {@link #computeNode}.
+     *
+     * @return un nuovo buffer di lavoro.
+     */
+    byte[] newBuffer() {
+        return new byte[words * 8 * 5];
+    }
+
+    /**
+     * Calcola l'hash di un nodo interno non vuoto a partire dai figli, senza
+     * allocare oggetti. Con la forma {@link TreeShape#PROMOTE} un nodo con il
+     * solo figlio sinistro ne copia l'hash.
+     *
+     * @param level
+     *                   il livello del nodo, maggiore di 0.
+     * @param index
+     *                   la posizione del nodo nel livello.
+     * @param buffer
+     *                   un buffer di lavoro ottenuto da {@link #newBuffer()}.
+     */
+    void computeNode(int level, int index, byte[] buffer) {
+        long[] children = levels[level - 1];
+        boolean single = isEmpty(level - 1, 2 * index + 1);
+        if (single && shape == TreeShape.PROMOTE) {
+            System.arraycopy(children, 2 * index * words, levels[level],
+                    index * words, words);
+            return;
+        }
+        int n = concatenation.write(children, 2 * index * words, words,
+                buffer, 0);
+        if (!single)
+            n += concatenation.write(children, (2 * index + 1) * words, words,
+                    buffer, n);
+        int out = words * 8 * 4;
+        hashFunction.hashInto(buffer, 0, n, buffer, out);
+        Digest.readWords(buffer, out, words, levels[level], index * words);
+    }
+
+    /**
+     * Restituisce l'hash di un nodo, o {@link Digest#EMPTY} se il nodo è di
+     * padding.
+     *
+     * @param level
+     *                  il livello del nodo.
+     * @param index
+     *                  la posizione del nodo nel livello.
+     * @return l'hash del nodo.
+     */
+    Digest getDigest(int level, int index) {
+        if (isEmpty(level, index))
+            return Digest.EMPTY;
+        return Digest.read(levels[level], index * words, words);
+    }
+
+    /**
+     * Restituisce true se il nodo ha l'hash fornito.
+     *
+     * @param level
+     *                   il livello del nodo.
+     * @param index
+     *                   la posizione del nodo nel livello.
+     * @param digest
+     *                   l'hash da confrontare.
+     * @return true se gli hash coincidono, false altrimenti.
+     */
+    boolean hashEquals(int level, int index, Digest digest) {
+        if (isEmpty(level, index))
+            return digest.isEmpty();
+        if (digest.isEmpty() || digest.length() != words * 8)
+            return false;
+        for (int w = 0; w < words; w++)
+            if (levels[level][index * words + w] != digest.word(w))
+                return false;
+        return true;
+    }
+
+    /**
+     * Restituisce true se un nodo ha lo stesso hash del nodo nella stessa
+     * posizione di altri livelli.
+     *
+     * @param other
+     *                  i livelli con cui confrontare.
+     * @param level
+     *                  il livello del nodo.
+     * @param index
+     *                  la posizione del nodo nel livello.
+     * @return true se gli hash coincidono, false altrimenti.
+     */
+    boolean sameHash(MerkleLevels other, int level, int index) {
+        boolean empty = isEmpty(level, index);
+        if (empty || other.isEmpty(level, index))
+            return empty && other.isEmpty(level, index);
+        if (words != other.words)
+            return false;
+        long[] a = levels[level];
+        long[] b = other.levels[level];
+        for (int w = index * words; w < (index + 1) * words; w++)
+            if (a[w] != b[w])
+                return false;
+        return true;
+    }
+
+    /**
+     * Aggiunge a una lista le posizioni delle foglie non vuote del sottoalbero
+     * fornito il cui hash differisce da quello di altri livelli con la stessa
+     * forma. La discesa parte dal nodo fornito e salta ogni sottoalbero con
+     * hash uguali, per cui visita O(k log n) nodi per k foglie diverse.
+     *
+     * @param other
+     *                  i livelli con cui confrontare.
+     * @param level
+     *                  il livello della radice del sottoalbero.
+     * @param index
+     *                  la posizione della radice nel livello.
+     * @param out
+     *                  la lista a cui aggiungere le posizioni, in ordine
+     *                  crescente.
+     */
+    void diff(MerkleLevels other, int level, int index, List<Integer> out) {
+        if (isEmpty(level, index) || sameHash(other, level, index))
+            return;
+        if (level == 0) {
+            out.add(index);
+            return;
+        }
+        diff(other, level - 1, 2 * index, out);
+        diff(other, level - 1, 2 * index + 1, out);
+    }
+
+    /**
+     * Restituisce un task che esegue {@link #diff} a partire dalla radice,
+     * discendendo in parallelo nei sottoalberi diversi con più di
+     * {@code cutoff} foglie.
+     *
+     * @param other
+     *                   i livelli con cui confrontare.
+     * @param cutoff
+     *                   il numero di foglie sotto il quale un sottoalbero
+     *                   viene confrontato sequenzialmente.
+     * @return il task di confronto, che restituisce le posizioni in ordine
+     *         crescente.
+     */
+    RecursiveTask<List<Integer>> diffTask(MerkleLevels other, int cutoff) {
+        return new DiffTask(other, height, 0, cutoff);
+    }
+
+    @SuppressWarnings("serial") // Non serializzabile: riferisce due MerkleLevels
+    private final class DiffTask extends RecursiveTask<List<Integer>> {
+        private final MerkleLevels other;
+        private final int level;
+        private final int index;
+        private final int cutoff;
+
+        DiffTask(MerkleLevels other, int level, int index, int cutoff) {
+            this.other = other;
+            this.level = level;
+            this.index = index;
+            this.cutoff = cutoff;
+        }
+
+        @Override
+        protected List<Integer> compute() {
+            List<Integer> out = new ArrayList<>();
+            if ((1L << level) <= cutoff) {
+                diff(other, level, index, out);
+                return out;
+            }
+            if (isEmpty(level, index) || sameHash(other, level, index))
+                return out;
+            DiffTask right = new DiffTask(other, level - 1, 2 * index + 1, cutoff);
+            right.fork();
+            out.addAll(new DiffTask(other, level - 1, 2 * index, cutoff).compute());
+            out.addAll(right.join());
+            return out;
+        }
+    }
+
+    /**
+     * Cerca un nodo con l'hash fornito, scorrendo i livelli dalla radice
+     * verso le foglie.
+     *
+     * @param digest
+     *                   l'hash da cercare.
+     * @return la vista del primo nodo trovato, o null se non presente.
+     */
+    MerkleNodeView find(Digest digest) {
+        if (digest.isEmpty()) {
+            //il primo nodo di padding, dalla radice verso le foglie
+            for (int l = height; l >= 0; l--)
+                if (count(l) < size(l))
+                    return new MerkleNodeView(this, l, count(l));
+            return null;
+        }
+        for (int l = height; l >= 0; l--) {
+            int n = count(l);
+            for (int i = 0; i < n; i++)
+                if (hashEquals(l, i, digest))
+                    return new MerkleNodeView(this, l, i);
+        }
+        return null;
+    }
+}
@@ -0,0 +1,106 @@
+package it.unicam.cs.asdl2425.mp1;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Classe di test per la classe {@link MerkleLevels}. Questa classe verifica
+ * la memorizzazione piatta dei livelli di un albero di Merkle e le viste sui
+ * suoi nodi.
+ * Di seguito, l'elenco dei test inclusi con una breve descrizione:
+ *
+ * <ul>
+ * <li>{@link #testBuildRoot()}: Verifica che la radice calcolata sui livelli
+ * piatti coincida con quella calcolata concatenando gli hash esadecimali.</li>
+ *
+ * <li>{@link #testPaddingIsEmpty()}: Verifica che i nodi di padding vengano
+ * riconosciuti per posizione e abbiano hash vuoto.</li>
+ *
+ * <li>{@link #testFind()}: Verifica la ricerca di un nodo a partire dal suo
+ * hash.</li>
+ *
+ * <li>{@link #testViewChildren()}: Verifica che le viste sui nodi espongano
+ * correttamente i figli.</li>
+ *
+ * <li>{@link #testOnlyRealNodesStored()}: Verifica che i livelli contengano solo i nodi
+ * che coprono foglie reali e che un albero con 2^k + 1 foglie abbia la stessa radice
+ * calcolata con i nodi di padding espliciti.</li>
+ * </ul>
+ */
+class MerkleLevelsTest {
+
+    private String h0, h1, h2;
+    private MerkleLevels levels;
+
+    @BeforeEach
+    void setUp() {
+        h0 = HashUtil.dataToHash("Alice paga Bob");
+        h1 = HashUtil.dataToHash("Bob paga Charlie");
+        h2 = HashUtil.dataToHash("Charlie paga Diana");
+        levels = new MerkleLevels(3, 2, Concatenation.HEX, HashFunction.MD5);
+        levels.setLeaf(0, Digest.fromHex(h0));
+        levels.setLeaf(1, Digest.fromHex(h1));
+        levels.setLeaf(2, Digest.fromHex(h2));
+        levels.build();
+    }
+
+    @Test
+    void testBuildRoot() {
+        String expected = HashUtil.computeMD5(
+                (HashUtil.computeMD5((h0 + h1).getBytes())
+                        + HashUtil.computeMD5(h2.getBytes())).getBytes());
+        assertEquals(expected, levels.getDigest(2, 0).toString(),
+                "La radice non corrisponde a quella attesa.");
+    }
+
+    @Test
+    void testPaddingIsEmpty() {
+        assertFalse(levels.isEmpty(0, 2), "La foglia 2 non dovrebbe essere vuota.");
+        assertTrue(levels.isEmpty(0, 3), "La foglia 3 dovrebbe essere vuota.");
+        assertEquals(Digest.EMPTY, levels.getDigest(0, 3),
+                "Un nodo di padding dovrebbe avere hash vuoto.");
+        assertFalse(levels.isEmpty(1, 1), "Il nodo (1, 1) non dovrebbe essere vuoto.");
+    }
+
+    @Test
+    void testFind() {
+        MerkleNodeView view = levels.find(Digest.fromHex(h2));
+        assertNotNull(view, "La foglia dovrebbe essere trovata.");
+        assertEquals(0, view.getLevel(), "La foglia dovrebbe essere al livello 0.");
+        assertEquals(2, view.getIndex(), "La foglia dovrebbe essere in posizione 2.");
+        assertNull(levels.find(HashUtil.dataToDigest("Dato non presente")),
+                "Un hash non presente non dovrebbe essere trovato.");
+    }
+
+    @Test
+    void testViewChildren() {
+        MerkleNode root = new MerkleNodeView(levels, 2, 0);
+        assertFalse(root.isLeaf(), "La radice non dovrebbe essere una foglia.");
+        assertEquals(h0, root.getLeft().getLeft().getHash(),
+                "La prima foglia non è corretta.");
+        assertTrue(root.getRight().getRight().isLeaf(),
+                "Il nodo di padding dovrebbe essere una foglia.");
+        assertEquals(new MerkleNode(h1), root.getLeft().getRight(),
+                "Una vista dovrebbe essere uguale a un nodo con lo stesso hash.");
+    }
+
+    @Test
+    void testOnlyRealNodesStored() {
+        assertEquals(3, levels.count(0), "Il livello 0 dovrebbe memorizzare 3 foglie.");
+        assertEquals(2, levels.count(1), "Il livello 1 dovrebbe memorizzare 2 nodi.");
+        assertEquals(1, levels.count(2), "Il livello 2 dovrebbe memorizzare la sola radice.");
+        MerkleLevels wide = new MerkleLevels(5, 3, Concatenation.HEX, HashFunction.MD5);
+        for (int i = 0; i < 5; i++)
+            wide.setLeaf(i, HashUtil.dataToDigest(i));
+        wide.build();
+        assertEquals(2, wide.count(2), "Il livello 2 dovrebbe memorizzare 2 nodi su 2.");
+        assertEquals(3, wide.count(1), "Il livello 1 dovrebbe memorizzare 3 nodi su 4.");
+        String h4 = HashUtil.dataToHash(4);
+        String right = HashUtil.computeMD5(HashUtil.computeMD5(h4.getBytes()).getBytes());
+        assertEquals(right, wide.getDigest(2, 1).toString(),
+                "Il sottoalbero con una sola foglia reale non è corretto.");
+        assertNotNull(wide.find(Digest.EMPTY), "Un nodo di padding dovrebbe essere trovato.");
+    }
+}
@@ -0,0 +1,273 @@
+package it.unicam.cs.asdl2425.mp1;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Una prova di Merkle per un insieme di foglie dello stesso albero. A
+ * differenza di un insieme di {@link MerkleProof} indipendenti, ogni hash
+ * fratello necessario compare una sola volta: i fratelli che appartengono a
+ * sua volta al cammino di un'altra foglia dell'insieme non vengono inclusi,
+ * perché il verificatore li ricalcola. La dimensione della prova e il numero di
+ * hash calcolati in verifica crescono quindi con l'unione dei cammini dalle
+ * foglie alla radice, non con la loro somma.
+ *
+ * <p>
+ * Gli hash fratelli sono ordinati per livello, dalle foglie verso la radice,
+ * e all'interno di un livello per posizione crescente.
+ *
+ * @author **JULIANO, SINAJ, juliano.sinaj@studenti.unicam.it**
+ */
+public class MerkleMultiProof {
+
+    private final Digest rootHash; // Radice dell'albero
+    private final int height; // Altezza dell'albero
+    private final int[] indices; // Posizioni delle foglie, crescenti
+    private final Digest[] siblings; // Hash fratelli, per livello
+    private final Concatenation concatenation;
+    private final HashFunction hashFunction;
+    private final TreeShape shape;
+
+    /**
+     * Costruisce una prova multipla per un albero con la forma predefinita
+     * {@link TreeShape#PAD}.
+     *
+     * @param rootHash
+     *                          l'hash della radice dell'albero.
+     * @param height
+     *                          l'altezza dell'albero.
+     * @param indices
+     *                          le posizioni delle foglie, strettamente
+     *                          crescenti.
+     * @param siblings
+     *                          gli hash fratelli, nell'ordine descritto nella
+     *                          documentazione della classe.
+     * @param concatenation
+     *                          la modalità di concatenazione degli hash.
+     * @param hashFunction
+     *                          la funzione di hash dell'albero.
+     * @throws IllegalArgumentException
+     *                                      se un parametro è null, l'altezza
+     *                                      è negativa o le posizioni non sono
+     *                                      strettamente crescenti.
+     */
+    public MerkleMultiProof(Digest rootHash, int height, int[] indices,
+            Digest[] siblings, Concatenation concatenation,
+            HashFunction hashFunction) {
+        this(rootHash, height, indices, siblings, concatenation, hashFunction,
+                TreeShape.PAD);
+    }
+
+    /**
+     * Costruisce una prova multipla per un albero con la forma fornita. Con
+     * la forma {@link TreeShape#PROMOTE} un hash fratello vuoto indica che il
+     * nodo viene promosso senza essere combinato.
+     *
+     * @param rootHash
+     *                          l'hash della radice dell'albero.
+     * @param height
+     *                          l'altezza dell'albero.
+     * @param indices
+     *                          le posizioni delle foglie, strettamente
+     *                          crescenti.
+     * @param siblings
+     *                          gli hash fratelli, nell'ordine descritto nella
+     *                          documentazione della classe.
+     * @param concatenation
+     *                          la modalità di concatenazione degli hash.
+     * @param hashFunction
+     *                          la funzione di hash dell'albero.
+     * @param shape
+     *                          la forma dell'albero.
+     * @throws IllegalArgumentException
+     *                                      se un parametro è null, l'altezza
+     *                                      è negativa o le posizioni non sono
+     *                                      strettamente crescenti.
+     */
+    public MerkleMultiProof(Digest rootHash, int height, int[] indices,
+            Digest[] siblings, Concatenation concatenation,
+            HashFunction hashFunction, TreeShape shape) {
+        if (rootHash == null || indices == null || siblings == null
+                || concatenation == null || hashFunction == null
+                || shape == null)
+            throw new IllegalArgumentException();
+        if (height < 0 || indices.length == 0)
+            throw new IllegalArgumentException();
+        for (int k = 0; k < indices.length; k++)
+            if (indices[k] < 0 || (k > 0 && indices[k] <= indices[k - 1]))
+                throw new IllegalArgumentException("Leaf indices must be increasing");
+        this.rootHash = rootHash;
+        this.height = height;
+        this.indices = indices.clone();
+        this.siblings = siblings.clone();
+        this.concatenation = concatenation;
+        this.hashFunction = hashFunction;
+        this.shape = shape;
+    }
+
+    /**
+     * Calcola gli hash fratelli necessari a verificare un insieme di nodi di
+     * un livello, senza ripetizioni. Usato dall'albero per costruire la prova.
+     *
+     * @param levels
+     *                    i livelli dell'albero.
+     * @param indices
+     *                    le posizioni delle foglie, strettamente crescenti.
+     * @return gli hash fratelli, nell'ordine della prova.
+     */
+    static Digest[] collectSiblings(MerkleLevels levels, int[] indices) {
+        Digest[] out = new Digest[indices.length * Math.max(1, levels.getHeight())];
+        int n = 0;
+        int[] nodes = indices.clone();
+        int count = nodes.length;
+        for (int l = 0; l < levels.getHeight(); l++) {
+            for (int k = 0; k < count; k++) {
+                //se anche il fratello è nel cammino non serve includerlo
+                if (k + 1 < count && nodes[k + 1] == (nodes[k] ^ 1))
+                    k++;
+                else
+                    out[n++] = levels.getDigest(l, nodes[k] ^ 1);
+            }
+            count = MerkleLevels.parents(nodes, count);
+        }
+        return Arrays.copyOf(out, n);
+    }
+
+    /**
+     * Restituisce le posizioni delle foglie coperte dalla prova, in ordine
+     * crescente.
+     *
+     * @return le posizioni delle foglie.
+     */
+    public int[] getIndices() {
+        return indices.clone();
+    }
+
+    /**
+     * Restituisce l'altezza dell'albero per il quale la prova è stata
+     * costruita.
+     *
+     * @return l'altezza dell'albero.
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Restituisce il numero di hash fratelli contenuti nella prova.
+     *
+     * @return il numero di hash della prova.
+     */
+    public int getSize() {
+        return siblings.length;
+    }
+
+    /**
+     * Valida un insieme di dati per questa prova. I dati devono essere forniti
+     * nell'ordine delle posizioni restituite da {@link #getIndices()}.
+     *
+     * @param data
+     *                 i dati da validare.
+     * @return true se tutti i dati sono validi secondo la prova; false
+     *         altrimenti.
+     * @throws IllegalArgumentException
+     *                                      se la lista o uno dei dati è null.
+     */
+    public boolean proveValidityOfData(List<?> data) {
+        if (data == null)
+            throw new IllegalArgumentException();
+        for (Object item : data)
+            if (item == null)
+                throw new IllegalArgumentException("The data contain null");
+        Digest[] leaves = new Digest[data.size()];
+        for (int k = 0; k < leaves.length; k++)
+            leaves[k] = HashUtil.dataToDigest(data.get(k), hashFunction);
+        return proveValidityOfHashes(leaves);
+    }
+
+    /**
+     * Valida un insieme di dati calcolandone gli hash con un funnel, come per
+     * gli alberi costruiti da una lista con lo stesso funnel.
+     *
+     * @param <T>
+     *                   il tipo dei dati.
+     * @param data
+     *                   i dati da validare, nell'ordine delle posizioni.
+     * @param funnel
+     *                   il funnel dei dati.
+     * @return true se tutti i dati sono validi secondo la prova; false
+     *         altrimenti.
+     * @throws IllegalArgumentException
+     *                                      se la lista, uno dei dati o il
+     *                                      funnel sono null.
+     */
+    public <T> boolean proveValidityOfData(List<? extends T> data,
+            Funnel<? super T> funnel) {
+        if (data == null || funnel == null)
+            throw new IllegalArgumentException();
+        for (Object item : data)
+            if (item == null)
+                throw new IllegalArgumentException("The data contain null");
+        Digest[] leaves = new Digest[data.size()];
+        for (int k = 0; k < leaves.length; k++)
+            leaves[k] = hashFunction.hashObject(data.get(k), funnel);
+        return proveValidityOfHashes(leaves);
+    }
+
+    /**
+     * Valida un insieme di hash di foglie per questa prova, nell'ordine delle
+     * posizioni restituite da {@link #getIndices()}. Ogni antenato comune a più
+     * foglie viene ricalcolato una sola volta.
+     *
+     * @param leaves
+     *                   gli hash delle foglie.
+     * @return true se tutti gli hash sono validi secondo la prova; false
+     *         altrimenti.
+     * @throws IllegalArgumentException
+     *                                      se l'array o uno degli hash è
+     *                                      null.
+     */
+    public boolean proveValidityOfHashes(Digest[] leaves) {
+        if (leaves == null)
+            throw new IllegalArgumentException();
+        for (Digest leaf : leaves)
+            if (leaf == null)
+                throw new IllegalArgumentException("The leaves contain null");
+        if (leaves.length != indices.length)
+            return false;
+        int[] nodes = indices.clone();
+        Digest[] hashes = leaves.clone();
+        int count = nodes.length;
+        int next = 0; // prossimo hash fratello da consumare
+        for (int l = 0; l < height; l++) {
+            int parents = 0;
+            for (int k = 0; k < count; k++) {
+                Digest left, right;
+                if (k + 1 < count && nodes[k + 1] == (nodes[k] ^ 1)) {
+                    left = hashes[k];
+                    right = hashes[++k];
+                } else {
+                    if (next == siblings.length)
+                        return false;
+                    Digest sibling = siblings[next++];
+                    if (sibling.isEmpty() && shape == TreeShape.PROMOTE) {
+                        nodes[parents] = nodes[k] >>> 1;
+                        hashes[parents++] = hashes[k];
+                        continue;
+                    }
+                    boolean isLeft = (nodes[k] & 1) == 1;
+                    left = isLeft ? sibling : hashes[k];
+                    right = isLeft ? hashes[k] : sibling;
+                }
+                //i padri sono calcolati in ordine, per cui si possono
+                //sovrascrivere le posizioni già consumate
+                nodes[parents] = nodes[k] >>> 1;
+                hashes[parents++] = HashUtil.combine(left, right,
+                        concatenation, hashFunction);
+            }
+            count = parents;
+        }
+        return count == 1 && next == siblings.length
+                && rootHash.equals(hashes[0]);
+    }
+}
@@ -0,0 +1,131 @@
+package it.unicam.cs.asdl2425.mp1;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Classe di test per la classe {@link MerkleMultiProof}. Questa classe
+ * verifica la costruzione e la validazione delle prove di Merkle per insiemi
+ * di foglie.
+ * Di seguito, l'elenco dei test inclusi con una breve descrizione:
+ *
+ * <ul>
+ * <li>{@link #testValidMultiProof()}: Verifica che una prova multipla
+ * costruita dall'albero validi i dati delle foglie richieste.</li>
+ *
+ * <li>{@link #testSiblingsAreShared()}: Verifica che gli hash fratelli comuni
+ * a più foglie compaiano nella prova una sola volta.</li>
+ *
+ * <li>{@link #testInvalidData()}: Verifica che dati modificati o forniti in un
+ * ordine diverso vengano respinti.</li>
+ *
+ * <li>{@link #testAllSubsets()}: Verifica la validità delle prove multiple per
+ * tutti i sottoinsiemi delle foglie di un albero con padding.</li>
+ *
+ * <li>{@link #testInvalidArguments()}: Verifica che vengano lanciate le
+ * eccezioni previste per argomenti non validi, anche per dati e hash null.</li>
+ * </ul>
+ */
+class MerkleMultiProofTest {
+
+    private MerkleTree<Integer> tree;
+
+    @BeforeEach
+    void setUp() {
+        HashLinkedList<Integer> list = new HashLinkedList<>();
+        for (int i = 0; i < 13; i++)
+            list.addAtTail(i * 7);
+        tree = new MerkleTree<>(list);
+    }
+
+    @Test
+    void testValidMultiProof() {
+        MerkleMultiProof proof = tree.getMerkleMultiProof(new int[] { 9, 2, 3, 2 });
+        assertArrayEquals(new int[] { 2, 3, 9 }, proof.getIndices(),
+                "Le posizioni dovrebbero essere ordinate e senza ripetizioni.");
+        assertTrue(proof.proveValidityOfData(List.of(14, 21, 63)),
+                "La prova multipla dovrebbe essere valida.");
+        MerkleMultiProof byData = tree.getMerkleMultiProof(List.of(63, 14, 21));
+        assertArrayEquals(proof.getIndices(), byData.getIndices(),
+                "Le posizioni dei dati non sono corrette.");
+        assertTrue(byData.proveValidityOfData(List.of(14, 21, 63)),
+                "La prova multipla costruita dai dati dovrebbe essere valida.");
+    }
+
+    @Test
+    void testSiblingsAreShared() {
+        // le foglie 0 e 1 sono fratelle, e il loro padre è fratello di (1, 1)
+        MerkleMultiProof proof = tree.getMerkleMultiProof(new int[] { 0, 1, 2, 3 });
+        assertEquals(tree.getHeight() - 2, proof.getSize(),
+                "Servono solo i fratelli sopra il sottoalbero delle foglie.");
+        int separate = 0;
+        for (int i = 0; i < 4; i++)
+            separate += tree.getMerkleProof(i).getLength();
+        assertTrue(proof.getSize() < separate,
+                "La prova multipla dovrebbe essere più piccola delle prove separate.");
+    }
+
+    @Test
+    void testInvalidData() {
+        MerkleMultiProof proof = tree.getMerkleMultiProof(new int[] { 1, 6 });
+        assertFalse(proof.proveValidityOfData(List.of(7, 43)),
+                "Un dato modificato dovrebbe essere respinto.");
+        assertFalse(proof.proveValidityOfData(List.of(42, 7)),
+                "I dati in ordine diverso dovrebbero essere respinti.");
+        assertFalse(proof.proveValidityOfData(List.of(7)),
+                "Un numero di dati diverso dovrebbe essere respinto.");
+    }
+
+    @Test
+    void testAllSubsets() {
+        HashLinkedList<Integer> list = new HashLinkedList<>();
+        for (int i = 0; i < 6; i++)
+            list.addAtTail(i);
+        MerkleTree<Integer> small = new MerkleTree<>(list);
+        for (int mask = 1; mask < 1 << 6; mask++) {
+            int[] indices = new int[Integer.bitCount(mask)];
+            Integer[] data = new Integer[indices.length];
+            for (int i = 0, k = 0; i < 6; i++)
+                if ((mask & (1 << i)) != 0) {
+                    indices[k] = i;
+                    data[k++] = i;
+                }
+            MerkleMultiProof proof = small.getMerkleMultiProof(indices);
+            assertTrue(proof.proveValidityOfData(Arrays.asList(data)),
+                    "La prova multipla dovrebbe essere valida per il sottoinsieme " + mask + ".");
+        }
+    }
+
+    @Test
+    void testInvalidArguments() {
+        assertThrows(IllegalArgumentException.class, () -> tree.getMerkleMultiProof(new int[] { 13 }),
+                "Dovrebbe lanciare IllegalArgumentException per un indice non valido.");
+        assertThrows(IllegalArgumentException.class, () -> tree.getMerkleMultiProof(new int[0]),
+                "Dovrebbe lanciare IllegalArgumentException per un insieme vuoto.");
+        assertThrows(IllegalArgumentException.class, () -> tree.getMerkleMultiProof(List.of(1)),
+                "Dovrebbe lanciare IllegalArgumentException per un dato non presente.");
+        assertThrows(IllegalArgumentException.class,
+                () -> new MerkleMultiProof(Digest.EMPTY, 1, new int[] { 2, 1 }, new Digest[0],
+                        Concatenation.HEX, HashFunction.MD5),
+                "Dovrebbe lanciare IllegalArgumentException per posizioni non ordinate.");
+        MerkleMultiProof proof = tree.getMerkleMultiProof(new int[] { 2, 3, 8 });
+        assertThrows(IllegalArgumentException.class,
+                () -> proof.proveValidityOfData(Arrays.asList(14, null, 56)),
+                "Dovrebbe lanciare IllegalArgumentException per un dato null.");
+        assertThrows(IllegalArgumentException.class,
+                () -> proof.proveValidityOfData(Arrays.asList(14, 21, null), Funnel.INTEGER),
+                "Dovrebbe lanciare IllegalArgumentException per un dato null con un funnel.");
+        Digest[] hashes = { HashUtil.dataToDigest(14), null, HashUtil.dataToDigest(56) };
+        assertThrows(IllegalArgumentException.class, () -> proof.proveValidityOfHashes(hashes),
+                "Dovrebbe lanciare IllegalArgumentException per l'hash null di una coppia.");
+        hashes[1] = HashUtil.dataToDigest(21);
+        hashes[0] = null;
+        assertThrows(IllegalArgumentException.class, () -> proof.proveValidityOfHashes(hashes),
+                "Dovrebbe lanciare IllegalArgumentException per un hash null.");
+    }
+}
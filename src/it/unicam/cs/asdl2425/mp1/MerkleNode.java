@@ -7,7 +7,8 @@ package it.unicam.cs.asdl2425.mp1;
  * **JULIANO ,SINAJ, juliano.sinaj@studenti.unicam.it** (implementazione)
  */
 public class MerkleNode {
-    private final String hash; // Hash associato al nodo.
+    private final String hash; // Hash associato al nodo, come fornito.
+    private final Digest digest; // Hash in forma binaria, null se non valido.
     private final MerkleNode left; // Figlio sinistro del nodo.
     private final MerkleNode right; // Figlio destro del nodo.
 
@@ -32,17 +33,62 @@ public class MerkleNode {
      */
     public MerkleNode(String hash, MerkleNode left, MerkleNode right) {
         this.hash = hash;
+        this.digest = Digest.tryFromHex(hash);
         this.left = left;
         this.right = right;
     }
 
+    /**
+     * Costruisce un nodo Merkle foglia con un hash in forma binaria.
+     *
+     * @param digest
+     *                   l'hash associato al nodo.
+     */
+    public MerkleNode(Digest digest) {
+        this(digest, null, null);
+    }
+
+    /**
+     * Costruisce un nodo Merkle con un hash in forma binaria e due figli.
+     *
+     * @param digest , l'hash associato al nodo.
+     * @param left, il figlio sinistro.
+     * @param right, il figlio destro.
+     */
+    public MerkleNode(Digest digest, MerkleNode left, MerkleNode right) {
+        this.hash = null;
+        this.digest = digest;
+        this.left = left;
+        this.right = right;
+    }
+
+    /**
+     * Costruttore usato dalle viste su alberi memorizzati in forma piatta,
+     * che ricavano hash e figli dalla posizione del nodo.
+     */
+    MerkleNode() {
+        this((Digest) null, null, null);
+    }
+
     /**
      * Restituisce l'hash associato al nodo.
      *
      * @return l'hash associato al nodo.
      */
     public String getHash() {
-        return hash;
+        if (hash != null)
+            return hash;
+        return digest == null ? null : digest.toString();
+    }
+
+    /**
+     * Restituisce l'hash associato al nodo in forma binaria, o null se l'hash
+     * fornito alla costruzione non è un digest esadecimale valido.
+     *
+     * @return l'hash associato al nodo in forma binaria.
+     */
+    public Digest getDigest() {
+        return digest;
     }
 
     /**
@@ -63,13 +109,46 @@ public class MerkleNode {
         return right;
     }
 
+    /**
+     * Restituisce il livello del nodo nell'albero a cui appartiene, contando
+     * da 0 per le foglie, o -1 se il nodo non appartiene a un albero.
+     *
+     * @return il livello del nodo, o -1.
+     */
+    public int getLevel() {
+        return -1;
+    }
+
+    /**
+     * Restituisce la posizione della prima foglia coperta dal nodo
+     * nell'albero a cui appartiene, o -1 se il nodo non appartiene a un
+     * albero.
+     *
+     * @return la posizione della prima foglia del nodo, o -1.
+     */
+    public int getLeafStart() {
+        return -1;
+    }
+
+    /**
+     * Restituisce la posizione successiva all'ultima foglia reale coperta
+     * dal nodo nell'albero a cui appartiene, o -1 se il nodo non appartiene a
+     * un albero. Le foglie di padding non sono contate, per cui un nodo di
+     * padding copre un intervallo vuoto.
+     *
+     * @return la posizione successiva all'ultima foglia del nodo, o -1.
+     */
+    public int getLeafEnd() {
+        return -1;
+    }
+
     /**
      * Restituisce true se il nodo è una foglia, false altrimenti.
      *
      * @return true se il nodo è una foglia, false altrimenti.
      */
     public boolean isLeaf() {
-        if (this.left == null && this.right == null) {
+        if (getLeft() == null && getRight() == null) {
             return true; //if both children are null.
         } else {
             return false;//if the node has at least one child.
@@ -77,7 +156,7 @@ public class MerkleNode {
     }
     @Override
     public String toString() {
-        return hash;
+        return getHash();
     }
 
     @Override
@@ -89,7 +168,12 @@ public class MerkleNode {
             return false; //if the object is not a MerkleNode
         }
         MerkleNode other = (MerkleNode) obj;
-        if (this.hash.equals(other.hash)) {
+        Digest d1 = this.getDigest();
+        Digest d2 = other.getDigest();
+        if (d1 != null && d2 != null) {
+            return d1.equals(d2); //compare the binary digests
+        }
+        if (this.getHash().equals(other.getHash())) {
             return true; //if the hash values are equal
         } else {
             return false; //if the hash values are not equal 
@@ -98,10 +182,15 @@ public class MerkleNode {
 
     @Override
     public int hashCode() {
-        if (this.hash != null) {
-            return this.hash.hashCode();
+        Digest digest = getDigest();
+        if (digest != null) {
+            return digest.hashCode();
+        }
+        String hash = getHash();
+        if (hash != null) {
+            return hash.hashCode();
         } else {
             return -1; // -1 if the hash is null
         }
     }
-}
\ No newline at end of file
+}
\ No newline at end of file
@@ -0,0 +1,74 @@
+package it.unicam.cs.asdl2425.mp1;
+
+/**
+ * Vista leggera su un nodo di un albero di Merkle memorizzato in forma piatta
+ * da {@link MerkleLevels}. La vista non copia l'hash né mantiene riferimenti
+ * ai figli: entrambi vengono ricavati dalla posizione del nodo solo quando
+ * richiesti.
+ *
+ * @author **JULIANO, SINAJ, juliano.sinaj@studenti.unicam.it**
+ */
+final class MerkleNodeView extends MerkleNode {
+    private final MerkleLevels levels; // Memorizzazione dell'albero
+    private final int level; // Livello del nodo, 0 per le foglie
+    private final int index; // Posizione del nodo nel livello
+
+    MerkleNodeView(MerkleLevels levels, int level, int index) {
+        this.levels = levels;
+        this.level = level;
+        this.index = index;
+    }
+
+    MerkleLevels getLevels() {
+        return levels;
+    }
+
+    @Override
+    public int getLevel() {
+        return level;
+    }
+
+    @Override
+    public int getLeafStart() {
+        return index << level;
+    }
+
+    @Override
+    public int getLeafEnd() {
+        long end = Math.min((long) (index + 1) << level, levels.getWidth());
+        return (int) Math.max(end, getLeafStart());
+    }
+
+    int getIndex() {
+        return index;
+    }
+
+    @Override
+    public Digest getDigest() {
+        return levels.getDigest(level, index);
+    }
+
+    @Override
+    public String getHash() {
+        return getDigest().toString();
+    }
+
+    @Override
+    public MerkleNode getLeft() {
+        if (level == 0)
+            return null;
+        return new MerkleNodeView(levels, level - 1, 2 * index);
+    }
+
+    @Override
+    public MerkleNode getRight() {
+        if (level == 0)
+            return null;
+        return new MerkleNodeView(levels, level - 1, 2 * index + 1);
+    }
+
+    @Override
+    public boolean isLeaf() {
+        return level == 0;
+    }
+}
@@ -1,5 +1,9 @@
 package it.unicam.cs.asdl2425.mp1;
 
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
 /**
  * Una classe che rappresenta una prova di Merkle per un determinato albero di
  * Merkle ed un suo elemento o branch. Oggetti di questa classe rappresentano un
@@ -7,6 +11,29 @@ package it.unicam.cs.asdl2425.mp1;
  * MerkleProofHash che rappresentano i passaggi necessari per validare un dato
  * elemento o branch in un albero di Merkle decisi al momento di costruzione
  * della prova.
+ *
+ * <p>
+ * I passi sono memorizzati in forma compatta: gli hash dei fratelli occupano
+ * un unico buffer di byte, e le direzioni di concatenazione sono i bit di un
+ * {@code long}, per cui una prova può contenere al più {@value #MAX_LENGTH}
+ * passi, più dell'altezza di qualsiasi albero costruibile. La verifica
+ * riutilizza buffer del thread corrente e non alloca oggetti.
+ *
+ * <p>
+ * Una prova completa può essere scritta in un formato binario con
+ * {@link #writeTo(ByteBuffer)} e riletta con {@link #wrap(ByteBuffer)}, che
+ * verifica direttamente dal buffer senza copiare gli hash dei fratelli. Il
+ * formato, con valori big-endian, è composto da:
+ * <ul>
+ * <li>un'intestazione di {@value #HEADER_SIZE} byte: il numero magico
+ * {@code 0x4D50}, la versione {@value #VERSION}, i codici della funzione di
+ * hash e della concatenazione, la lunghezza dell'hash della radice (0 se
+ * vuoto), il numero di passi, un byte riservato, e le maschere di bit delle
+ * direzioni e dei passi vuoti;</li>
+ * <li>l'hash della radice;</li>
+ * <li>gli hash dei fratelli, uno per passo con lunghezza fissa, a zero per i
+ * passi vuoti.</li>
+ * </ul>
  * 
  * @author Luca Tesei, Marco Caputo (template) 
  * **JULIANO, SINAJ, juliano.sinaj@studenti.unicam.it **
@@ -14,16 +41,70 @@ package it.unicam.cs.asdl2425.mp1;
 public class MerkleProof {
 
     /**
-     * La prova di Merkle, rappresentata come una lista concatenata di oggetti
-     * MerkleProofHash.
+     * Numero massimo di passi di una prova.
+     */
+    public static final int MAX_LENGTH = 64;
+
+    /**
+     * Numero magico all'inizio della forma binaria.
+     */
+    private static final short MAGIC = 0x4D50;
+
+    /**
+     * Versione del formato binario.
+     */
+    private static final int VERSION = 1;
+
+    /**
+     * Lunghezza dell'intestazione della forma binaria in byte.
      */
-    private final HashLinkedList<MerkleProofHash> proof;
+    private static final int HEADER_SIZE = 24;
+
+    /**
+     * Gli hash dei fratelli, {@link #words} parole per passo, nell'ordine in
+     * cui vanno combinati. I passi con un fratello di padding sono a zero. Per
+     * le prove lette con {@link #wrap(ByteBuffer)} è una vista sul buffer
+     * originale.
+     */
+    private final ByteBuffer siblings;
+
+    /**
+     * Bit i a 1 se il fratello del passo i va concatenato a sinistra.
+     */
+    private long directions;
+
+    /**
+     * Bit i a 1 se il fratello del passo i è un nodo di padding vuoto.
+     */
+    private long empties;
+
+    /**
+     * Numero di passi aggiunti alla prova.
+     */
+    private int size;
+
+    /**
+     * Numero di long di un hash della funzione della prova.
+     */
+    private final int words;
 
     /**
      * L'hash della radice dell'albero di Merkle per il quale la prova è stata
      * costruita.
      */
-    private final String rootHash;
+    private final Digest rootHash;
+
+    /**
+     * Modalità di concatenazione degli hash usata dall'albero per il quale la
+     * prova è stata costruita.
+     */
+    private final Concatenation concatenation;
+
+    /**
+     * Funzione di hash usata dall'albero per il quale la prova è stata
+     * costruita.
+     */
+    private final HashFunction hashFunction;
 
     /**
      * Lunghezza massima della prova, dato dal numero di hash che la compongono
@@ -44,11 +125,78 @@ public class MerkleProof {
      *                     la lunghezza massima della prova.
      */
     public MerkleProof(String rootHash, int length) {
+        this(rootHash == null ? null : Digest.fromHex(rootHash), length,
+                Concatenation.HEX);
+    }
+
+    /**
+     * Costruisce una nuova prova di Merkle per un dato albero di Merkle,
+     * specificando la radice dell'albero in forma binaria, la lunghezza
+     * massima della prova e la modalità di concatenazione degli hash usata
+     * dall'albero.
+     *
+     * @param rootHash
+     *                          l'hash della radice dell'albero di Merkle.
+     * @param length
+     *                          la lunghezza massima della prova.
+     * @param concatenation
+     *                          la modalità di concatenazione degli hash.
+     */
+    public MerkleProof(Digest rootHash, int length,
+            Concatenation concatenation) {
+        this(rootHash, length, concatenation, HashFunction.MD5);
+    }
+
+    /**
+     * Costruisce una nuova prova di Merkle per un dato albero di Merkle,
+     * specificando anche la funzione di hash usata dall'albero.
+     *
+     * @param rootHash
+     *                          l'hash della radice dell'albero di Merkle.
+     * @param length
+     *                          la lunghezza massima della prova.
+     * @param concatenation
+     *                          la modalità di concatenazione degli hash.
+     * @param hashFunction
+     *                          la funzione di hash dell'albero.
+     * @throws IllegalArgumentException
+     *                                      se un parametro è null o la
+     *                                      lunghezza è negativa o maggiore di
+     *                                      {@link #MAX_LENGTH}.
+     */
+    public MerkleProof(Digest rootHash, int length,
+            Concatenation concatenation, HashFunction hashFunction) {
+        if (length < 0 || length > MAX_LENGTH)
+            throw new IllegalArgumentException("Invalid proof length: " + length);
         if (rootHash == null)
             throw new IllegalArgumentException("The root hash is null");
-        this.proof = new HashLinkedList<>();
+        if (concatenation == null)
+            throw new IllegalArgumentException("The concatenation is null");
+        if (hashFunction == null)
+            throw new IllegalArgumentException("The hash function is null");
+        this.words = hashFunction.getDigestLength() / 8;
+        this.siblings = ByteBuffer.allocate(length * words * 8);
         this.rootHash = rootHash;
         this.length = length;
+        this.concatenation = concatenation;
+        this.hashFunction = hashFunction;
+    }
+
+    /**
+     * Costruisce una prova completa sugli hash dei fratelli già codificati.
+     */
+    private MerkleProof(Digest rootHash, int size, long directions,
+            long empties, ByteBuffer siblings, Concatenation concatenation,
+            HashFunction hashFunction) {
+        this.words = hashFunction.getDigestLength() / 8;
+        this.siblings = siblings;
+        this.rootHash = rootHash;
+        this.length = size;
+        this.size = size;
+        this.directions = directions;
+        this.empties = empties;
+        this.concatenation = concatenation;
+        this.hashFunction = hashFunction;
     }
 
     /**
@@ -61,6 +209,34 @@ public class MerkleProof {
         return length;
     }
 
+    /**
+     * Restituisce l'hash della radice dell'albero per il quale la prova è
+     * stata costruita.
+     *
+     * @return l'hash della radice.
+     */
+    public Digest getRootHash() {
+        return rootHash;
+    }
+
+    /**
+     * Restituisce la modalità di concatenazione degli hash della prova.
+     *
+     * @return la modalità di concatenazione.
+     */
+    public Concatenation getConcatenation() {
+        return concatenation;
+    }
+
+    /**
+     * Restituisce la funzione di hash della prova.
+     *
+     * @return la funzione di hash.
+     */
+    public HashFunction getHashFunction() {
+        return hashFunction;
+    }
+
     /**
      * Aggiunge un hash alla prova di Merkle, specificando se esso dovrebbe
      * essere concatenato a sinistra o a destra durante la verifica della prova.
@@ -76,12 +252,186 @@ public class MerkleProof {
      * @return true se l'hash è stato aggiunto con successo, false altrimenti.
      */
     public boolean addHash(String hash, boolean isLeft) {
-        if(this.proof.getSize() == length)
+        if(this.size == length)
+            return false;
+        if(hash == null)
+            throw new IllegalArgumentException("The hash cannot be null");
+        return addHash(Digest.fromHex(hash), isLeft);
+    }
+
+    /**
+     * Aggiunge un hash in forma binaria alla prova di Merkle, con le stesse
+     * regole di {@link #addHash(String, boolean)}.
+     *
+     * @param hash
+     *                   l'hash da aggiungere alla prova.
+     * @param isLeft
+     *                   true se l'hash dovrebbe essere concatenato a sinistra,
+     *                   false altrimenti.
+     * @return true se l'hash è stato aggiunto con successo, false altrimenti.
+     * @throws IllegalArgumentException
+     *                                      se l'hash è null o non è vuoto e
+     *                                      ha una lunghezza diversa da quella
+     *                                      della funzione di hash.
+     */
+    public boolean addHash(Digest hash, boolean isLeft) {
+        if(this.size == length)
             return false;
-        this.proof.addAtTail(new MerkleProofHash(hash, isLeft));
+        if(hash == null)
+            throw new IllegalArgumentException("The hash cannot be null");
+        if(hash.isEmpty()){
+            empties |= 1L << size;
+        } else {
+            if(hash.length() != words * 8)
+                throw new IllegalArgumentException("Invalid hash length: " + hash.length());
+            for(int w = 0; w < words; w++)
+                siblings.putLong((size * words + w) * 8, hash.word(w));
+        }
+        if(isLeft)
+            directions |= 1L << size;
+        size++;
         return true;
     }
 
+    /**
+     * Restituisce il numero di passi aggiunti alla prova, al più pari alla
+     * sua lunghezza massima.
+     *
+     * @return il numero di passi della prova.
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Restituisce un passo della prova.
+     *
+     * @param i
+     *              la posizione del passo, dal più vicino al dato.
+     * @return il passo in posizione i.
+     * @throws IndexOutOfBoundsException
+     *                                       se la posizione non è valida.
+     */
+    public MerkleProofHash getStep(int i) {
+        if(i < 0 || i >= size)
+            throw new IndexOutOfBoundsException(i);
+        boolean isLeft = (directions >>> i & 1) != 0;
+        if((empties >>> i & 1) != 0)
+            return new MerkleProofHash(Digest.EMPTY, isLeft);
+        long[] digest = new long[words];
+        readSibling(i, digest);
+        return new MerkleProofHash(Digest.read(digest, 0, words), isLeft);
+    }
+
+    /**
+     * Legge le parole dell'hash del fratello di un passo, senza allocare
+     * oggetti. Il passo non deve avere un fratello vuoto.
+     */
+    void readSibling(int i, long[] dst) {
+        for(int w = 0; w < words; w++)
+            dst[w] = siblings.getLong((i * words + w) * 8);
+    }
+
+    /**
+     * Restituisce true se il fratello di un passo è a sinistra.
+     */
+    boolean isLeft(int i) {
+        return (directions >>> i & 1) != 0;
+    }
+
+    /**
+     * Restituisce true se il fratello di un passo è vuoto.
+     */
+    boolean isSiblingEmpty(int i) {
+        return (empties >>> i & 1) != 0;
+    }
+
+    /**
+     * Restituisce il numero di byte della forma binaria della prova.
+     *
+     * @return la lunghezza della forma binaria.
+     */
+    public int getEncodedSize() {
+        return HEADER_SIZE + rootHash.length() + size * words * 8;
+    }
+
+    /**
+     * Scrive la forma binaria della prova nel buffer fornito, a partire dalla
+     * sua posizione, che viene avanzata. Vengono scritti i soli passi
+     * aggiunti.
+     *
+     * @param out
+     *                il buffer di destinazione.
+     * @throws IllegalArgumentException
+     *                                      se il buffer è null o la funzione
+     *                                      di hash non ha una codifica
+     *                                      binaria.
+     * @throws BufferOverflowException
+     *                                      se il buffer non ha
+     *                                      {@link #getEncodedSize()} byte
+     *                                      disponibili.
+     */
+    public void writeTo(ByteBuffer out) {
+        if(out == null)
+            throw new IllegalArgumentException("The buffer is null");
+        byte hashId = BinaryFormat.idOf(hashFunction);
+        if(out.remaining() < getEncodedSize())
+            throw new BufferOverflowException();
+        ByteOrder order = out.order();
+        out.order(ByteOrder.BIG_ENDIAN);
+        out.putShort(MAGIC).put((byte) VERSION).put(hashId)
+           .put(BinaryFormat.idOf(concatenation)).put((byte) rootHash.length())
+           .put((byte) size).put((byte) 0).putLong(directions).putLong(empties)
+           .put(rootHash.toByteArray());
+        int n = size * words * 8;
+        out.put(out.position(), siblings, 0, n);
+        out.position(out.position() + n);
+        out.order(order);
+    }
+
+    /**
+     * Legge una prova dalla sua forma binaria, a partire dalla posizione del
+     * buffer, che viene avanzata oltre la prova. La prova restituita è
+     * completa e verifica leggendo gli hash dei fratelli direttamente dal
+     * buffer, che non deve essere modificato finché la prova è in uso.
+     *
+     * @param in
+     *               il buffer contenente la prova.
+     * @return la prova letta.
+     * @throws IllegalArgumentException
+     *                                      se il buffer è null o non contiene
+     *                                      una prova valida.
+     */
+    public static MerkleProof wrap(ByteBuffer in) {
+        if(in == null)
+            throw new IllegalArgumentException("The buffer is null");
+        int start = in.position();
+        ByteBuffer src = in.duplicate().order(ByteOrder.BIG_ENDIAN);
+        if(in.remaining() < HEADER_SIZE || src.getShort(start) != MAGIC)
+            throw new IllegalArgumentException("Not a Merkle proof");
+        if(src.get(start + 2) != VERSION)
+            throw new IllegalArgumentException("Unsupported version: " + src.get(start + 2));
+        HashFunction hashFunction = BinaryFormat.hashFunction(src.get(start + 3));
+        Concatenation concatenation = BinaryFormat.concatenation(src.get(start + 4));
+        int rootLength = src.get(start + 5);
+        int size = src.get(start + 6);
+        int digestLength = hashFunction.getDigestLength();
+        if((rootLength != 0 && rootLength != digestLength) || size < 0 || size > MAX_LENGTH)
+            throw new IllegalArgumentException("Corrupted Merkle proof header");
+        int total = HEADER_SIZE + rootLength + size * digestLength;
+        if(in.remaining() < total)
+            throw new IllegalArgumentException("Truncated Merkle proof");
+        long directions = src.getLong(start + 8);
+        long empties = src.getLong(start + 16);
+        byte[] root = new byte[rootLength];
+        src.get(start + HEADER_SIZE, root);
+        Digest rootHash = rootLength == 0 ? Digest.EMPTY : Digest.of(root);
+        ByteBuffer siblings = src.slice(start + HEADER_SIZE + rootLength, size * digestLength);
+        in.position(start + total);
+        return new MerkleProof(rootHash, size, directions, empties, siblings,
+                concatenation, hashFunction);
+    }
+
     /**
      * Rappresenta un singolo step di una prova di Merkle per la validazione di
      * un dato elemento.
@@ -90,7 +440,7 @@ public class MerkleProof {
         /**
          * L'hash dell'oggetto.
          */
-        private final String hash;
+        private final Digest hash;
 
         /**
          * Indica se l'hash dell'oggetto dovrebbe essere concatenato a sinistra
@@ -102,6 +452,14 @@ public class MerkleProof {
             if (hash == null)
                 throw new IllegalArgumentException("The hash cannot be null");
 
+            this.hash = Digest.fromHex(hash);
+            this.isLeft = isLeft;
+        }
+
+        public MerkleProofHash(Digest hash, boolean isLeft) {
+            if (hash == null)
+                throw new IllegalArgumentException("The hash cannot be null");
+
             this.hash = hash;
             this.isLeft = isLeft;
         }
@@ -112,6 +470,15 @@ public class MerkleProof {
          * @return l'hash dell'oggetto MerkleProofHash.
          */
         public String getHash() {
+            return hash.toString();
+        }
+
+        /**
+         * Restituisce l'hash dell'oggetto MerkleProofHash in forma binaria.
+         *
+         * @return l'hash dell'oggetto MerkleProofHash in forma binaria.
+         */
+        public Digest getDigest() {
             return hash;
         }
 
@@ -136,7 +503,7 @@ public class MerkleProof {
         public int hashCode() {
             final int prime = 31;
             int result = 1;
-            result = prime * result + ((hash == null) ? 0 : hash.hashCode());
+            result = prime * result + hash.hashCode();
             result = prime * result + (isLeft ? 1231 : 1237);
             return result;
         }
@@ -156,8 +523,28 @@ public class MerkleProof {
      *                                      se il dato è null.
      */
     public boolean proveValidityOfData(Object data) {
-        String hash = HashUtil.dataToHash(data);
-        return proveValidityOfBranch(new MerkleNode(hash));
+        return verify(HashUtil.dataToDigest(data, hashFunction));
+    }
+
+    /**
+     * Valida un dato per questa prova di Merkle calcolandone l'hash con un
+     * funnel, come per gli alberi costruiti da una lista con lo stesso
+     * funnel.
+     *
+     * @param <T>
+     *                   il tipo del dato.
+     * @param data
+     *                   l'elemento da validare.
+     * @param funnel
+     *                   il funnel del dato.
+     * @return true se il dato è valido secondo la prova; false altrimenti.
+     * @throws IllegalArgumentException
+     *                                      se il dato o il funnel sono null.
+     */
+    public <T> boolean proveValidityOfData(T data, Funnel<? super T> funnel) {
+        if (data == null || funnel == null)
+            throw new IllegalArgumentException();
+        return verify(hashFunction.hashObject(data, funnel));
     }
 
     /**
@@ -174,13 +561,71 @@ public class MerkleProof {
      *                                      se il branch è null.
      */
     public boolean proveValidityOfBranch(MerkleNode branch) {
-        String hash = branch.getHash();
-        for(MerkleProofHash mph : this.proof){
-            //faccio la somma di volta in volta dei nuovi hash
-            String sum = mph.isLeft ? mph.hash + hash : hash + mph.hash;
-            hash = HashUtil.computeMD5(sum.getBytes());
+        return verify(branch.getDigest());
+    }
+
+    /**
+     * Valida l'hash di un dato o di un branch per questa prova, senza
+     * allocare oggetti. Gli hash intermedi vengono calcolati in un buffer del
+     * thread corrente; come in {@link HashUtil#combine}, un hash vuoto non
+     * contribuisce alla concatenazione e due hash vuoti danno un hash vuoto.
+     *
+     * @param hash
+     *                 l'hash da validare.
+     * @return true se l'hash è valido secondo la prova; false altrimenti.
+     */
+    public boolean verify(Digest hash) {
+        if(hash == null)
+            return false;
+        boolean empty = hash.isEmpty();
+        if(!empty && hash.length() != words * 8)
+            return false;
+        Scratch scratch = SCRATCH.get();
+        long[] current = scratch.current;
+        long[] sibling = scratch.sibling;
+        byte[] buffer = scratch.buffer;
+        for(int w = 0; w < words && !empty; w++)
+            current[w] = hash.word(w);
+        int out = words * 8 * 4;
+        for(int i = 0; i < size; i++){
+            boolean siblingEmpty = (empties >>> i & 1) != 0;
+            if(empty && siblingEmpty)
+                continue;
+            //combino di volta in volta l'hash corrente con quello della prova
+            boolean isLeft = (directions >>> i & 1) != 0;
+            int n = 0;
+            if(!siblingEmpty)
+                readSibling(i, sibling);
+            if(isLeft && !siblingEmpty)
+                n += concatenation.write(sibling, 0, words, buffer, n);
+            if(!empty)
+                n += concatenation.write(current, 0, words, buffer, n);
+            if(!isLeft && !siblingEmpty)
+                n += concatenation.write(sibling, 0, words, buffer, n);
+            hashFunction.hashInto(buffer, 0, n, buffer, out);
+            Digest.readWords(buffer, out, words, current, 0);
+            empty = false;
         }
-        return hash.equals(this.rootHash);
+        if(empty || rootHash.isEmpty())
+            return empty && rootHash.isEmpty();
+        if(rootHash.length() != words * 8)
+            return false;
+        for(int w = 0; w < words; w++)
+            if(current[w] != rootHash.word(w))
+                return false;
+        return true;
     }
 
-}
\ No newline at end of file
+    /**
+     * Buffer di lavoro della verifica, sufficienti per hash di 256 bit.
+     */
+    private static final class Scratch {
+        final long[] current = new long[4]; // Hash corrente
+        final long[] sibling = new long[4]; // Hash del fratello
+        final byte[] buffer = new byte[32 * 5]; // Concatenazione e risultato
+    }
+
+    private static final ThreadLocal<Scratch> SCRATCH = ThreadLocal
+            .withInitial(Scratch::new);
+
+}
\ No newline at end of file
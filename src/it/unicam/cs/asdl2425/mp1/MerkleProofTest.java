@@ -3,8 +3,7 @@ package it.unicam.cs.asdl2425.mp1;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
-import java.lang.reflect.Field;
-import java.util.Iterator;
+import java.nio.ByteBuffer;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -31,6 +30,14 @@ import static org.junit.jupiter.api.Assertions.*;
  * 
  * <li>{@link #testVerifyProofOnData3()}: Verifica che un dato non valido venga correttamente respinto
  * dalla prova di Merkle.</li>
+ * 
+ * <li>{@link #testPackedProof()}: Verifica che la prova compatta restituisca i passi
+ * inseriti e che la verifica coincida con la combinazione degli hash passo per passo,
+ * anche con passi di padding, SHA-256 e concatenazione binaria.</li>
+ * 
+ * <li>{@link #testWireFormat()}: Verifica che una prova scritta in forma binaria venga
+ * riletta da un buffer con gli stessi passi e la stessa validità, e che un buffer non
+ * valido venga respinto.</li>
  * </ul>
  */
 public class MerkleProofTest {
@@ -69,15 +76,8 @@ public class MerkleProofTest {
             MerkleProof proof =  new MerkleProof(rootHash1, 2);
             proof.addHash(HashUtil.dataToHash("Alice paga Bob"), true);
             proof.addHash(HashUtil.computeMD5((HashUtil.dataToHash("Charlie paga Diana")+HashUtil.dataToHash("Diana paga Alice")).getBytes()), false);
-            Class<?> clazz = proof.getClass();
-            Field privateField = clazz.getDeclaredField("proof");
-            privateField.setAccessible(true);
-
-            HashLinkedList<MerkleProof.MerkleProofHash> list = (HashLinkedList<MerkleProof.MerkleProofHash>) privateField.get(proof);
-
-            Iterator<MerkleProof.MerkleProofHash> itr = list.iterator();
-            assertTrue(itr.hasNext());
-            MerkleProof.MerkleProofHash next = itr.next();
+            assertEquals(2, proof.getSize(), "La prova dovrebbe contenere due passi");
+            MerkleProof.MerkleProofHash next = proof.getStep(0);
             assertEquals(next.getHash(), HashUtil.dataToHash("Alice paga Bob"), "L'hash dovrebbe essere inserito correttamente");
             assertTrue(next.isLeft(), "L'hash dovrebbe essere inserito a sinistra");
         } catch (Exception e) {
@@ -110,4 +110,67 @@ public class MerkleProofTest {
         assertFalse(proof.proveValidityOfData("Dato non valido"), "La prova di validità del dato non dovrebbe andare a buon fine");
     }
 
+    @Test
+    void testPackedProof() {
+        Digest leaf = HashFunction.SHA256.hash(HashUtil.intToBytes(7));
+        Digest a = HashFunction.SHA256.hash(HashUtil.intToBytes(1));
+        Digest b = HashFunction.SHA256.hash(HashUtil.intToBytes(2));
+        Digest root = HashUtil.combine(leaf, a, Concatenation.BINARY, HashFunction.SHA256);
+        root = HashUtil.combine(root, Digest.EMPTY, Concatenation.BINARY, HashFunction.SHA256);
+        root = HashUtil.combine(b, root, Concatenation.BINARY, HashFunction.SHA256);
+        MerkleProof proof = new MerkleProof(root, 3, Concatenation.BINARY, HashFunction.SHA256);
+        assertTrue(proof.addHash(a, false));
+        assertTrue(proof.addHash(Digest.EMPTY, false));
+        assertTrue(proof.addHash(b, true));
+        assertEquals(3, proof.getSize(), "La prova dovrebbe contenere tre passi");
+        assertEquals(a, proof.getStep(0).getDigest(), "Il primo passo non è corretto");
+        assertEquals("", proof.getStep(1).getHash(), "Il secondo passo dovrebbe essere vuoto");
+        assertTrue(proof.getStep(2).isLeft(), "Il terzo passo dovrebbe essere a sinistra");
+        assertTrue(proof.verify(leaf), "La prova dovrebbe essere valida per la foglia");
+        assertFalse(proof.verify(a), "La prova non dovrebbe essere valida per un altro hash");
+        assertFalse(proof.verify(HashFunction.MD5.hash(HashUtil.intToBytes(7))),
+                "Un hash di lunghezza diversa non dovrebbe essere valido");
+        assertFalse(proof.addHash(leaf, true), "La prova completa non dovrebbe accettare altri hash");
+        assertThrows(IllegalArgumentException.class,
+                () -> new MerkleProof(leaf, MerkleProof.MAX_LENGTH + 1, Concatenation.BINARY,
+                        HashFunction.SHA256),
+                "Una prova troppo lunga non dovrebbe essere costruita");
+    }
+
+    @Test
+    void testWireFormat() {
+        HashLinkedList<Integer> list = new HashLinkedList<>(HashFunction.SHA256);
+        for (int i = 0; i < 11; i++)
+            list.addAtTail(i * 7);
+        MerkleTree<Integer> tree = new MerkleTree<>(list,
+                new MerkleTree.Options().setConcatenation(Concatenation.BINARY));
+        MerkleProof proof = tree.getMerkleProof(Integer.valueOf(70));
+        ByteBuffer buffer = ByteBuffer.allocateDirect(3 + 2 * proof.getEncodedSize());
+        buffer.position(3);
+        proof.writeTo(buffer);
+        tree.getMerkleProof(Integer.valueOf(0)).writeTo(buffer);
+        assertFalse(buffer.hasRemaining(), "Le due prove dovrebbero occupare tutto il buffer");
+        buffer.flip().position(3);
+        MerkleProof read = MerkleProof.wrap(buffer);
+        assertEquals(3 + proof.getEncodedSize(), buffer.position(),
+                "La posizione dovrebbe essere avanzata oltre la prova");
+        assertEquals(proof.getSize(), read.getSize(), "Il numero di passi dovrebbe coincidere");
+        assertEquals(proof.getRootHash(), read.getRootHash(), "La radice dovrebbe coincidere");
+        for (int i = 0; i < read.getSize(); i++) {
+            assertEquals(proof.getStep(i).getHash(), read.getStep(i).getHash(), "Il passo " + i + " dovrebbe coincidere");
+            assertEquals(proof.getStep(i).isLeft(), read.getStep(i).isLeft(), "La direzione del passo " + i + " dovrebbe coincidere");
+        }
+        assertTrue(read.proveValidityOfData(70), "La prova letta dovrebbe essere valida");
+        assertFalse(read.proveValidityOfData(71), "La prova letta non dovrebbe validare altri dati");
+        assertFalse(read.addHash(Digest.EMPTY, true), "La prova letta dovrebbe essere completa");
+        assertTrue(MerkleProof.wrap(buffer).proveValidityOfData(0), "Anche la seconda prova dovrebbe essere valida");
+
+        ByteBuffer corrupted = ByteBuffer.allocate(proof.getEncodedSize());
+        proof.writeTo(corrupted);
+        corrupted.flip().limit(corrupted.limit() - 1);
+        assertThrows(IllegalArgumentException.class, () -> MerkleProof.wrap(corrupted),
+                "Una prova troncata dovrebbe essere respinta");
+        assertThrows(IllegalArgumentException.class, () -> MerkleProof.wrap(ByteBuffer.allocate(64)),
+                "Un buffer senza intestazione dovrebbe essere respinto");
+    }
 }
@@ -1,9 +1,19 @@
 package it.unicam.cs.asdl2425.mp1;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
 import java.util.List;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
 
 /**
  * Un Merkle Tree, noto anche come hash tree binario, è una struttura dati per
@@ -20,9 +30,10 @@ import java.util.Set;
  */
 public class MerkleTree<T> {
     /**
-     * Nodo radice dell'albero.
+     * Livelli dell'albero, memorizzati in array contigui di long. I nodi
+     * vengono esposti come oggetti MerkleNode solo quando richiesti.
      */
-    private final MerkleNode root;
+    private final MerkleLevels levels;
 
     /**
      * Larghezza dell'albero, ovvero il numero di nodi nell'ultimo livello.
@@ -30,7 +41,34 @@ public class MerkleTree<T> {
     private final int width;
     private final int height;
 
-    private final HashMap<String, Integer> indexMap;
+    /**
+     * Indice dagli hash delle foglie alle loro posizioni: un
+     * {@link LeafIndex} modificabile o, dopo {@link #freeze()}, un
+     * {@link FrozenLeafIndex}.
+     */
+    private LeafLookup leafIndex;
+
+    /**
+     * Indice degli hash dei nodi interni, costruito alla prima ricerca di un
+     * branch se abilitato dalle opzioni; null finché non è costruito.
+     */
+    private volatile NodeIndex nodeIndex;
+
+    /**
+     * Funzione di hash dei dati e dei nodi, ereditata dalla lista.
+     */
+    private final HashFunction hashFunction;
+
+    /**
+     * Funnel dei dati ereditato dalla lista, o null se gli hash dei dati
+     * dipendono da {@code hashCode()}.
+     */
+    private final Funnel<? super T> funnel;
+
+    /**
+     * Opzioni con cui l'albero è stato costruito.
+     */
+    private final Options options;
 
     /**
      * Costruisce un albero di Merkle a partire da un oggetto HashLinkedList,
@@ -47,16 +85,49 @@ public class MerkleTree<T> {
      *                                      se la lista è null o vuota.
      */
     public MerkleTree(HashLinkedList<T> hashList) {
-        if(hashList == null || hashList.getSize() == 0)
+        this(hashList, Concatenation.HEX);
+    }
+
+    /**
+     * Costruisce un albero di Merkle a partire da un oggetto HashLinkedList,
+     * specificando se gli hash dei nodi intermedi debbano essere calcolati
+     * concatenando le rappresentazioni esadecimali degli hash dei figli, come
+     * nel costruttore predefinito, oppure direttamente i loro byte. Gli hash
+     * dei nodi intermedi e dei dati cercati nell'albero sono calcolati con la
+     * stessa funzione di hash della lista.
+     *
+     * @param hashList
+     *                          un oggetto HashLinkedList contenente i dati e
+     *                          i relativi hash.
+     * @param concatenation
+     *                          la modalità di concatenazione degli hash.
+     * @throws IllegalArgumentException
+     *                                      se la lista è null o vuota o se la
+     *                                      modalità è null.
+     */
+    public MerkleTree(HashLinkedList<T> hashList, Concatenation concatenation) {
+        this(hashList, new Options().setConcatenation(concatenation));
+    }
+
+    /**
+     * Costruisce un albero di Merkle a partire da un oggetto HashLinkedList,
+     * secondo le opzioni fornite. Le opzioni vengono copiate, per cui
+     * modifiche successive non hanno effetto sull'albero.
+     *
+     * @param hashList
+     *                     un oggetto HashLinkedList contenente i dati e i
+     *                     relativi hash.
+     * @param options
+     *                     le opzioni di costruzione dell'albero.
+     * @throws IllegalArgumentException
+     *                                      se la lista è null o vuota o se le
+     *                                      opzioni sono null.
+     */
+    public MerkleTree(HashLinkedList<T> hashList, Options options) {
+        if(hashList == null || hashList.getSize() == 0 || options == null)
             throw new IllegalArgumentException();
+        this.options = options.copy();
         this.width = hashList.getSize();
-        LinkedList<MerkleNode> lista = new LinkedList<>();
-        List<String> allHashes = hashList.getAllHashes();
-        this.indexMap = new HashMap<>();
-        for(int i = 0; i < allHashes.size(); i++){
-            lista.add(new MerkleNode(allHashes.get(i)));
-            indexMap.put(allHashes.get(i), i);
-        }
         int len = 1;
         int height = 0;
         while(len < width) {
@@ -64,30 +135,240 @@ public class MerkleTree<T> {
             len *=2;
         }
         this.height = height;
-        while(len > width){
-            lista.add(new MerkleNode(""));
-            len--;
-        }
-
-        while(lista.size() > 1){
-            LinkedList<MerkleNode> listaPadri = new LinkedList<>();
-            MerkleNode temp = null;
-            for(MerkleNode nodo : lista){
-                if(temp == null){
-                    temp = nodo;
-                } else {
-                    //ise entrambe le stringhe sono vuote, il nuovo hash sarà una stringa vuota
-                    String nuovoHash = temp.getHash().equals("") && nodo.getHash().equals("") ? "" :
-                                        //altrimenti, calcolo il nuovo hash partendo dia figli
-                                        HashUtil.computeMD5((temp.getHash() + nodo.getHash()).getBytes());
-                    listaPadri.add(new MerkleNode(nuovoHash, temp, nodo));
-                    temp = null;
+
+        this.hashFunction = hashList.getHashFunction();
+        this.funnel = hashList.getFunnel();
+        this.levels = new MerkleLevels(width, height,
+                this.options.getConcatenation(), hashFunction, this.options.getShape());
+        List<Digest> allHashes = hashList.getAllDigests();
+        LeafIndex leaves = new LeafIndex(hashFunction.getDigestLength() / 8, width);
+        for(int i = 0; i < allHashes.size(); i++){
+            levels.setLeaf(i, allHashes.get(i));
+            leaves.add(allHashes.get(i), i);
+        }
+        this.leafIndex = leaves;
+        //i nodi di padding non vengono memorizzati, restano vuoti per posizione
+        if(this.options.isParallel())
+            this.options.invoke(levels.buildTask(this.options.getSequentialCutoff()));
+        else levels.build();
+        if(this.options.isFrozen())
+            freeze();
+    }
+
+    /**
+     * Costruisce un albero su livelli già calcolati, letti da un file.
+     */
+    private MerkleTree(MerkleLevels levels, LeafLookup leafIndex,
+            Options options, Funnel<? super T> funnel) {
+        this.options = options;
+        this.levels = levels;
+        this.width = levels.getWidth();
+        this.height = levels.getHeight();
+        this.hashFunction = levels.getHashFunction();
+        this.funnel = funnel;
+        this.leafIndex = leafIndex;
+        if(options.isFrozen())
+            freeze();
+    }
+
+    /**
+     * Salva l'albero su file, nel formato letto da {@link #load(Path)} e da
+     * {@link MappedMerkleTree#open(Path)}. Vengono scritti gli hash di tutti
+     * i nodi e l'indice delle foglie, ma non i dati.
+     *
+     * @param path
+     *                 il percorso del file, sostituito se esiste.
+     * @throws IOException
+     *                                      se il file non può essere
+     *                                      scritto.
+     * @throws IllegalArgumentException
+     *                                      se il percorso è null o la
+     *                                      funzione di hash non ha una
+     *                                      codifica binaria.
+     */
+    public void save(Path path) throws IOException {
+        MappedMerkleTree.write(this, path);
+    }
+
+    /**
+     * Salva l'albero su file con la disposizione dei nodi fornita. Con
+     * {@link NodeLayout#BLOCKED} le prove di Merkle e i confronti eseguiti
+     * sul file tramite {@link MappedMerkleTree} leggono meno pagine.
+     *
+     * @param path
+     *                   il percorso del file, sostituito se esiste.
+     * @param layout
+     *                   la disposizione dei nodi nel file.
+     * @throws IOException
+     *                                      se il file non può essere
+     *                                      scritto.
+     * @throws IllegalArgumentException
+     *                                      se un parametro è null o la
+     *                                      funzione di hash non ha una
+     *                                      codifica binaria.
+     */
+    public void save(Path path, NodeLayout layout) throws IOException {
+        MappedMerkleTree.write(this, path, layout);
+    }
+
+    /**
+     * Carica un albero salvato con {@link #save(Path)}, con le opzioni
+     * predefinite e senza funnel.
+     *
+     * @param <T>
+     *                 il tipo dei dati dell'albero.
+     * @param path
+     *                 il percorso del file.
+     * @return l'albero caricato.
+     * @throws IOException
+     *                         se il file non può essere letto o non contiene
+     *                         un albero valido.
+     * @see #load(Path, Options, Funnel)
+     */
+    public static <T> MerkleTree<T> load(Path path) throws IOException {
+        return load(path, new Options(), null);
+    }
+
+    /**
+     * Carica un albero salvato con {@link #save(Path)} o
+     * {@link #save(Path, NodeLayout)} con una sola lettura sequenziale del
+     * file, senza ricalcolare alcun hash: gli hash dei nodi
+     * vengono copiati direttamente nei livelli e l'indice delle foglie
+     * memorizzato nel file viene usato così com'è, per cui l'albero può
+     * rispondere a ricerche e prove appena caricato. L'indice completo delle
+     * foglie viene ricostruito, sempre senza calcolare hash, solo al primo
+     * aggiornamento.
+     *
+     * <p>
+     * Funzione di hash, concatenazione e forma sono quelle del file e
+     * prevalgono su quelle delle opzioni. L'indice dei nodi interni, se
+     * abilitato, viene costruito solo alla prima ricerca di un branch, come
+     * le posizioni successive degli hash ripetuti. La coerenza dei livelli può
+     * essere controllata in seguito con {@link #verifyLevels()}.
+     *
+     * @param <T>
+     *                    il tipo dei dati dell'albero.
+     * @param path
+     *                    il percorso del file.
+     * @param options
+     *                    le opzioni dell'albero.
+     * @param funnel
+     *                    il funnel con cui cercare i dati, o null per usare
+     *                    {@code hashCode()}; deve essere quello della lista
+     *                    da cui l'albero salvato è stato costruito.
+     * @return l'albero caricato.
+     * @throws IOException
+     *                                      se il file non può essere letto,
+     *                                      non contiene un albero valido o
+     *                                      l'albero ha troppe foglie per la
+     *                                      heap.
+     * @throws IllegalArgumentException
+     *                                      se il percorso o le opzioni sono
+     *                                      null.
+     */
+    public static <T> MerkleTree<T> load(Path path, Options options,
+            Funnel<? super T> funnel) throws IOException {
+        if(path == null || options == null)
+            throw new IllegalArgumentException();
+        try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)){
+            ByteBuffer buffer = ByteBuffer.allocate(1 << 20);
+            buffer.limit(MerkleTreeFile.HEADER_SIZE);
+            fill(channel, buffer);
+            MerkleTreeFile format = MerkleTreeFile.readHeader(buffer, channel.size());
+            if(format.width == 0 || format.width > Integer.MAX_VALUE
+                    || format.indexCapacity > Integer.MAX_VALUE - 8)
+                throw new IOException("Unsupported tree width: " + format.width);
+            Options copy = options.copy().setConcatenation(format.concatenation)
+                    .setShape(format.shape);
+            MerkleLevels levels = new MerkleLevels((int) format.width, format.height,
+                    format.concatenation, format.hashFunction, format.shape);
+            if(format.layout == NodeLayout.LEVELS)
+                for(int l = 0; l <= format.height; l++)
+                    readLongs(channel, buffer, levels.levelArray(l));
+            else readBlocks(channel, buffer, levels, format);
+            long[] table = new long[(int) format.indexCapacity];
+            readLongs(channel, buffer, table);
+            return new MerkleTree<>(levels, new StoredLeafIndex(levels, format, table),
+                    copy, funnel);
+        }
+    }
+
+    /**
+     * Legge dal file un array di long, attraverso il buffer fornito.
+     */
+    private static void readLongs(FileChannel channel, ByteBuffer buffer,
+            long[] dst) throws IOException {
+        int done = 0;
+        while(done < dst.length){
+            int n = Math.min(dst.length - done, buffer.capacity() / 8);
+            buffer.clear().limit(n * 8);
+            fill(channel, buffer);
+            buffer.asLongBuffer().get(dst, done, n);
+            done += n;
+        }
+    }
+
+    /**
+     * Legge in sequenza i blocchi di un file disposto a blocchi, più blocchi
+     * per lettura, copiando ogni nodo nel suo livello.
+     */
+    private static void readBlocks(FileChannel channel, ByteBuffer buffer,
+            MerkleLevels levels, MerkleTreeFile format) throws IOException {
+        int words = format.digestLength / 8;
+        buffer.clear().limit(MerkleTreeFile.PAGE_SIZE - MerkleTreeFile.HEADER_SIZE);
+        fill(channel, buffer);
+        int perRead = Math.max(1, buffer.capacity() / (int) format.blockSize);
+        for(int band = 0; band < format.bands(); band++){
+            long blocks = format.blocks(band);
+            for(long block = 0; block < blocks; block++){
+                if(block % perRead == 0){
+                    buffer.clear().limit((int) (Math.min(perRead, blocks - block) * format.blockSize));
+                    fill(channel, buffer);
+                }
+                int base = (int) (block % perRead * format.blockSize);
+                for(int slot = 0; slot < format.blockNodes(); slot++){
+                    int l = format.slotLevel(band, slot);
+                    long i = format.slotIndex(block, slot);
+                    if(l > format.height || i >= format.count(l))
+                        continue;
+                    long[] level = levels.levelArray(l);
+                    for(int w = 0; w < words; w++)
+                        level[(int) i * words + w] = buffer.getLong(base
+                                + slot * format.digestLength + w * 8);
                 }
             }
-            lista = listaPadri;
         }
+    }
 
-        this.root = lista.get(0);
+    /**
+     * Riempie il buffer fino al limite e lo prepara alla lettura.
+     */
+    private static void fill(FileChannel channel, ByteBuffer buffer)
+            throws IOException {
+        while(buffer.hasRemaining())
+            if(channel.read(buffer) < 0)
+                throw new IOException("Truncated Merkle tree file");
+        buffer.flip();
+    }
+
+    /**
+     * Controlla in background che l'hash di ogni nodo interno coincida con
+     * quello calcolato dagli hash dei figli, come dopo un
+     * {@link #load(Path, Options, Funnel)}. Il controllo usa lo stesso pool
+     * delle costruzioni e degli aggiornamenti in blocco, ovvero il pool delle
+     * opzioni o il pool condiviso con il parallelismo richiesto, mentre
+     * l'albero continua a rispondere a ricerche e prove; l'albero non deve
+     * essere modificato finché il controllo non è terminato. Le foglie non
+     * possono essere controllate senza i dati: per verificarle, confrontare
+     * la radice con una radice attesa.
+     *
+     * @return un future che viene completato con true se tutti i livelli sono
+     *         coerenti, false altrimenti.
+     */
+    public CompletableFuture<Boolean> verifyLevels() {
+        ForkJoinPool pool = options.pool();
+        return CompletableFuture.supplyAsync(
+                () -> pool.invoke(levels.verifyTask(options.getSequentialCutoff())), pool);
     }
 
     /**
@@ -96,7 +377,25 @@ public class MerkleTree<T> {
      * @return il nodo radice.
      */
     public MerkleNode getRoot() {
-        return root;
+        return new MerkleNodeView(levels, height, 0);
+    }
+
+    /**
+     * Restituisce il nodo in una data posizione dell'albero, ovvero la radice
+     * del sottoalbero che copre le foglie da {@code index << level} in poi.
+     *
+     * @param level
+     *                  il livello del nodo, 0 per le foglie.
+     * @param index
+     *                  la posizione del nodo nel livello.
+     * @return il nodo richiesto.
+     * @throws IllegalArgumentException
+     *                                      se la posizione non è valida.
+     */
+    public MerkleNode getNode(int level, int index) {
+        if(level < 0 || level > height || index < 0 || index >= levels.size(level))
+            throw new IllegalArgumentException("Invalid node position");
+        return new MerkleNodeView(levels, level, index);
     }
 
     /**
@@ -117,6 +416,189 @@ public class MerkleTree<T> {
         return height;
     }
 
+    /**
+     * Restituisce i livelli dell'albero, per la scrittura su file.
+     *
+     * @return i livelli dell'albero.
+     */
+    MerkleLevels getLevels() {
+        return levels;
+    }
+
+    /**
+     * Sostituisce il dato in una data posizione dell'albero, ricalcolando
+     * solo gli hash dei nodi nel cammino dalla foglia alla radice, in tempo
+     * O(log n). Gli altri nodi non vengono modificati. La lista da cui
+     * l'albero è stato costruito non viene aggiornata.
+     *
+     * @param index
+     *                    la posizione della foglia, da 0 a getWidth() - 1.
+     * @param newData
+     *                    il nuovo dato.
+     * @throws IllegalArgumentException
+     *                                      se il dato è null o l'indice non
+     *                                      è valido.
+     * @throws IllegalStateException
+     *                                      se l'albero è congelato.
+     */
+    public void updateLeaf(int index, T newData) {
+        if(newData == null)
+            throw new IllegalArgumentException("The data is null");
+        updateLeafHash(index, digestOf(newData));
+    }
+
+    /**
+     * Sostituisce l'hash della foglia in una data posizione dell'albero,
+     * ricalcolando solo gli hash dei nodi nel cammino dalla foglia alla
+     * radice, in tempo O(log n).
+     *
+     * @param index
+     *                    la posizione della foglia, da 0 a getWidth() - 1.
+     * @param newHash
+     *                    il nuovo hash della foglia.
+     * @throws IllegalArgumentException
+     *                                      se l'hash è null, ha una lunghezza
+     *                                      diversa da quella della funzione di
+     *                                      hash dell'albero o se l'indice non
+     *                                      è valido.
+     * @throws IllegalStateException
+     *                                      se l'albero è congelato.
+     */
+    public void updateLeafHash(int index, Digest newHash) {
+        if(newHash == null || newHash.length() != hashFunction.getDigestLength())
+            throw new IllegalArgumentException("Invalid leaf hash");
+        if(index < 0 || index >= width)
+            throw new IllegalArgumentException("Invalid leaf index: " + index);
+        LeafIndex leaves = mutableLeafIndex();
+        leaves.remove(levels.getDigest(0, index), index);
+        leaves.add(newHash, index);
+        if(nodeIndex != null)
+            nodeIndex.removePaths(new int[] { index });
+        levels.updateLeaf(index, newHash);
+        if(nodeIndex != null)
+            nodeIndex.addPaths(new int[] { index });
+    }
+
+    /**
+     * Rende l'albero immutabile e sostituisce l'indice delle foglie con una
+     * funzione di hash perfetta quasi minimale sugli hash delle foglie, che
+     * occupa pochi byte per foglia. Le ricerche di
+     * {@link #getIndexOfData(Object)} e {@link #validateData(Object)} restano
+     * in tempo costante e confrontano l'hash cercato con quello memorizzato
+     * nella foglia. Dopo il congelamento {@link #updateLeaf(int, Object)},
+     * {@link #updateLeafHash(int, Digest)}, {@link #applyBatch(Map)} e
+     * {@link #applyHashBatch(Map)} lanciano {@link IllegalStateException}.
+     * Chiamare il metodo su un albero già congelato non ha effetto.
+     *
+     * @throws IllegalStateException
+     *                                   se non viene trovata una funzione di
+     *                                   hash perfetta per le foglie.
+     */
+    public void freeze() {
+        if(!isFrozen())
+            leafIndex = new FrozenLeafIndex(levels);
+    }
+
+    /**
+     * Restituisce true se l'albero è stato congelato con {@link #freeze()}.
+     *
+     * @return true se l'albero è immutabile, false altrimenti.
+     */
+    public boolean isFrozen() {
+        return leafIndex instanceof FrozenLeafIndex;
+    }
+
+    /**
+     * Restituisce l'indice mutabile delle foglie, costruendolo dalle foglie
+     * se l'albero è stato caricato da un file.
+     */
+    private LeafIndex mutableLeafIndex() {
+        if(isFrozen())
+            throw new IllegalStateException("The tree is frozen");
+        if(!(leafIndex instanceof LeafIndex)){
+            LeafIndex leaves = new LeafIndex(hashFunction.getDigestLength() / 8, width);
+            for(int i = 0; i < width; i++)
+                leaves.add(levels.getDigest(0, i), i);
+            leafIndex = leaves;
+        }
+        return (LeafIndex) leafIndex;
+    }
+
+    /**
+     * Sostituisce i dati in un insieme di posizioni dell'albero. I nodi
+     * interni da aggiornare vengono marcati livello per livello e ciascuno di
+     * essi viene ricalcolato una sola volta, anche se è antenato di più
+     * foglie modificate. Se l'albero è stato costruito con un parallelismo
+     * maggiore di 1, i nodi di uno stesso livello vengono ricalcolati in
+     * parallelo quando sono più della soglia sequenziale.
+     *
+     * @param updates
+     *                    i nuovi dati, indicizzati per posizione.
+     * @throws IllegalArgumentException
+     *                                      se la mappa è null o contiene
+     *                                      indici non validi o dati null; in
+     *                                      tal caso l'albero non viene
+     *                                      modificato.
+     * @throws IllegalStateException
+     *                                      se l'albero è congelato.
+     */
+    public void applyBatch(Map<Integer, T> updates) {
+        if(updates == null)
+            throw new IllegalArgumentException("The updates are null");
+        Map<Integer, Digest> hashes = new HashMap<>();
+        for(Entry<Integer, T> update : updates.entrySet()){
+            if(update.getValue() == null)
+                throw new IllegalArgumentException("The data is null");
+            hashes.put(update.getKey(), digestOf(update.getValue()));
+        }
+        applyHashBatch(hashes);
+    }
+
+    /**
+     * Sostituisce gli hash di un insieme di foglie dell'albero, con le stesse
+     * regole di {@link #applyBatch(Map)}.
+     *
+     * @param updates
+     *                    i nuovi hash, indicizzati per posizione.
+     * @throws IllegalArgumentException
+     *                                      se la mappa è null o contiene
+     *                                      indici o hash non validi; in tal
+     *                                      caso l'albero non viene
+     *                                      modificato.
+     * @throws IllegalStateException
+     *                                      se l'albero è congelato.
+     */
+    public void applyHashBatch(Map<Integer, Digest> updates) {
+        if(updates == null)
+            throw new IllegalArgumentException("The updates are null");
+        int[] indices = new int[updates.size()];
+        Digest[] digests = new Digest[updates.size()];
+        int k = 0;
+        //controllo tutti gli aggiornamenti prima di modificare l'albero
+        for(Entry<Integer, Digest> update : updates.entrySet()){
+            Integer index = update.getKey();
+            Digest hash = update.getValue();
+            if(index == null || index < 0 || index >= width)
+                throw new IllegalArgumentException("Invalid leaf index: " + index);
+            if(hash == null || hash.length() != hashFunction.getDigestLength())
+                throw new IllegalArgumentException("Invalid leaf hash");
+            indices[k] = index;
+            digests[k++] = hash;
+        }
+        LeafIndex leaves = mutableLeafIndex();
+        for(int i = 0; i < indices.length; i++)
+            leaves.remove(levels.getDigest(0, indices[i]), indices[i]);
+        for(int i = 0; i < indices.length; i++)
+            leaves.add(digests[i], indices[i]);
+        if(nodeIndex != null)
+            nodeIndex.removePaths(indices);
+        if(options.isParallel())
+            options.invoke(levels.updateLeavesTask(indices, digests, options.getSequentialCutoff()));
+        else levels.updateLeaves(indices, digests);
+        if(nodeIndex != null)
+            nodeIndex.addPaths(indices);
+    }
+
     /**
      * Restituisce l'indice di un dato elemento secondo l'albero di Merkle
      * descritto da un dato branch. Gli indici forniti partono da 0 e
@@ -142,22 +624,13 @@ public class MerkleTree<T> {
     public int getIndexOfData(MerkleNode branch, T data) {
         if(branch == null || data == null)
             throw new IllegalArgumentException();
-
-        String hash = HashUtil.dataToHash(data);
-
-        if(!validateBranch(branch))
+        MerkleNodeView node = locate(branch);
+        if(node == null)
             throw new IllegalArgumentException();
-
-        String left = getLastChildrenHash(branch, true);
-        String right = getLastChildrenHash(branch, false);
-        if((!left.equals("")) && this.indexMap.containsKey(hash)){
-            int index = this.indexMap.get(hash);
-            int indexL = this.indexMap.get(left);
-            int indexR = right.equals("") ? this.indexMap.size() - 1 : this.indexMap.get(right);
-            if(index < indexL || index > indexR)
-                return -1;
-            return index - indexL;
-        }
+        //un dato ripetuto può comparire sia dentro che fuori dal branch
+        for(int index : leafIndex.all(digestOf(data)))
+            if(index >= node.getLeafStart() && index < node.getLeafEnd())
+                return index - node.getLeafStart();
         return -1;
     }
 
@@ -172,6 +645,7 @@ public class MerkleTree<T> {
      * indici forniti partono da 0 e corrispondono all'ordine degli hash
      * corrispondenti agli elementi nell'ultimo livello dell'albero da sinistra
      * a destra (e quindi l'ordine degli elementi forniti alla costruzione). Se
+     * l'elemento compare più volte viene restituita la prima posizione. Se
      * l'hash dell'elemento non è presente come dato dell'albero, viene
      * restituito -1.
      *
@@ -184,10 +658,25 @@ public class MerkleTree<T> {
     public int getIndexOfData(T data) {
         if(data == null)
             throw new IllegalArgumentException();
-        String hash = HashUtil.dataToHash(data);
-        if(this.indexMap.containsKey(hash))
-            return indexMap.get(hash);
-        else return -1;
+        return leafIndex.first(digestOf(data));
+    }
+
+    /**
+     * Restituisce tutte le posizioni in cui compare un elemento secondo questo
+     * albero di Merkle, utile quando gli stessi dati sono stati inseriti più
+     * volte.
+     *
+     * @param data
+     *                 l'elemento da cercare.
+     * @return le posizioni del dato in ordine crescente; un array vuoto se il
+     *         dato non è presente.
+     * @throws IllegalArgumentException
+     *                                      se il dato è null.
+     */
+    public int[] getIndicesOfData(T data) {
+        if(data == null)
+            throw new IllegalArgumentException();
+        return leafIndex.all(digestOf(data));
     }
 
     /**
@@ -203,8 +692,115 @@ public class MerkleTree<T> {
     public boolean validateData(T data) {
         if(data == null)
             return false;
-        String hash = HashUtil.dataToHash(data);
-        return this.indexMap.containsKey(hash);
+        return leafIndex.contains(digestOf(data));
+    }
+
+    /**
+     * Sottopone a validazione un insieme di elementi, come
+     * {@link #validateData(Object)} per ciascuno. Gli hash degli elementi
+     * vengono calcolati in parallelo a blocchi se le opzioni dell'albero lo
+     * prevedono, e l'indice delle foglie viene interrogato in ordine di
+     * posizione nella sua tabella invece che nell'ordine della collezione.
+     *
+     * @param data
+     *                 gli elementi da validare.
+     * @return l'insieme delle posizioni, nell'ordine di iterazione della
+     *         collezione, degli elementi presenti nell'albero.
+     * @throws IllegalArgumentException
+     *                                      se la collezione è null.
+     */
+    public BitSet validateAll(Collection<? extends T> data) {
+        int[] indices = probeAll(data, false);
+        BitSet valid = new BitSet(indices.length);
+        for(int i = 0; i < indices.length; i++)
+            if(indices[i] >= 0)
+                valid.set(i);
+        return valid;
+    }
+
+    /**
+     * Restituisce l'indice di ciascun elemento di un insieme, come
+     * {@link #getIndexOfData(Object)}, con il calcolo degli hash e le ricerche
+     * organizzati come in {@link #validateAll(Collection)}.
+     *
+     * @param data
+     *                 gli elementi da cercare.
+     * @return gli indici degli elementi nell'ordine di iterazione della
+     *         collezione; -1 per gli elementi non presenti.
+     * @throws IllegalArgumentException
+     *                                      se la collezione è null o contiene
+     *                                      un elemento null.
+     */
+    public int[] indexOfAll(Collection<? extends T> data) {
+        return probeAll(data, true);
+    }
+
+    /**
+     * Calcola gli hash degli elementi e ne cerca la prima posizione, con le
+     * ricerche ordinate secondo {@link LeafLookup#probeOrder(Digest)}. Gli
+     * elementi null hanno posizione -1 se ammessi.
+     */
+    @SuppressWarnings("unchecked")
+    private int[] probeAll(Collection<? extends T> data, boolean rejectNull) {
+        if(data == null)
+            throw new IllegalArgumentException();
+        T[] items = (T[]) data.toArray();
+        if(rejectNull)
+            for(T item : items)
+                if(item == null)
+                    throw new IllegalArgumentException();
+        int n = items.length;
+        Digest[] digests = new Digest[n];
+        int cutoff = options.getSequentialCutoff();
+        if(options.isParallel() && n > cutoff)
+            options.invoke(new DigestTask(items, digests, 0, n, cutoff));
+        else
+            for(int i = 0; i < n; i++)
+                digests[i] = items[i] == null ? null : digestOf(items[i]);
+        //posizione iniziale della ricerca nei 32 bit alti, elemento nei bassi
+        long[] order = new long[n];
+        for(int i = 0; i < n; i++)
+            order[i] = (digests[i] == null ? 0L : (long) leafIndex.probeOrder(digests[i]) << 32) | i;
+        if(options.isParallel() && n > cutoff)
+            Arrays.parallelSort(order);
+        else
+            Arrays.sort(order);
+        int[] indices = new int[n];
+        for(long key : order){
+            int i = (int) key;
+            indices[i] = digests[i] == null ? -1 : leafIndex.first(digests[i]);
+        }
+        return indices;
+    }
+
+    /**
+     * Calcola in parallelo gli hash di un blocco di elementi.
+     */
+    @SuppressWarnings("serial") // Non serializzabile: riferisce gli elementi
+    private final class DigestTask extends RecursiveAction {
+        private final T[] items;
+        private final Digest[] digests;
+        private final int from, to, cutoff;
+
+        DigestTask(T[] items, Digest[] digests, int from, int to, int cutoff) {
+            this.items = items;
+            this.digests = digests;
+            this.from = from;
+            this.to = to;
+            this.cutoff = cutoff;
+        }
+
+        @Override
+        protected void compute() {
+            if(to - from <= cutoff){
+                for(int i = from; i < to; i++)
+                    digests[i] = items[i] == null ? null : digestOf(items[i]);
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new DigestTask(items, digests, from, mid, cutoff),
+                    new DigestTask(items, digests, mid, to, cutoff));
+        }
     }
 
     /**
@@ -219,15 +815,7 @@ public class MerkleTree<T> {
      * @return true se il sottoalbero di Merkle è valido; false altrimenti.
      */
     public boolean validateBranch(MerkleNode branch) {
-        return validateBranch(branch.getHash(), this.root);
-    }
-
-    private boolean validateBranch(String hash, MerkleNode node){
-        if(node.getHash().equals(hash))
-            return true;
-        if(node.isLeaf())
-            return false;
-        return validateBranch(hash, node.getLeft()) || validateBranch(hash, node.getRight());
+        return branch != null && locate(branch) != null;
     }
 
     /**
@@ -245,20 +833,10 @@ public class MerkleTree<T> {
     public boolean validateTree(MerkleTree<T> otherTree) {
         if(otherTree == null)
             throw new IllegalArgumentException("Is impossible validate a null tree");
-        if(this.height != otherTree.height)
-            return false;
-        return validateNodes(this.root, otherTree.root);
-    }
-
-    private boolean validateNodes(MerkleNode node1, MerkleNode node2){
-        if(!node1.equals(node2))
-            return false;
-        if(node1.isLeaf() != node2.isLeaf())
+        if(this.height != otherTree.height || this.width != otherTree.width)
             return false;
-        if(node1.isLeaf())
-            return true;
-        return validateNodes(node1.getLeft(), node2.getLeft())
-                && validateNodes(node1.getRight(), node2.getRight());
+        //hash delle radici uguali implicano sottoalberi uguali
+        return this.getRoot().equals(otherTree.getRoot());
     }
 
     /**
@@ -282,17 +860,36 @@ public class MerkleTree<T> {
      * @return l'insieme di indici degli elementi di dati non validi.
      */
     public Set<Integer> findInvalidDataIndices(MerkleTree<T> otherTree) {
-        if(otherTree == null || this.height != otherTree.height)
+        checkSameShape(otherTree);
+        List<Integer> invalid = new ArrayList<>();
+        //si scende solo nei sottoalberi con hash diversi
+        levels.diff(otherTree.levels, height, 0, invalid);
+        return new HashSet<>(invalid);
+    }
+
+    /**
+     * Come {@link #findInvalidDataIndices(MerkleTree)}, ma confronta in
+     * parallelo i sottoalberi diversi più grandi della soglia sequenziale
+     * delle opzioni di questo albero, sul pool delle opzioni. Conviene quando
+     * i due alberi differiscono in molte foglie.
+     *
+     * @param otherTree
+     *                      l'altro Merkle Tree.
+     * @throws IllegalArgumentException
+     *                                      se l'altro albero è null o ha una
+     *                                      struttura diversa.
+     * @return l'insieme di indici degli elementi di dati non validi.
+     */
+    public Set<Integer> findInvalidDataIndicesParallel(MerkleTree<T> otherTree) {
+        checkSameShape(otherTree);
+        return new HashSet<>(options.invoke(
+                levels.diffTask(otherTree.levels, options.getSequentialCutoff())));
+    }
+
+    private void checkSameShape(MerkleTree<T> otherTree) {
+        if(otherTree == null || this.height != otherTree.height || this.width != otherTree.width
+                || levels.getShape() != otherTree.levels.getShape())
             throw new IllegalArgumentException();
-        Set<Integer> set = new HashSet<>();
-        for(Entry<String, Integer> pair : this.indexMap.entrySet()){
-            //controllo se l'hash è presente anche nell'altro albero
-            //e ha la stessa posizione. in caso contrario, lo aggiungo
-            if(!(otherTree.indexMap.containsKey(pair.getKey()) 
-                || otherTree.indexMap.get(pair.getKey()) == pair.getValue()))
-                set.add(pair.getValue());
-        }
-        return set;
     }
 
     /**
@@ -314,7 +911,31 @@ public class MerkleTree<T> {
      *                                      dell'albero.
      */
     public MerkleProof getMerkleProof(T data) {
-        return getMerkleProof(new MerkleNode(HashUtil.dataToHash(data)));
+        if(data == null)
+            throw new IllegalArgumentException();
+        int index = leafIndex.first(digestOf(data));
+        if(index < 0)
+            throw new IllegalArgumentException();
+        return buildProof(0, index);
+    }
+
+    /**
+     * Restituisce la prova di Merkle per la foglia in una data posizione. La
+     * prova viene costruita risalendo dalla foglia alla radice, in tempo
+     * O(log n). Per un albero di {@code Integer}, la prova di un dato va
+     * richiesta passando un {@code Integer} esplicito, altrimenti viene scelto
+     * questo metodo.
+     *
+     * @param leafIndex
+     *                      la posizione della foglia, da 0 a getWidth() - 1.
+     * @return la prova di Merkle per la foglia.
+     * @throws IllegalArgumentException
+     *                                      se l'indice non è valido.
+     */
+    public MerkleProof getMerkleProof(int leafIndex) {
+        if(leafIndex < 0 || leafIndex >= width)
+            throw new IllegalArgumentException("Invalid leaf index: " + leafIndex);
+        return buildProof(0, leafIndex);
     }
 
     /**
@@ -339,23 +960,131 @@ public class MerkleTree<T> {
     public MerkleProof getMerkleProof(MerkleNode branch) {
         if(branch == null)
             throw new IllegalArgumentException();
-        List<MerkleNode> path = getPath(this.root, branch.getHash());
-        if(path == null)
+        MerkleNodeView node = locate(branch);
+        if(node == null)
             throw new IllegalArgumentException();
-        MerkleProof proof = new MerkleProof(this.root.getHash(), path.size() - 1);
-        String temp = branch.getHash();
-        for(int i = path.size() - 2; i >= 0; i--){
-            String hash;
-            boolean isLeft;
-            if(path.get(i).getLeft().getHash().equals(temp)){
-                hash = path.get(i).getRight().getHash();
-                isLeft = false;
-            } else {
-                hash = path.get(i).getLeft().getHash();
-                isLeft = true;
+        return buildProof(node.getLevel(), node.getIndex());
+    }
+
+    /**
+     * Restituisce una prova di Merkle multipla per un insieme di foglie. Ogni
+     * hash fratello necessario compare nella prova una sola volta, per cui la
+     * sua dimensione cresce con l'unione dei cammini delle foglie.
+     *
+     * @param leafIndices
+     *                        le posizioni delle foglie; le ripetizioni sono
+     *                        ignorate.
+     * @return la prova multipla, con le posizioni in ordine crescente.
+     * @throws IllegalArgumentException
+     *                                      se l'array è null o vuoto, o
+     *                                      contiene una posizione non valida.
+     */
+    public MerkleMultiProof getMerkleMultiProof(int[] leafIndices) {
+        if(leafIndices == null || leafIndices.length == 0)
+            throw new IllegalArgumentException();
+        int[] indices = Arrays.stream(leafIndices).sorted().distinct().toArray();
+        if(indices[0] < 0 || indices[indices.length - 1] >= width)
+            throw new IllegalArgumentException("Invalid leaf index");
+        return new MerkleMultiProof(levels.getDigest(height, 0), height, indices,
+                MerkleMultiProof.collectSiblings(levels, indices),
+                levels.getConcatenation(), hashFunction, levels.getShape());
+    }
+
+    /**
+     * Restituisce una prova di Merkle multipla per un insieme di dati
+     * dell'albero. Le posizioni coperte dalla prova sono quelle dei dati, in
+     * ordine crescente.
+     *
+     * @param data
+     *                 i dati per i quali costruire la prova.
+     * @return la prova multipla.
+     * @throws IllegalArgumentException
+     *                                      se la lista è null o vuota, o
+     *                                      contiene un dato null o non
+     *                                      presente nell'albero.
+     */
+    public MerkleMultiProof getMerkleMultiProof(List<T> data) {
+        if(data == null)
+            throw new IllegalArgumentException();
+        int[] indices = new int[data.size()];
+        for(int k = 0; k < indices.length; k++){
+            if(data.get(k) == null)
+                throw new IllegalArgumentException();
+            int index = leafIndex.first(digestOf(data.get(k)));
+            if(index < 0)
+                throw new IllegalArgumentException();
+            indices[k] = index;
+        }
+        return getMerkleMultiProof(indices);
+    }
+
+    /**
+     * Calcola l'hash di un dato come la lista da cui l'albero è stato
+     * costruito.
+     */
+    private Digest digestOf(T data) {
+        return HashUtil.dataToDigest(data, funnel, hashFunction);
+    }
+
+    /**
+     * Trova la posizione di un nodo in questo albero: direttamente se il nodo
+     * è una vista su questo albero, tramite l'indice delle foglie se il suo
+     * hash è quello di un dato, tramite l'indice dei nodi interni se presente,
+     * altrimenti cercandone l'hash nei livelli.
+     */
+    private MerkleNodeView locate(MerkleNode branch) {
+        if(branch instanceof MerkleNodeView && ((MerkleNodeView) branch).getLevels() == levels)
+            return (MerkleNodeView) branch;
+        Digest hash = branch.getDigest();
+        if(hash == null)
+            return null;
+        int index = leafIndex.first(hash);
+        if(index >= 0)
+            return new MerkleNodeView(levels, 0, index);
+        //i nodi di padding non sono indicizzati
+        if(options.isBranchIndex() && !hash.isEmpty())
+            return nodeIndex().find(hash);
+        return levels.find(hash);
+    }
+
+    /**
+     * Restituisce l'indice dei nodi interni, costruendolo dai livelli al
+     * primo uso. Gli aggiornamenti precedenti non devono quindi mantenerlo.
+     */
+    private NodeIndex nodeIndex() {
+        NodeIndex index = nodeIndex;
+        if(index == null){
+            synchronized(this){
+                index = nodeIndex;
+                if(index == null)
+                    nodeIndex = index = new NodeIndex(levels);
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Costruisce la prova di Merkle di un nodo risalendo dalla sua posizione
+     * alla radice e raccogliendo l'hash del fratello a ogni livello. Con la
+     * forma {@link TreeShape#PROMOTE} i livelli in cui il nodo non ha un
+     * fratello vengono saltati, perché il nodo è promosso senza essere
+     * combinato.
+     */
+    private MerkleProof buildProof(int level, int index) {
+        boolean promote = levels.getShape() == TreeShape.PROMOTE;
+        int length = 0;
+        for(int l = level; l < height; l++)
+            if(!promote || !levels.isEmpty(l, (index >>> (l - level)) ^ 1))
+                length++;
+        MerkleProof proof = new MerkleProof(levels.getDigest(height, 0), length,
+                levels.getConcatenation(), hashFunction);
+        for(int l = level; l < height; l++){
+            if(!promote || !levels.isEmpty(l, index ^ 1)){
+                //se il nodo è un figlio destro, il fratello va concatenato a sinistra
+                boolean isLeft = (index & 1) == 1;
+                proof.addHash(levels.getDigest(l, index ^ 1), isLeft);
             }
-            proof.addHash(hash, isLeft);
-            temp = path.get(i).getHash();
+            index >>>= 1;
         }
         return proof;
     }
@@ -380,4 +1109,210 @@ public class MerkleTree<T> {
             return list;
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Opzioni di costruzione di un albero di Merkle. Ogni metodo di
+     * impostazione restituisce l'oggetto stesso, per cui le opzioni possono
+     * essere concatenate:
+     *
+     * <pre>
+     * new MerkleTree.Options().setParallelism(8).setSequentialCutoff(1 &lt;&lt; 14)
+     * </pre>
+     *
+     * <p>
+     * Con un parallelismo maggiore di 1 i sottoalberi vengono costruiti in
+     * parallelo su un ForkJoinPool, suddividendo ricorsivamente l'albero
+     * finché i sottoalberi non hanno al più {@code sequentialCutoff} foglie.
+     * Gli hash ottenuti sono identici a quelli della costruzione sequenziale.
+     */
+    public static class Options {
+
+        /**
+         * Numero di foglie predefinito sotto il quale un sottoalbero viene
+         * costruito sequenzialmente.
+         */
+        public static final int DEFAULT_SEQUENTIAL_CUTOFF = 1 << 12;
+
+        /**
+         * Pool condivisi dalle opzioni senza pool, uno per parallelismo,
+         * creati al primo uso. I thread inattivi terminano da soli.
+         */
+        private static final Map<Integer, ForkJoinPool> SHARED_POOLS = new ConcurrentHashMap<>();
+
+        private Concatenation concatenation = Concatenation.HEX;
+        private int parallelism = 1;
+        private int sequentialCutoff = DEFAULT_SEQUENTIAL_CUTOFF;
+        private ForkJoinPool pool;
+        private boolean branchIndex;
+        private TreeShape shape = TreeShape.PAD;
+        private boolean frozen;
+
+        /**
+         * Imposta la modalità di concatenazione degli hash dei figli.
+         *
+         * @param concatenation
+         *                          la modalità di concatenazione.
+         * @return queste opzioni.
+         * @throws IllegalArgumentException
+         *                                      se la modalità è null.
+         */
+        public Options setConcatenation(Concatenation concatenation) {
+            if (concatenation == null)
+                throw new IllegalArgumentException("The concatenation is null");
+            this.concatenation = concatenation;
+            return this;
+        }
+
+        /**
+         * Imposta il numero di thread usati per costruire l'albero. Con il
+         * valore 1, predefinito, la costruzione è sequenziale.
+         *
+         * @param parallelism
+         *                        il numero di thread.
+         * @return queste opzioni.
+         * @throws IllegalArgumentException
+         *                                      se il valore non è positivo.
+         */
+        public Options setParallelism(int parallelism) {
+            if (parallelism < 1)
+                throw new IllegalArgumentException("The parallelism must be positive");
+            this.parallelism = parallelism;
+            return this;
+        }
+
+        /**
+         * Imposta il numero di foglie sotto il quale un sottoalbero viene
+         * costruito sequenzialmente invece di essere suddiviso.
+         *
+         * @param sequentialCutoff
+         *                             il numero di foglie.
+         * @return queste opzioni.
+         * @throws IllegalArgumentException
+         *                                      se il valore non è positivo.
+         */
+        public Options setSequentialCutoff(int sequentialCutoff) {
+            if (sequentialCutoff < 1)
+                throw new IllegalArgumentException("The cutoff must be positive");
+            this.sequentialCutoff = sequentialCutoff;
+            return this;
+        }
+
+        /**
+         * Imposta un ForkJoinPool esistente da usare per le operazioni
+         * parallele. Se impostato, il parallelismo è quello del pool;
+         * altrimenti le operazioni usano un pool condiviso con il parallelismo
+         * richiesto, creato una sola volta.
+         *
+         * @param pool
+         *                 il pool da usare, o null per il pool condiviso.
+         * @return queste opzioni.
+         */
+        public Options setPool(ForkJoinPool pool) {
+            this.pool = pool;
+            return this;
+        }
+
+        /**
+         * Abilita o disabilita l'indice degli hash dei nodi interni, che rende
+         * costanti {@link MerkleTree#validateBranch(MerkleNode)} e la ricerca
+         * della posizione di un branch, al costo di circa 28 byte per nodo
+         * interno. L'indice viene costruito alla prima ricerca di un branch.
+         * È disabilitato in modo predefinito: senza indice un branch che non è
+         * una vista dell'albero viene cercato scorrendo i livelli.
+         *
+         * @param branchIndex
+         *                        true per mantenere l'indice.
+         * @return queste opzioni.
+         */
+        public Options setBranchIndex(boolean branchIndex) {
+            this.branchIndex = branchIndex;
+            return this;
+        }
+
+        /**
+         * Imposta la forma dell'albero, ovvero il trattamento dell'ultimo
+         * nodo di un livello senza fratello.
+         *
+         * @param shape
+         *                  la forma dell'albero.
+         * @return queste opzioni.
+         * @throws IllegalArgumentException
+         *                                      se la forma è null.
+         */
+        public Options setShape(TreeShape shape) {
+            if (shape == null)
+                throw new IllegalArgumentException("The shape is null");
+            this.shape = shape;
+            return this;
+        }
+
+        /**
+         * Imposta se l'albero va congelato subito dopo la costruzione, come
+         * con {@link MerkleTree#freeze()}.
+         *
+         * @param frozen
+         *                   true per costruire un albero immutabile.
+         * @return queste opzioni.
+         */
+        public Options setFrozen(boolean frozen) {
+            this.frozen = frozen;
+            return this;
+        }
+
+        public Concatenation getConcatenation() {
+            return concatenation;
+        }
+
+        public boolean isFrozen() {
+            return frozen;
+        }
+
+        public TreeShape getShape() {
+            return shape;
+        }
+
+        public boolean isBranchIndex() {
+            return branchIndex;
+        }
+
+        public int getParallelism() {
+            return pool != null ? pool.getParallelism() : parallelism;
+        }
+
+        public int getSequentialCutoff() {
+            return sequentialCutoff;
+        }
+
+        Options copy() {
+            Options copy = new Options();
+            copy.concatenation = concatenation;
+            copy.parallelism = parallelism;
+            copy.sequentialCutoff = sequentialCutoff;
+            copy.pool = pool;
+            copy.branchIndex = branchIndex;
+            copy.shape = shape;
+            copy.frozen = frozen;
+            return copy;
+        }
+
+        boolean isParallel() {
+            return getParallelism() > 1;
+        }
+
+        /**
+         * Restituisce il pool impostato o, in sua assenza, il pool condiviso
+         * con il parallelismo richiesto.
+         */
+        ForkJoinPool pool() {
+            return pool != null ? pool
+                    : SHARED_POOLS.computeIfAbsent(parallelism, ForkJoinPool::new);
+        }
+
+        /**
+         * Esegue un task sul pool delle opzioni.
+         */
+        <R> R invoke(ForkJoinTask<R> task) {
+            return pool().invoke(task);
+        }
+    }
+}
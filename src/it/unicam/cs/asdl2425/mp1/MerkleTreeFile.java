@@ -0,0 +1,351 @@
+package it.unicam.cs.asdl2425.mp1;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Formato su file di un albero di Merkle, condiviso da
+ * {@link MappedMerkleTree} e dal salvataggio di {@link MerkleTree}. Il file,
+ * con valori big-endian, è composto da:
+ * <ul>
+ * <li>un'intestazione di {@value #HEADER_SIZE} byte: il numero magico
+ * {@code "MKTR"}, la versione, i codici della funzione di hash, della
+ * concatenazione, della forma e della disposizione dei nodi, il numero di
+ * livelli per fascia della disposizione a blocchi, l'altezza, il
+ * numero di foglie e la capacità dell'indice delle foglie;</li>
+ * <li>gli hash dei nodi che coprono almeno una foglia reale, disposti secondo
+ * la {@link NodeLayout} del file;</li>
+ * <li>l'indice delle foglie, una tabella a indirizzamento aperto di
+ * {@code long} con la prima posizione di ogni hash distinto più uno, 0 per
+ * le voci libere.</li>
+ * </ul>
+ *
+ * <p>
+ * Con {@link NodeLayout#LEVELS} i livelli sono memorizzati dalle foglie alla
+ * radice, ciascuno come array di hash di lunghezza fissa. Con
+ * {@link NodeLayout#BLOCKED} i livelli sono divisi in fasce di
+ * {@code blockLevels} livelli a partire dalle foglie; il blocco di una fascia
+ * contiene i due sottoalberi figli di un nodo del primo livello sopra la
+ * fascia, livello per livello, ed è lungo esattamente una pagina di
+ * {@value #PAGE_SIZE} byte. Le fasce iniziano dopo una pagina riservata
+ * all'intestazione, per cui ogni blocco occupa una sola pagina; la fascia più
+ * alta ha un solo blocco, in parte inutilizzato. La posizione di una foglia
+ * non dipende dal numero di foglie, il che permette di scriverle in sequenza
+ * prima di conoscerlo.
+ *
+ * @author **JULIANO, SINAJ, juliano.sinaj@studenti.unicam.it**
+ */
+final class MerkleTreeFile {
+
+    /**
+     * Numero magico all'inizio del file, {@code "MKTR"}.
+     */
+    static final int MAGIC = 0x4D4B5452;
+
+    /**
+     * Versione del formato.
+     */
+    static final int VERSION = 1;
+
+    /**
+     * Lunghezza dell'intestazione in byte.
+     */
+    static final int HEADER_SIZE = 64;
+
+    /**
+     * Disposizione dei nodi livello per livello.
+     */
+    static final int LAYOUT_LEVELS = 0;
+
+    /**
+     * Disposizione dei nodi a blocchi di sottoalberi.
+     */
+    static final int LAYOUT_BLOCKED = 1;
+
+    /**
+     * Dimensione della pagina su cui sono allineati i blocchi.
+     */
+    static final int PAGE_SIZE = 4096;
+
+    final HashFunction hashFunction;
+    final Concatenation concatenation;
+    final TreeShape shape;
+    final long width;
+    final int height;
+    final int digestLength;
+    final long indexCapacity;
+    final NodeLayout layout;
+    final int blockLevels; // Livelli per fascia, 0 se disposto per livelli
+    final long blockSize; // Lunghezza di un blocco in byte
+    private final long[] offsets; // Inizio di ogni livello o fascia, poi dell'indice
+
+    /**
+     * Descrive il file di un albero con le caratteristiche fornite.
+     *
+     * @param hashFunction
+     *                          la funzione di hash.
+     * @param concatenation
+     *                          la modalità di concatenazione.
+     * @param shape
+     *                          la forma dell'albero.
+     * @param width
+     *                          il numero di foglie.
+     */
+    MerkleTreeFile(HashFunction hashFunction, Concatenation concatenation,
+            TreeShape shape, long width) {
+        this(hashFunction, concatenation, shape, width, NodeLayout.LEVELS);
+    }
+
+    /**
+     * Descrive il file di un albero con le caratteristiche e la disposizione
+     * dei nodi fornite.
+     *
+     * @param hashFunction
+     *                          la funzione di hash.
+     * @param concatenation
+     *                          la modalità di concatenazione.
+     * @param shape
+     *                          la forma dell'albero.
+     * @param width
+     *                          il numero di foglie.
+     * @param layout
+     *                          la disposizione dei nodi.
+     */
+    MerkleTreeFile(HashFunction hashFunction, Concatenation concatenation,
+            TreeShape shape, long width, NodeLayout layout) {
+        this.hashFunction = hashFunction;
+        this.concatenation = concatenation;
+        this.shape = shape;
+        this.width = width;
+        this.height = heightOf(width);
+        this.digestLength = hashFunction.getDigestLength();
+        //carico massimo di 3/4, con capacità potenza di due
+        this.indexCapacity = Math.max(2, Long.highestOneBit(Math.max(1, width * 4 / 3)) * 2);
+        this.layout = layout;
+        if (layout == NodeLayout.LEVELS) {
+            this.blockLevels = 0;
+            this.blockSize = 0;
+            this.offsets = new long[height + 2];
+            offsets[0] = HEADER_SIZE;
+            for (int l = 0; l <= height; l++)
+                offsets[l + 1] = offsets[l] + count(l) * digestLength;
+        } else {
+            this.blockLevels = blockLevels(digestLength);
+            this.blockSize = Math.max(PAGE_SIZE, blockNodes() * (long) digestLength);
+            int bands = bands();
+            this.offsets = new long[bands + 1];
+            offsets[0] = PAGE_SIZE;
+            for (int b = 0; b < bands; b++)
+                offsets[b + 1] = offsets[b] + blocks(b) * blockSize;
+        }
+    }
+
+    /**
+     * Restituisce il numero di livelli per fascia della disposizione a
+     * blocchi: il massimo per cui due sottoalberi fratelli stanno in una
+     * pagina.
+     */
+    private static int blockLevels(int digestLength) {
+        int k = 1;
+        while (((2L << (k + 1)) - 2) * digestLength <= PAGE_SIZE)
+            k++;
+        return k;
+    }
+
+    /**
+     * Restituisce il numero di fasce della disposizione a blocchi.
+     *
+     * @return il numero di fasce.
+     */
+    int bands() {
+        return height / blockLevels + 1;
+    }
+
+    /**
+     * Restituisce il numero di blocchi di una fascia, uno per nodo del primo
+     * livello sopra la fascia.
+     *
+     * @param band
+     *                 la fascia.
+     * @return il numero di blocchi.
+     */
+    long blocks(int band) {
+        return count((band + 1) * blockLevels);
+    }
+
+    /**
+     * Restituisce il numero di hash in un blocco.
+     *
+     * @return il numero di posizioni di un blocco.
+     */
+    int blockNodes() {
+        return (2 << blockLevels) - 2;
+    }
+
+    /**
+     * Restituisce la posizione nel file del blocco di una fascia.
+     *
+     * @param band
+     *                  la fascia.
+     * @param block
+     *                  il blocco nella fascia.
+     * @return la posizione del primo byte del blocco.
+     */
+    long blockOffset(int band, long block) {
+        return offsets[band] + block * blockSize;
+    }
+
+    /**
+     * Restituisce il livello del nodo in una posizione di un blocco.
+     *
+     * @param band
+     *                 la fascia del blocco.
+     * @param slot
+     *                 la posizione nel blocco.
+     * @return il livello del nodo.
+     */
+    int slotLevel(int band, int slot) {
+        int depth = 30 - Integer.numberOfLeadingZeros(slot + 2);
+        return (band + 1) * blockLevels - 1 - depth;
+    }
+
+    /**
+     * Restituisce la posizione nel livello del nodo in una posizione di un
+     * blocco.
+     *
+     * @param block
+     *                  il blocco nella fascia.
+     * @param slot
+     *                  la posizione nel blocco.
+     * @return la posizione del nodo nel suo livello.
+     */
+    long slotIndex(long block, int slot) {
+        int first = Integer.highestOneBit(slot + 2); // Nodi a questa profondità
+        return block * first + slot + 2 - first;
+    }
+
+    /**
+     * Restituisce l'altezza di un albero con il numero di foglie fornito.
+     *
+     * @param width
+     *                  il numero di foglie.
+     * @return l'altezza dell'albero.
+     */
+    static int heightOf(long width) {
+        return width <= 1 ? 0 : 64 - Long.numberOfLeadingZeros(width - 1);
+    }
+
+    /**
+     * Restituisce il numero di nodi memorizzati in un livello.
+     *
+     * @param level
+     *                  il livello.
+     * @return il numero di nodi che coprono almeno una foglia reale.
+     */
+    long count(int level) {
+        return (width + (1L << level) - 1) >>> level;
+    }
+
+    /**
+     * Restituisce la posizione nel file dell'hash di un nodo.
+     *
+     * @param level
+     *                  il livello del nodo.
+     * @param index
+     *                  la posizione del nodo nel livello.
+     * @return la posizione del primo byte dell'hash.
+     */
+    long nodeOffset(int level, long index) {
+        if (blockLevels == 0)
+            return offsets[level] + index * digestLength;
+        int band = level / blockLevels;
+        int bits = (band + 1) * blockLevels - level; // 2^bits nodi a questa profondità
+        long nodes = 1L << bits;
+        return offsets[band] + (index >>> bits) * blockSize
+                + (nodes - 2 + (index & (nodes - 1))) * digestLength;
+    }
+
+    /**
+     * Restituisce la posizione nel file dell'indice delle foglie.
+     *
+     * @return la posizione della prima voce dell'indice.
+     */
+    long indexOffset() {
+        return offsets[offsets.length - 1];
+    }
+
+    /**
+     * Restituisce la dimensione del file.
+     *
+     * @return la dimensione in byte.
+     */
+    long fileSize() {
+        return indexOffset() + indexCapacity * 8;
+    }
+
+    /**
+     * Posizione iniziale della ricerca di un hash nell'indice, ricavata dalla
+     * sua prima parola.
+     *
+     * @param word
+     *                 la prima parola dell'hash.
+     * @return la posizione nella tabella.
+     */
+    long indexSlot(long word) {
+        long h = (word ^ (word >>> 29)) * 0x9E3779B97F4A7C15L;
+        return (h ^ (h >>> 32)) & (indexCapacity - 1);
+    }
+
+    /**
+     * Scrive l'intestazione del file.
+     *
+     * @param out
+     *                il buffer di destinazione, con almeno
+     *                {@value #HEADER_SIZE} byte disponibili.
+     */
+    void writeHeader(ByteBuffer out) {
+        int start = out.position();
+        out.putInt(MAGIC).put((byte) VERSION).put(BinaryFormat.idOf(hashFunction))
+           .put(BinaryFormat.idOf(concatenation)).put((byte) shape.ordinal())
+           .put((byte) layout.ordinal()).put((byte) blockLevels).put(new byte[2]).putInt(height)
+           .putLong(width).putLong(indexCapacity);
+        out.put(new byte[HEADER_SIZE - (out.position() - start)]);
+    }
+
+    /**
+     * Legge l'intestazione di un file.
+     *
+     * @param in
+     *                 il buffer contenente l'intestazione.
+     * @param size
+     *                 la dimensione del file.
+     * @return la descrizione del file.
+     * @throws IOException
+     *                         se l'intestazione non è valida o non corrisponde
+     *                         alla dimensione del file.
+     */
+    static MerkleTreeFile readHeader(ByteBuffer in, long size) throws IOException {
+        if (in.remaining() < HEADER_SIZE || in.getInt(0) != MAGIC)
+            throw new IOException("Not a Merkle tree file");
+        if (in.get(4) != VERSION)
+            throw new IOException("Unsupported Merkle tree file version: " + in.get(4));
+        try {
+            HashFunction hashFunction = BinaryFormat.hashFunction(in.get(5));
+            Concatenation concatenation = BinaryFormat.concatenation(in.get(6));
+            TreeShape shape = TreeShape.values()[in.get(7)];
+            if (in.get(8) != LAYOUT_LEVELS && in.get(8) != LAYOUT_BLOCKED)
+                throw new IOException("Unsupported node layout: " + in.get(8));
+            long width = in.getLong(16);
+            if (width < 0)
+                throw new IOException("Corrupted Merkle tree file header");
+            MerkleTreeFile file = new MerkleTreeFile(hashFunction, concatenation, shape, width,
+                    NodeLayout.values()[in.get(8)]);
+            if (in.getInt(12) != file.height || in.getLong(24) != file.indexCapacity
+                    || in.get(9) != file.blockLevels || size != file.fileSize())
+                throw new IOException("Corrupted Merkle tree file header");
+            return file;
+        } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+            throw new IOException("Corrupted Merkle tree file header", e);
+        }
+    }
+}
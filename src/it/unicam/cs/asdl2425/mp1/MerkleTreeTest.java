@@ -2,12 +2,23 @@ package it.unicam.cs.asdl2425.mp1;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
-import java.lang.reflect.Field;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -77,10 +88,76 @@ import static org.junit.jupiter.api.Assertions.*;
  * 
  * <li>{@link #testSingleLeafTree()}: Verifica il comportamento del MerkleTree per un singolo elemento,
  * controllando larghezza, altezza e validità dei dati.</li>
+ * 
+ * <li>{@link #testTreeWithSha256()}: Verifica la costruzione di un MerkleTree con SHA-256
+ * e la validità delle prove generate.</li>
+ * 
+ * <li>{@link #testParallelConstruction()}: Verifica che la costruzione parallela produca
+ * la stessa radice di quella sequenziale.</li>
+ * 
+ * <li>{@link #testUpdateLeaf()}: Verifica che l'aggiornamento di una foglia produca lo stesso
+ * albero di una ricostruzione completa.</li>
+ * 
+ * <li>{@link #testUpdateLeafInvalid()}: Verifica che vengano lanciate eccezioni per indici
+ * o hash non validi.</li>
+ * 
+ * <li>{@link #testApplyBatch()}: Verifica che un aggiornamento di più foglie, sequenziale
+ * o parallelo, produca lo stesso albero di una ricostruzione completa.</li>
+ * 
+ * <li>{@link #testApplyBatchInvalid()}: Verifica che un aggiornamento con un indice non valido
+ * non modifichi l'albero.</li>
+ * 
+ * <li>{@link #testGetMerkleProofByIndex()}: Verifica che le prove generate a partire
+ * dall'indice di una foglia siano valide e coincidano con quelle generate dal dato.</li>
+ * 
+ * <li>{@link #testFindInvalidDataIndicesParallel()}: Verifica che il confronto parallelo
+ * trovi gli stessi indici di quello sequenziale su alberi molto diversi.</li>
+ * 
+ * <li>{@link #testFindInvalidDataIndicesDifferentWidth()}: Verifica che venga lanciata
+ * un'eccezione per alberi con un numero diverso di elementi.</li>
+ * 
+ * <li>{@link #testBranchIndex()}: Verifica che la validazione dei branch dia gli stessi
+ * risultati con e senza l'indice dei nodi interni, anche dopo un aggiornamento.</li>
+ * 
+ * <li>{@link #testNodePositions()}: Verifica che i nodi ottenuti dall'albero espongano
+ * livello e intervallo di foglie coperte, e che le eccezioni previste vengano lanciate.</li>
+ * 
+ * <li>{@link #testPromoteShape()}: Verifica che con la forma {@link TreeShape#PROMOTE} i nodi
+ * senza fratello vengano promossi, che le prove sul bordo destro siano più corte e che
+ * prove, prove multiple e aggiornamenti restino validi.</li>
+ * 
+ * <li>{@link #testDuplicateData()}: Verifica che un dato inserito più volte venga
+ * trovato in tutte le sue posizioni, anche dopo un aggiornamento.</li>
+ * 
+ * <li>{@link #testFreeze()}: Verifica che un albero congelato risponda alle stesse ricerche
+ * e che nessuno dei metodi di aggiornamento venga più accettato.</li>
+ *
+ * <li>{@link #testValidateAll()}: Verifica che la validazione di un insieme di dati, sequenziale
+ * e parallela, coincida con la validazione dei singoli dati, anche su un albero congelato.</li>
+ *
+ * <li>{@link #testIndexOfAll()}: Verifica che gli indici di un insieme di dati coincidano con
+ * quelli dei singoli dati e che un dato null venga respinto.</li>
+ *
+ * <li>{@link #testSaveLoad()}: Verifica che un albero caricato da file abbia gli stessi nodi,
+ * ricerche e prove dell'albero salvato e accetti aggiornamenti, anche con l'indice dei
+ * nodi interni costruito dopo il caricamento.</li>
+ *
+ * <li>{@link #testVerifyLevels()}: Verifica che il controllo in background dei livelli riconosca
+ * un file con un nodo interno alterato.</li>
+ *
+ * <li>{@link #testBranchIndexDuplicates()}: Verifica che l'indice dei nodi interni
+ * trovi i sottoalberi ripetuti di un albero con foglie uguali, anche dopo un
+ * aggiornamento.</li>
+ * 
+ * <li>{@link #testSharedPool()}: Verifica che le operazioni parallele senza
+ * pool impostato riusino un pool condiviso con il parallelismo richiesto.</li>
  * </ul>
  */
 class MerkleTreeTest {
 
+    @TempDir
+    Path dir;
+
     private HashLinkedList<String> hashList1;
     private HashLinkedList<Long> hashList2;
 
@@ -492,15 +569,8 @@ class MerkleTreeTest {
     void testVerifyProofData4(){
         try {
             MerkleProof proof =  merkleTree1.getMerkleProof("Alice paga Bob");
-            Class<?> clazz = proof.getClass();
-            Field privateField = clazz.getDeclaredField("proof");
-            privateField.setAccessible(true);
-
-            HashLinkedList<MerkleProof.MerkleProofHash> list = (HashLinkedList<MerkleProof.MerkleProofHash>) privateField.get(proof);
-
-            Iterator<MerkleProof.MerkleProofHash> itr = list.iterator();
-            assertTrue(itr.hasNext());
-            MerkleProof.MerkleProofHash hash = itr.next();
+            assertTrue(proof.getSize() > 0);
+            MerkleProof.MerkleProofHash hash = proof.getStep(0);
             assertEquals(HashUtil.dataToHash("Bob paga Charlie"), hash.getHash(), "L'hash dovrebbe essere uguale a quello di 'Bob paga Charlie'");
             assertFalse(hash.isLeft(), "L'hash dovrebbe essere concatenato a destra");
         } catch (Exception e) {
@@ -512,16 +582,10 @@ class MerkleTreeTest {
     void testVerifyProofData5(){
         try {
             MerkleProof proof =  merkleTree2.getMerkleProof(1443L);
-            Class<?> clazz = proof.getClass();
-            Field privateField = clazz.getDeclaredField("proof");
-            privateField.setAccessible(true);
-
-            HashLinkedList<MerkleProof.MerkleProofHash> list = (HashLinkedList<MerkleProof.MerkleProofHash>) privateField.get(proof);
-
-            Iterator<MerkleProof.MerkleProofHash> itr = list.iterator();
-            assertTrue(itr.hasNext() && itr.next().getHash().equals(""));
-            assertTrue(itr.hasNext() && itr.next().getHash().equals(""));
-            assertTrue(itr.hasNext() && !itr.next().getHash().equals(""));
+            assertTrue(proof.getSize() >= 3);
+            assertTrue(proof.getStep(0).getHash().equals(""));
+            assertTrue(proof.getStep(1).getHash().equals(""));
+            assertTrue(!proof.getStep(2).getHash().equals(""));
         } catch (Exception e) {
             e.printStackTrace();
         }
@@ -576,4 +640,426 @@ class MerkleTreeTest {
         assertTrue(singleTree.validateData("Alice paga Bob"),
                 "Il dato dovrebbe essere valido.");
     }
+
+    @Test
+    void testTreeWithSha256() {
+        HashLinkedList<String> shaList = new HashLinkedList<>(HashFunction.SHA256);
+        shaList.addAtTail("Alice paga Bob");
+        shaList.addAtTail("Bob paga Charlie");
+        shaList.addAtTail("Charlie paga Diana");
+        MerkleTree<String> shaTree = new MerkleTree<>(shaList);
+
+        assertEquals(64, shaTree.getRoot().getHash().length(),
+                "La radice dovrebbe essere un hash SHA-256.");
+        assertTrue(shaTree.validateData("Charlie paga Diana"),
+                "Il dato dovrebbe essere valido.");
+        MerkleProof proof = shaTree.getMerkleProof("Charlie paga Diana");
+        assertTrue(proof.proveValidityOfData("Charlie paga Diana"),
+                "La prova di Merkle dovrebbe essere valida.");
+        assertFalse(proof.proveValidityOfData("Alice paga Bob"),
+                "La prova di Merkle non dovrebbe validare un altro dato.");
+    }
+
+    @Test
+    void testParallelConstruction() {
+        HashLinkedList<Integer> bigList = new HashLinkedList<>();
+        for (int i = 0; i < 1000; i++) bigList.addAtTail(i);
+        for (Concatenation mode : Concatenation.values()) {
+            MerkleTree<Integer> serial = new MerkleTree<>(bigList,
+                    new MerkleTree.Options().setConcatenation(mode));
+            MerkleTree<Integer> parallel = new MerkleTree<>(bigList,
+                    new MerkleTree.Options().setConcatenation(mode)
+                            .setParallelism(4).setSequentialCutoff(8));
+            assertEquals(serial.getRoot(), parallel.getRoot(),
+                    "La radice della costruzione parallela dovrebbe coincidere con quella sequenziale.");
+            assertTrue(serial.validateTree(parallel),
+                    "Gli alberi dovrebbero essere identici.");
+        }
+    }
+
+    @Test
+    void testUpdateLeaf() {
+        merkleTree2.updateLeaf(5, 0L);
+        HashLinkedList<Long> modifiedList = new HashLinkedList<>();
+        for (int i = 1; i <= 13; i++) modifiedList.addAtTail(i == 6 ? 0L : 111L * i);
+        MerkleTree<Long> rebuilt = new MerkleTree<>(modifiedList);
+
+        assertEquals(rebuilt.getRoot(), merkleTree2.getRoot(),
+                "La radice aggiornata dovrebbe coincidere con quella ricostruita.");
+        assertEquals(5, merkleTree2.getIndexOfData(0L),
+                "Il nuovo dato dovrebbe trovarsi in posizione 5.");
+        assertFalse(merkleTree2.validateData(666L),
+                "Il dato sostituito non dovrebbe essere più valido.");
+        assertTrue(merkleTree2.getMerkleProof(0L).proveValidityOfData(0L),
+                "La prova del nuovo dato dovrebbe essere valida.");
+    }
+
+    @Test
+    void testUpdateLeafInvalid() {
+        assertThrows(IllegalArgumentException.class, () -> merkleTree1.updateLeaf(4, "Dato"),
+                "Dovrebbe lanciare IllegalArgumentException per un indice non valido.");
+        assertThrows(IllegalArgumentException.class, () -> merkleTree1.updateLeaf(0, null),
+                "Dovrebbe lanciare IllegalArgumentException per un dato null.");
+        assertThrows(IllegalArgumentException.class,
+                () -> merkleTree1.updateLeafHash(0, HashFunction.SHA256.hash(new byte[0])),
+                "Dovrebbe lanciare IllegalArgumentException per un hash di lunghezza diversa.");
+    }
+
+    @Test
+    void testApplyBatch() {
+        HashLinkedList<Integer> bigList = new HashLinkedList<>();
+        HashLinkedList<Integer> modifiedList = new HashLinkedList<>();
+        Map<Integer, Integer> updates = new HashMap<>();
+        for (int i = 0; i < 300; i++) {
+            bigList.addAtTail(i);
+            modifiedList.addAtTail(i % 7 == 0 ? -i : i);
+            if (i % 7 == 0) updates.put(i, -i);
+        }
+        MerkleTree<Integer> expected = new MerkleTree<>(modifiedList);
+
+        MerkleTree<Integer> serial = new MerkleTree<>(bigList);
+        serial.applyBatch(updates);
+        assertEquals(expected.getRoot(), serial.getRoot(),
+                "La radice aggiornata dovrebbe coincidere con quella ricostruita.");
+
+        MerkleTree<Integer> parallel = new MerkleTree<>(bigList,
+                new MerkleTree.Options().setParallelism(4).setSequentialCutoff(4));
+        parallel.applyBatch(updates);
+        assertEquals(expected.getRoot(), parallel.getRoot(),
+                "La radice aggiornata in parallelo dovrebbe coincidere con quella ricostruita.");
+        assertEquals(14, parallel.getIndexOfData(-14),
+                "Il nuovo dato dovrebbe trovarsi in posizione 14.");
+    }
+
+    @Test
+    void testApplyBatchInvalid() {
+        MerkleNode root = merkleTree1.getRoot();
+        Map<Integer, String> updates = new HashMap<>();
+        updates.put(0, "Dato modificato");
+        updates.put(7, "Dato fuori dall'albero");
+        assertThrows(IllegalArgumentException.class, () -> merkleTree1.applyBatch(updates),
+                "Dovrebbe lanciare IllegalArgumentException per un indice non valido.");
+        assertEquals(root, merkleTree1.getRoot(), "L'albero non dovrebbe essere modificato.");
+    }
+
+    @Test
+    void testGetMerkleProofByIndex() {
+        for (int i = 0; i < 13; i++) {
+            MerkleProof proof = merkleTree2.getMerkleProof(i);
+            assertEquals(4, proof.getLength(), "La prova di Merkle dovrebbe avere dimensione 4.");
+            assertTrue(proof.proveValidityOfData(111L * (i + 1)),
+                    "La prova di Merkle dovrebbe essere valida.");
+        }
+        assertThrows(IllegalArgumentException.class, () -> merkleTree2.getMerkleProof(13),
+                "Dovrebbe lanciare IllegalArgumentException per un indice non valido.");
+        assertThrows(IllegalArgumentException.class, () -> merkleTree2.getMerkleProof(-1),
+                "Dovrebbe lanciare IllegalArgumentException per un indice negativo.");
+    }
+
+    @Test
+    void testFindInvalidDataIndicesParallel() {
+        HashLinkedList<Integer> original = new HashLinkedList<>();
+        HashLinkedList<Integer> modified = new HashLinkedList<>();
+        Set<Integer> expected = new HashSet<>();
+        for (int i = 0; i < 1000; i++) {
+            original.addAtTail(i);
+            modified.addAtTail(i % 3 == 0 ? -i - 1 : i);
+            if (i % 3 == 0)
+                expected.add(i);
+        }
+        MerkleTree<Integer> tree = new MerkleTree<>(original,
+                new MerkleTree.Options().setParallelism(4).setSequentialCutoff(8));
+        MerkleTree<Integer> other = new MerkleTree<>(modified);
+        assertEquals(expected, tree.findInvalidDataIndices(other),
+                "Il confronto sequenziale non ha trovato gli indici attesi.");
+        assertEquals(expected, tree.findInvalidDataIndicesParallel(other),
+                "Il confronto parallelo non ha trovato gli indici attesi.");
+        assertTrue(tree.findInvalidDataIndicesParallel(new MerkleTree<>(original)).isEmpty(),
+                "Alberi identici non dovrebbero avere indici non validi.");
+    }
+
+    @Test
+    void testFindInvalidDataIndicesDifferentWidth() {
+        HashLinkedList<Long> shorter = new HashLinkedList<>();
+        for (int i = 1; i <= 12; i++) shorter.addAtTail(111L * i);
+        MerkleTree<Long> shorterTree = new MerkleTree<>(shorter);
+        assertThrows(IllegalArgumentException.class, () -> merkleTree2.findInvalidDataIndices(shorterTree),
+                "Dovrebbe lanciare IllegalArgumentException per alberi con struttura diversa.");
+    }
+
+    @Test
+    void testBranchIndex() {
+        HashLinkedList<Integer> list = new HashLinkedList<>();
+        for (int i = 0; i < 11; i++) list.addAtTail(i % 4);
+        MerkleTree<Integer> indexed = new MerkleTree<>(list,
+                new MerkleTree.Options().setBranchIndex(true));
+        MerkleTree<Integer> plain = new MerkleTree<>(list);
+        MerkleNode branch = indexed.getRoot().getLeft().getRight();
+        MerkleNode copy = new MerkleNode(branch.getHash());
+        assertTrue(indexed.validateBranch(copy), "Il branch dovrebbe essere valido.");
+        assertTrue(plain.validateBranch(copy), "Il branch dovrebbe essere valido anche senza indice.");
+        assertEquals(plain.getIndexOfData(copy, 2), indexed.getIndexOfData(copy, 2),
+                "L'indice relativo al branch dovrebbe essere lo stesso con e senza indice.");
+        // il sottoalbero delle foglie 4-7 è uguale a quello delle foglie 0-3
+        indexed.updateLeaf(1, 99);
+        assertTrue(indexed.validateBranch(copy),
+                "Il branch dovrebbe restare valido perché compare anche in un'altra posizione.");
+        indexed.updateLeaf(5, 99);
+        assertFalse(indexed.validateBranch(copy),
+                "Il branch non dovrebbe più essere valido dopo l'aggiornamento.");
+        assertTrue(indexed.validateBranch(new MerkleNode(indexed.getRoot().getLeft().getRight().getHash())),
+                "Il nuovo branch dovrebbe essere valido.");
+    }
+
+    @Test
+    void testNodePositions() {
+        MerkleNode root = merkleTree2.getRoot();
+        assertEquals(4, root.getLevel(), "La radice dovrebbe essere al livello 4.");
+        assertEquals(0, root.getLeafStart(), "La radice dovrebbe coprire le foglie da 0.");
+        assertEquals(13, root.getLeafEnd(), "La radice dovrebbe coprire tutte le 13 foglie.");
+        MerkleNode branch = root.getRight().getLeft();
+        assertEquals(branch, merkleTree2.getNode(2, 2), "Il nodo in posizione (2, 2) non è corretto.");
+        assertEquals(8, branch.getLeafStart(), "Il branch dovrebbe coprire le foglie da 8.");
+        assertEquals(12, branch.getLeafEnd(), "Il branch dovrebbe coprire le foglie fino a 11.");
+        assertEquals(2, merkleTree2.getIndexOfData(branch, 1221L),
+                "L'indice relativo al branch non è corretto.");
+        MerkleNode padding = merkleTree2.getNode(1, 7);
+        assertEquals(padding.getLeafStart(), padding.getLeafEnd(),
+                "Un nodo di padding dovrebbe coprire un intervallo vuoto.");
+        assertEquals(-1, new MerkleNode(branch.getHash()).getLevel(),
+                "Un nodo esterno all'albero non dovrebbe avere un livello.");
+        assertThrows(IllegalArgumentException.class, () -> merkleTree2.getNode(1, 8),
+                "Dovrebbe lanciare IllegalArgumentException per una posizione non valida.");
+    }
+
+    @Test
+    void testPromoteShape() {
+        HashLinkedList<Integer> list = new HashLinkedList<>();
+        for (int i = 0; i < 5; i++) list.addAtTail(i);
+        MerkleTree<Integer> tree = new MerkleTree<>(list,
+                new MerkleTree.Options().setShape(TreeShape.PROMOTE));
+        String[] h = new String[5];
+        for (int i = 0; i < 5; i++) h[i] = HashUtil.dataToHash(i);
+        String left = HashUtil.computeMD5((HashUtil.computeMD5((h[0] + h[1]).getBytes())
+                + HashUtil.computeMD5((h[2] + h[3]).getBytes())).getBytes());
+        String root = HashUtil.computeMD5((left + h[4]).getBytes());
+        assertEquals(root, tree.getRoot().getHash(),
+                "La foglia senza fratello dovrebbe essere promossa fino alla radice.");
+        assertEquals(3, tree.getHeight(), "L'altezza non dovrebbe dipendere dalla forma.");
+        assertEquals(1, tree.getMerkleProof(4).getLength(),
+                "La prova della foglia promossa dovrebbe contenere il solo fratello della radice.");
+        assertEquals(3, tree.getMerkleProof(0).getLength(),
+                "La prova di una foglia con tutti i fratelli dovrebbe avere lunghezza 3.");
+        for (int i = 0; i < 5; i++)
+            assertTrue(tree.getMerkleProof(Integer.valueOf(i)).proveValidityOfData(i),
+                    "La prova della foglia " + i + " dovrebbe essere valida.");
+        assertTrue(tree.getMerkleMultiProof(new int[] { 1, 4 }).proveValidityOfData(List.of(1, 4)),
+                "La prova multipla dovrebbe essere valida.");
+        tree.updateLeaf(4, 40);
+        HashLinkedList<Integer> updated = new HashLinkedList<>();
+        for (int i = 0; i < 5; i++) updated.addAtTail(i == 4 ? 40 : i);
+        assertEquals(new MerkleTree<>(updated, new MerkleTree.Options().setShape(TreeShape.PROMOTE)).getRoot(),
+                tree.getRoot(), "L'aggiornamento dovrebbe produrre la stessa radice di una ricostruzione.");
+        assertNotEquals(new MerkleTree<>(updated).getRoot(), tree.getRoot(),
+                "Le due forme dovrebbero produrre radici diverse.");
+    }
+
+    @Test
+    void testDuplicateData() {
+        HashLinkedList<String> list = new HashLinkedList<>();
+        for (String s : new String[] { "a", "b", "a", "c", "a" }) list.addAtTail(s);
+        MerkleTree<String> tree = new MerkleTree<>(list);
+        assertEquals(0, tree.getIndexOfData("a"), "Dovrebbe essere restituita la prima posizione.");
+        assertArrayEquals(new int[] { 0, 2, 4 }, tree.getIndicesOfData("a"),
+                "Dovrebbero essere restituite tutte le posizioni del dato.");
+        assertEquals(0, tree.getIndexOfData(tree.getNode(1, 1), "a"),
+                "Il dato ripetuto dovrebbe essere trovato nel branch che lo contiene.");
+        tree.updateLeaf(0, "d");
+        assertArrayEquals(new int[] { 2, 4 }, tree.getIndicesOfData("a"),
+                "La posizione aggiornata non dovrebbe essere più associata al dato.");
+        assertTrue(tree.validateData("a"), "Il dato dovrebbe essere ancora valido.");
+        assertEquals(0, tree.getIndicesOfData("e").length, "Un dato non presente non ha posizioni.");
+    }
+
+    @Test
+    void testFreeze() {
+        assertFalse(merkleTree2.isFrozen(), "L'albero non dovrebbe essere congelato.");
+        merkleTree2.freeze();
+        assertTrue(merkleTree2.isFrozen(), "L'albero dovrebbe essere congelato.");
+        for (int i = 1; i <= 13; i++)
+            assertEquals(i - 1, merkleTree2.getIndexOfData(111L * i),
+                    "La posizione del dato non è corretta dopo il congelamento.");
+        assertFalse(merkleTree2.validateData(112L), "Un dato non presente dovrebbe essere respinto.");
+        assertTrue(merkleTree2.getMerkleProof(555L).proveValidityOfData(555L),
+                "La prova dovrebbe essere valida dopo il congelamento.");
+        MerkleTree<Long> frozen = new MerkleTree<>(hashList2, new MerkleTree.Options().setFrozen(true));
+        assertTrue(frozen.isFrozen(), "L'opzione dovrebbe costruire un albero congelato.");
+        assertEquals(merkleTree2.getRoot(), frozen.getRoot(), "La radice non dovrebbe cambiare.");
+        Digest hash = HashUtil.dataToDigest(1L);
+        for (MerkleTree<Long> tree : List.of(merkleTree2, frozen)) {
+            assertThrows(IllegalStateException.class, () -> tree.updateLeaf(0, 1L),
+                    "Un albero congelato non dovrebbe accettare aggiornamenti.");
+            assertThrows(IllegalStateException.class, () -> tree.updateLeafHash(0, hash),
+                    "Un albero congelato non dovrebbe accettare hash di foglie.");
+            assertThrows(IllegalStateException.class, () -> tree.applyBatch(Map.of(0, 1L)),
+                    "Un albero congelato non dovrebbe accettare aggiornamenti in blocco.");
+            assertThrows(IllegalStateException.class, () -> tree.applyHashBatch(Map.of(0, hash)),
+                    "Un albero congelato non dovrebbe accettare hash in blocco.");
+            assertEquals(frozen.getRoot().getDigest(), tree.getRoot().getDigest(),
+                    "Gli aggiornamenti respinti non dovrebbero modificare l'albero.");
+        }
+    }
+
+    @Test
+    void testValidateAll() {
+        HashLinkedList<Integer> list = new HashLinkedList<>();
+        for (int i = 0; i < 5000; i++)
+            list.addAtTail(i * 3);
+        List<Integer> queries = new ArrayList<>();
+        for (int i = 0; i < 3000; i++)
+            queries.add(i * 5);
+        queries.add(null);
+        for (MerkleTree.Options options : List.of(new MerkleTree.Options(),
+                new MerkleTree.Options().setParallelism(4).setSequentialCutoff(64),
+                new MerkleTree.Options().setFrozen(true))) {
+            MerkleTree<Integer> tree = new MerkleTree<>(list, options);
+            BitSet valid = tree.validateAll(queries);
+            for (int i = 0; i < queries.size(); i++)
+                assertEquals(tree.validateData(queries.get(i)), valid.get(i),
+                        "Esito errato per il dato in posizione " + i);
+        }
+    }
+
+    @Test
+    void testIndexOfAll() {
+        HashLinkedList<Integer> list = new HashLinkedList<>();
+        for (int i = 0; i < 1000; i++)
+            list.addAtTail(i % 600);
+        MerkleTree<Integer> tree = new MerkleTree<>(list,
+                new MerkleTree.Options().setParallelism(2).setSequentialCutoff(32));
+        List<Integer> queries = new ArrayList<>();
+        for (int i = 700; i >= 0; i--)
+            queries.add(i);
+        int[] indices = tree.indexOfAll(queries);
+        assertEquals(queries.size(), indices.length, "Dovrebbe esserci un indice per dato");
+        for (int i = 0; i < queries.size(); i++)
+            assertEquals(tree.getIndexOfData(queries.get(i)), indices[i],
+                    "Indice errato per il dato " + queries.get(i));
+        assertThrows(IllegalArgumentException.class,
+                () -> tree.indexOfAll(Arrays.asList(1, null)),
+                "Un dato null dovrebbe essere respinto");
+    }
+
+
+    @Test
+    void testSaveLoad() throws IOException {
+        HashLinkedList<Integer> list = new HashLinkedList<>();
+        for (int i = 0; i < 100; i++)
+            list.addAtTail(i % 70);
+        MerkleTree<Integer> tree = new MerkleTree<>(list);
+        Path path = dir.resolve("tree.bin");
+        tree.save(path);
+        MerkleTree<Integer> loaded = MerkleTree.load(path);
+        assertEquals(tree.getRoot(), loaded.getRoot(), "Le radici dovrebbero coincidere");
+        assertEquals(tree.getWidth(), loaded.getWidth(), "Le larghezze dovrebbero coincidere");
+        assertEquals(tree.getHeight(), loaded.getHeight(), "Le altezze dovrebbero coincidere");
+        for (int l = 0; l <= tree.getHeight(); l++)
+            for (int i = 0; i < 1 << (tree.getHeight() - l); i++)
+                assertEquals(tree.getNode(l, i), loaded.getNode(l, i),
+                        "Nodo diverso al livello " + l + " posizione " + i);
+        for (int i = 0; i < 100; i++) {
+            assertEquals(tree.getIndexOfData(i), loaded.getIndexOfData(i),
+                    "Indice diverso per il dato " + i);
+            assertArrayEquals(tree.getIndicesOfData(i), loaded.getIndicesOfData(i),
+                    "Posizioni diverse per il dato " + i);
+        }
+        assertTrue(loaded.getMerkleProof(42).proveValidityOfData(42),
+                "La prova dell'albero caricato dovrebbe essere valida");
+        loaded.updateLeaf(3, 500);
+        tree.updateLeaf(3, 500);
+        assertEquals(tree.getRoot(), loaded.getRoot(),
+                "Le radici dovrebbero coincidere dopo l'aggiornamento");
+        assertEquals(3, loaded.getIndexOfData(500), "Il nuovo dato dovrebbe essere trovato");
+        assertArrayEquals(new int[] { 73 }, loaded.getIndicesOfData(3),
+                "Il dato sostituito dovrebbe restare solo nell'altra posizione");
+
+        MerkleTree<Integer> frozen = MerkleTree.load(path,
+                new MerkleTree.Options().setFrozen(true).setBranchIndex(false), null);
+        assertTrue(frozen.isFrozen(), "L'albero caricato dovrebbe essere congelato");
+        assertEquals(tree.getIndexOfData(69), frozen.getIndexOfData(69),
+                "L'albero congelato dovrebbe trovare i dati");
+        MerkleTree<Integer> indexed = MerkleTree.load(path,
+                new MerkleTree.Options().setBranchIndex(true), null);
+        indexed.updateLeaf(3, 500);
+        MerkleNode branch = new MerkleNode(tree.getNode(4, 4).getHash());
+        assertTrue(indexed.validateBranch(branch),
+                "Il branch dovrebbe essere trovato dall'indice costruito dopo l'aggiornamento");
+        assertEquals(69 - 64, indexed.getIndexOfData(branch, 69),
+                "L'indice relativo al branch non è corretto");
+        assertFalse(indexed.validateBranch(new MerkleNode(MerkleTree.load(path).getNode(4, 0).getHash())),
+                "Il branch con la foglia aggiornata non dovrebbe essere più valido");
+        assertThrows(IOException.class, () -> MerkleTree.load(dir.resolve("missing.bin")),
+                "Un file inesistente dovrebbe essere respinto");
+    }
+
+    @Test
+    void testVerifyLevels() throws Exception {
+        HashLinkedList<Integer> list = new HashLinkedList<>();
+        for (int i = 0; i < 100; i++)
+            list.addAtTail(i);
+        Path path = dir.resolve("tree.bin");
+        new MerkleTree<>(list).save(path);
+        MerkleTree<Integer> loaded = MerkleTree.load(path,
+                new MerkleTree.Options().setSequentialCutoff(8), null);
+        assertTrue(loaded.verifyLevels().get(), "I livelli salvati dovrebbero essere coerenti");
+
+        byte[] bytes = Files.readAllBytes(path);
+        bytes[64 + 100 * 16 + 5 * 16] ^= 1; //hash del nodo 5 del livello 1
+        Files.write(path, bytes);
+        MerkleTree<Integer> corrupted = MerkleTree.load(path,
+                new MerkleTree.Options().setSequentialCutoff(8).setParallelism(3), null);
+        assertFalse(corrupted.verifyLevels().get(),
+                "Un nodo interno alterato dovrebbe essere rilevato");
+    }
+
+
+    @Test
+    void testBranchIndexDuplicates() {
+        HashLinkedList<Integer> list = new HashLinkedList<>();
+        for (int i = 0; i < 4096; i++)
+            list.addAtTail(7);
+        MerkleTree<Integer> indexed = new MerkleTree<>(list,
+                new MerkleTree.Options().setBranchIndex(true));
+        MerkleTree<Integer> plain = new MerkleTree<>(list);
+        for (int l = 1; l <= indexed.getHeight(); l++) {
+            MerkleNode copy = new MerkleNode(indexed.getNode(l, 0).getHash());
+            assertTrue(indexed.validateBranch(copy), "Il branch del livello " + l + " dovrebbe essere valido.");
+            assertEquals(plain.getIndexOfData(copy, 7), indexed.getIndexOfData(copy, 7),
+                    "L'indice relativo al branch del livello " + l + " dovrebbe essere lo stesso.");
+        }
+        MerkleNode before = new MerkleNode(indexed.getNode(11, 0).getHash());
+        indexed.updateLeaf(0, 8);
+        assertTrue(indexed.validateBranch(before),
+                "Il sottoalbero destro della radice dovrebbe avere ancora l'hash precedente.");
+        assertTrue(indexed.validateBranch(new MerkleNode(indexed.getNode(1, 0).getHash())),
+                "Il nuovo nodo dovrebbe essere indicizzato.");
+        assertFalse(indexed.validateBranch(new MerkleNode(plain.getRoot().getHash())),
+                "La radice precedente non dovrebbe essere più valida.");
+    }
+
+
+    @Test
+    void testSharedPool() {
+        Callable<ForkJoinPool> current = ForkJoinTask::getPool;
+        ForkJoinPool first = new MerkleTree.Options().setParallelism(3)
+                .invoke(ForkJoinTask.adapt(current));
+        ForkJoinPool second = new MerkleTree.Options().setParallelism(3)
+                .invoke(ForkJoinTask.adapt(current));
+        assertSame(first, second, "Le operazioni dovrebbero riusare lo stesso pool.");
+        assertFalse(first.isShutdown(), "Il pool condiviso non dovrebbe essere chiuso.");
+        assertEquals(3, first.getParallelism(),
+                "Il pool condiviso dovrebbe avere il parallelismo richiesto.");
+        assertNotSame(first, new MerkleTree.Options().setParallelism(2).pool(),
+                "Parallelismi diversi dovrebbero usare pool diversi.");
+    }
 }
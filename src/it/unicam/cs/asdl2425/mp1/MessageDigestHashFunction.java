@@ -0,0 +1,108 @@
+package it.unicam.cs.asdl2425.mp1;
+
+import java.nio.ByteBuffer;
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Funzione di hash basata su un algoritmo di {@link MessageDigest}. Ogni
+ * thread riutilizza la propria istanza di MessageDigest, per cui la ricerca
+ * del provider e l'allocazione avvengono una sola volta per thread. Gli
+ * oggetti scritti da un {@link Funnel} vengono passati direttamente a una
+ * seconda istanza per thread, senza essere copiati in un array.
+ *
+ * @author **JULIANO, SINAJ, juliano.sinaj@studenti.unicam.it**
+ */
+final class MessageDigestHashFunction implements HashFunction {
+    private final String algorithm; // Nome dell'algoritmo
+    private final int digestLength; // Lunghezza del digest in byte
+    private final ThreadLocal<MessageDigest> digests; // Istanze per thread
+    private final ThreadLocal<Sink> sinks; // Destinazioni dei funnel per thread
+
+    MessageDigestHashFunction(String algorithm, int digestLength) {
+        this.algorithm = algorithm;
+        this.digestLength = digestLength;
+        this.digests = ThreadLocal.withInitial(this::newInstance);
+        this.sinks = ThreadLocal.withInitial(() -> new Sink(newInstance()));
+    }
+
+    private MessageDigest newInstance() {
+        try {
+            return MessageDigest.getInstance(algorithm);
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(algorithm + " algorithm not found", e);
+        }
+    }
+
+    @Override
+    public String getName() {
+        return algorithm;
+    }
+
+    @Override
+    public int getDigestLength() {
+        return digestLength;
+    }
+
+    @Override
+    public Digest hash(byte[] input, int offset, int length) {
+        MessageDigest md = digests.get();
+        md.update(input, offset, length);
+        return Digest.of(md.digest());
+    }
+
+    @Override
+    public void hashInto(byte[] input, int offset, int length, byte[] out,
+            int outOffset) {
+        MessageDigest md = digests.get();
+        md.update(input, offset, length);
+        try {
+            md.digest(out, outOffset, digestLength);
+        } catch (DigestException e) {
+            throw new IllegalArgumentException("Output buffer too small", e);
+        }
+    }
+
+    @Override
+    public <T> Digest hashObject(T data, Funnel<? super T> funnel) {
+        Sink sink = sinks.get();
+        sink.md.reset();
+        funnel.funnel(data, sink);
+        return Digest.of(sink.md.digest());
+    }
+
+    /**
+     * Destinazione che aggiorna direttamente un MessageDigest.
+     */
+    private static final class Sink extends AbstractDigestSink {
+        final MessageDigest md;
+
+        Sink(MessageDigest md) {
+            this.md = md;
+        }
+
+        @Override
+        public DigestSink putByte(byte b) {
+            md.update(b);
+            return this;
+        }
+
+        @Override
+        public DigestSink putBytes(byte[] bytes, int offset, int length) {
+            md.update(bytes, offset, length);
+            return this;
+        }
+
+        @Override
+        public DigestSink putBytes(ByteBuffer buffer) {
+            md.update(buffer.duplicate());
+            return this;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return algorithm;
+    }
+}
@@ -0,0 +1,103 @@
+package it.unicam.cs.asdl2425.mp1;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+
+/**
+ * Implementazione di MurmurHash3 nella variante x64 a 128 bit, con seed 0. I
+ * 16 byte del digest sono le due metà dell'hash in ordine little-endian, come
+ * nelle implementazioni di riferimento.
+ *
+ * <p>
+ * Non è una funzione crittografica: va usata solo per controlli di integrità
+ * interni, dove i dati non sono scelti da un avversario.
+ *
+ * @author **JULIANO, SINAJ, juliano.sinaj@studenti.unicam.it**
+ */
+final class Murmur3HashFunction implements HashFunction {
+    private static final long C1 = 0x87c37b91114253d5L;
+    private static final long C2 = 0x4cf5ad432745937fL;
+    private static final VarHandle LONG_LE = MethodHandles
+            .byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+    @Override
+    public String getName() {
+        return "Murmur3-128";
+    }
+
+    @Override
+    public int getDigestLength() {
+        return 16;
+    }
+
+    @Override
+    public Digest hash(byte[] input, int offset, int length) {
+        byte[] out = new byte[16];
+        hashInto(input, offset, length, out, 0);
+        return Digest.of(out);
+    }
+
+    @Override
+    public void hashInto(byte[] input, int offset, int length, byte[] out,
+            int outOffset) {
+        long h1 = 0;
+        long h2 = 0;
+        int end = offset + (length & ~15);
+        for (int i = offset; i < end; i += 16) {
+            long k1 = (long) LONG_LE.get(input, i);
+            long k2 = (long) LONG_LE.get(input, i + 8);
+            h1 ^= mixK1(k1);
+            h1 = Long.rotateLeft(h1, 27) + h2;
+            h1 = h1 * 5 + 0x52dce729;
+            h2 ^= mixK2(k2);
+            h2 = Long.rotateLeft(h2, 31) + h1;
+            h2 = h2 * 5 + 0x38495ab5;
+        }
+
+        long k1 = 0;
+        long k2 = 0;
+        int rem = length & 15;
+        for (int i = rem - 1; i >= 8; i--)
+            k2 ^= (long) (input[end + i] & 0xff) << ((i - 8) * 8);
+        for (int i = Math.min(rem, 8) - 1; i >= 0; i--)
+            k1 ^= (long) (input[end + i] & 0xff) << (i * 8);
+        if (rem > 8)
+            h2 ^= mixK2(k2);
+        if (rem > 0)
+            h1 ^= mixK1(k1);
+
+        h1 ^= length;
+        h2 ^= length;
+        h1 += h2;
+        h2 += h1;
+        h1 = fmix(h1);
+        h2 = fmix(h2);
+        h1 += h2;
+        h2 += h1;
+        LONG_LE.set(out, outOffset, h1);
+        LONG_LE.set(out, outOffset + 8, h2);
+    }
+
+    private static long mixK1(long k1) {
+        return Long.rotateLeft(k1 * C1, 31) * C2;
+    }
+
+    private static long mixK2(long k2) {
+        return Long.rotateLeft(k2 * C2, 33) * C1;
+    }
+
+    private static long fmix(long k) {
+        k ^= k >>> 33;
+        k *= 0xff51afd7ed558ccdL;
+        k ^= k >>> 33;
+        k *= 0xc4ceb9fe1a85ec53L;
+        k ^= k >>> 33;
+        return k;
+    }
+
+    @Override
+    public String toString() {
+        return getName();
+    }
+}
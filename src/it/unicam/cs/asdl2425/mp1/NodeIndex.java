@@ -0,0 +1,110 @@
+package it.unicam.cs.asdl2425.mp1;
+
+import java.util.Arrays;
+
+/**
+ * Indice dagli hash dei nodi interni di un albero di Merkle alla loro
+ * posizione, che permette di trovare un sottoalbero a partire dall'hash della
+ * sua radice in tempo costante invece di scorrere tutti i livelli.
+ *
+ * <p>
+ * I nodi interni sono numerati dalla radice verso le foglie e da sinistra a
+ * destra, e i loro numeri sono memorizzati in una tabella a indirizzamento
+ * aperto su array primitivi come quella di {@link LeafIndex}: circa 28 byte
+ * per nodo invece degli oltre 100 di una {@code HashMap}. Sottoalberi con gli
+ * stessi dati hanno lo stesso hash e occupano una sola voce, con i numeri dei
+ * nodi collegati in ordine crescente; il primo è il nodo più vicino alla
+ * radice. I nodi di padding non sono indicizzati.
+ *
+ * @author **JULIANO, SINAJ, juliano.sinaj@studenti.unicam.it**
+ */
+final class NodeIndex {
+
+    private final MerkleLevels levels;
+    private final int[] base; // Numero del primo nodo di ogni livello
+    private final LeafIndex positions;
+
+    /**
+     * Costruisce l'indice di tutti i nodi interni non vuoti.
+     *
+     * @param levels
+     *                   i livelli dell'albero, già calcolati.
+     */
+    NodeIndex(MerkleLevels levels) {
+        this.levels = levels;
+        int height = levels.getHeight();
+        this.base = new int[height + 1];
+        int nodes = 0;
+        for (int l = height; l >= 1; l--) {
+            base[l] = nodes;
+            nodes += levels.count(l);
+        }
+        this.positions = new LeafIndex(levels.getHashFunction().getDigestLength() / 8, nodes);
+        //numeri crescenti: ogni nodo viene aggiunto in fondo alla sua lista
+        for (int l = height; l >= 1; l--)
+            for (int i = 0; i < levels.count(l); i++)
+                add(l, i);
+    }
+
+    /**
+     * Restituisce la vista di un nodo interno con l'hash fornito.
+     *
+     * @param digest
+     *                   l'hash da cercare.
+     * @return la vista del nodo più vicino alla radice tra quelli con l'hash
+     *         fornito, o null se non presente.
+     */
+    MerkleNodeView find(Digest digest) {
+        int id = positions.first(digest);
+        if (id < 0)
+            return null;
+        int level = levels.getHeight();
+        while (id >= base[level] + levels.count(level))
+            level--;
+        return new MerkleNodeView(levels, level, id - base[level]);
+    }
+
+    /**
+     * Rimuove dall'indice gli antenati delle foglie fornite. Va chiamato
+     * prima di ricalcolarli, seguito da {@link #addPaths(int[])}.
+     *
+     * @param leaves
+     *                   le posizioni delle foglie da aggiornare.
+     */
+    void removePaths(int[] leaves) {
+        int[] nodes = sortedCopy(leaves);
+        int count = nodes.length;
+        for (int l = 1; l <= levels.getHeight(); l++) {
+            count = MerkleLevels.parents(nodes, count);
+            for (int k = 0; k < count; k++)
+                positions.remove(levels.getDigest(l, nodes[k]), base[l] + nodes[k]);
+        }
+    }
+
+    /**
+     * Aggiunge all'indice gli antenati delle foglie fornite, dopo che sono
+     * stati ricalcolati.
+     *
+     * @param leaves
+     *                   le posizioni delle foglie aggiornate.
+     */
+    void addPaths(int[] leaves) {
+        int[] nodes = sortedCopy(leaves);
+        int count = nodes.length;
+        for (int l = 1; l <= levels.getHeight(); l++) {
+            count = MerkleLevels.parents(nodes, count);
+            for (int k = 0; k < count; k++)
+                add(l, nodes[k]);
+        }
+    }
+
+    private void add(int level, int index) {
+        positions.add(levels.getDigest(level, index), base[level] + index);
+    }
+
+    private static int[] sortedCopy(int[] leaves) {
+        int[] nodes = leaves.clone();
+        Arrays.sort(nodes);
+        return nodes;
+    }
+}
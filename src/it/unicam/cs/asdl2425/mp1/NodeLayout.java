@@ -0,0 +1,30 @@
+package it.unicam.cs.asdl2425.mp1;
+
+/**
+ * Disposizione degli hash dei nodi in un file di albero di Merkle, scritto da
+ * {@link MerkleTree#save(java.nio.file.Path, NodeLayout)} o da {@link MappedMerkleTree}. La
+ * disposizione non cambia gli hash né le prove, ma solo il numero di pagine
+ * lette da un cammino tra la radice e una foglia.
+ *
+ * @author **JULIANO, SINAJ, juliano.sinaj@studenti.unicam.it**
+ */
+public enum NodeLayout {
+
+    /**
+     * I nodi sono memorizzati livello per livello, dalle foglie alla radice.
+     * È la disposizione predefinita: le foglie sono contigue e il file si
+     * scrive e si legge in sequenza, ma ogni livello di un cammino si trova
+     * in una pagina diversa.
+     */
+    LEVELS,
+
+    /**
+     * I livelli sono divisi in fasce di altezza fissa e ogni fascia in
+     * blocchi, ciascuno formato da due sottoalberi fratelli e grande al più
+     * una pagina di 4 KB. Un nodo e il suo fratello stanno sempre nello
+     * stesso blocco, per cui una prova di Merkle o una discesa nel confronto
+     * tra due alberi legge una pagina per fascia, circa 4 invece di 30 per
+     * un miliardo di foglie.
+     */
+    BLOCKED
+}
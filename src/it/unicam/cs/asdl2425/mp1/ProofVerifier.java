@@ -0,0 +1,442 @@
+package it.unicam.cs.asdl2425.mp1;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Verifica in parallelo di molte prove di Merkle rispetto alla stessa radice.
+ * Il lotto viene suddiviso ricorsivamente su un ForkJoinPool, il cui
+ * work-stealing bilancia prove di lunghezza diversa.
+ *
+ * <p>
+ * Il verificatore ricorda i passi già dimostrati, ovvero gli hash calcolati
+ * lungo prove valide: per ogni nodo, il fratello, la direzione e l'hash del
+ * padre. Un passo di un'altra prova con lo stesso nodo, la stessa funzione di
+ * hash, la stessa concatenazione, lo stesso fratello e la stessa direzione
+ * riutilizza il padre senza calcolarne l'hash, per cui la
+ * parte superiore dei cammini, condivisa da quasi tutte le prove, viene
+ * calcolata una sola volta. Il risultato di ogni verifica è identico a quello
+ * di {@link MerkleProof#proveValidityOfData(Object)}. Sono ricordati solo i
+ * passi entro un numero fissato di passi dalla radice, per cui le voci sono
+ * al più il doppio di due elevato a quel numero.
+ *
+ * <p>
+ * Come {@link MerkleProof#verify(Digest)}, la verifica legge i fratelli e le
+ * direzioni direttamente dalla forma compatta della prova e calcola gli hash
+ * in buffer del thread corrente; oltre all'hash del dato, vengono allocati
+ * oggetti solo per i passi che entrano nella memoria dei passi dimostrati.
+ *
+ * @author **JULIANO, SINAJ, juliano.sinaj@studenti.unicam.it**
+ */
+public final class ProofVerifier {
+
+    /**
+     * Numero predefinito di passi dalla radice entro cui i passi dimostrati
+     * vengono ricordati.
+     */
+    public static final int DEFAULT_CACHED_STEPS = 16;
+
+    /**
+     * Motivo per cui una prova non è stata ritenuta valida.
+     */
+    public enum Failure {
+
+        /**
+         * Il dato o la prova sono null.
+         */
+        NULL_INPUT,
+
+        /**
+         * La prova è stata costruita per un albero con un'altra radice.
+         */
+        ROOT_MISMATCH,
+
+        /**
+         * Il cammino della prova non porta alla radice.
+         */
+        INVALID_PROOF
+    }
+
+    private final Digest rootHash;
+    private final MerkleTree.Options options;
+    private final int cachedSteps;
+    private final Map<NodeKey, Step> proven; // Passi dimostrati per nodo
+
+    /**
+     * Passo dimostrato da un nodo al padre.
+     */
+    private static final class Step {
+        final long[] sibling;
+        final boolean isLeft;
+        final long[] parent;
+
+        Step(long[] sibling, boolean isLeft, long[] parent) {
+            this.sibling = sibling;
+            this.isLeft = isLeft;
+            this.parent = parent;
+        }
+    }
+
+    /**
+     * Hash di un nodo, con la funzione di hash e la concatenazione che lo
+     * combinano con il fratello, come chiave della memoria dei passi: funzioni
+     * con hash della stessa lunghezza, come MD5 e MurmurHash3, o
+     * concatenazioni diverse danno padri diversi dallo stesso nodo. Le chiavi
+     * memorizzate non vengono più modificate; quella di ricerca di ogni
+     * thread viene riempita a ogni passo.
+     */
+    private static final class NodeKey {
+        private final long[] words = new long[4];
+        private int length;
+        private HashFunction hashFunction;
+        private Concatenation concatenation;
+
+        NodeKey() {
+        }
+
+        NodeKey(NodeKey key) {
+            set(key.words, 0, key.length, key.hashFunction, key.concatenation);
+        }
+
+        void set(long[] src, int offset, int length, HashFunction hashFunction,
+                Concatenation concatenation) {
+            System.arraycopy(src, offset, words, 0, length);
+            this.length = length;
+            this.hashFunction = hashFunction;
+            this.concatenation = concatenation;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof NodeKey))
+                return false;
+            NodeKey other = (NodeKey) obj;
+            return length == other.length && hashFunction == other.hashFunction
+                    && concatenation == other.concatenation
+                    && Arrays.equals(words, 0, length, other.words, 0, length);
+        }
+
+        @Override
+        public int hashCode() {
+            return (int) (words[0] ^ (words[0] >>> 32));
+        }
+    }
+
+    /**
+     * Buffer di lavoro di un thread: gli hash del cammino, uno per passo più
+     * la radice, il fratello corrente, la chiave di ricerca e il buffer di
+     * concatenazione, sufficienti per hash di 256 bit.
+     */
+    private static final class Scratch {
+        final long[] trail = new long[(MerkleProof.MAX_LENGTH + 1) * 4];
+        final long[] sibling = new long[4];
+        final NodeKey key = new NodeKey();
+        final byte[] buffer = new byte[32 * 5];
+    }
+
+    private static final ThreadLocal<Scratch> SCRATCH = ThreadLocal
+            .withInitial(Scratch::new);
+
+    /**
+     * Crea un verificatore per la radice fornita che usa il pool comune.
+     *
+     * @param rootHash
+     *                     l'hash della radice.
+     * @throws IllegalArgumentException
+     *                                      se la radice è null.
+     */
+    public ProofVerifier(Digest rootHash) {
+        this(rootHash, new MerkleTree.Options().setPool(ForkJoinPool.commonPool()),
+                DEFAULT_CACHED_STEPS);
+    }
+
+    /**
+     * Crea un verificatore per la radice fornita.
+     *
+     * @param rootHash
+     *                        l'hash della radice.
+     * @param options
+     *                        le opzioni da cui leggere il parallelismo, il pool
+     *                        e la soglia sequenziale, qui intesa come numero
+     *                        massimo di prove per task.
+     * @param cachedSteps
+     *                        il numero di passi dalla radice entro cui
+     *                        ricordare i passi dimostrati, tra 0 e
+     *                        {@link MerkleProof#MAX_LENGTH}.
+     * @throws IllegalArgumentException
+     *                                      se la radice o le opzioni sono
+     *                                      null, o il numero di passi non è
+     *                                      valido.
+     */
+    public ProofVerifier(Digest rootHash, MerkleTree.Options options,
+            int cachedSteps) {
+        if (rootHash == null)
+            throw new IllegalArgumentException("The root hash is null");
+        if (options == null)
+            throw new IllegalArgumentException("The options are null");
+        if (cachedSteps < 0 || cachedSteps > MerkleProof.MAX_LENGTH)
+            throw new IllegalArgumentException("Invalid cached steps: " + cachedSteps);
+        this.rootHash = rootHash;
+        this.options = options.copy();
+        this.cachedSteps = cachedSteps;
+        this.proven = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Restituisce l'hash della radice rispetto alla quale le prove vengono
+     * verificate.
+     *
+     * @return l'hash della radice.
+     */
+    public Digest getRootHash() {
+        return rootHash;
+    }
+
+    /**
+     * Verifica un lotto di dati, l'i-esimo con l'i-esima prova. L'hash di un
+     * dato è calcolato da {@code hashCode()} con la funzione di hash della
+     * sua prova, come in {@link MerkleProof#proveValidityOfData(Object)}.
+     *
+     * @param data
+     *                   i dati da verificare.
+     * @param proofs
+     *                   le prove dei dati.
+     * @return l'esito di ogni verifica.
+     * @throws IllegalArgumentException
+     *                                      se una lista è null o le liste
+     *                                      hanno lunghezze diverse.
+     */
+    public Result verify(List<?> data, List<MerkleProof> proofs) {
+        return verifyAll(data, proofs, null);
+    }
+
+    /**
+     * Verifica un lotto di dati calcolandone gli hash con un funnel, come in
+     * {@link MerkleProof#proveValidityOfData(Object, Funnel)}.
+     *
+     * @param <T>
+     *                   il tipo dei dati.
+     * @param data
+     *                   i dati da verificare.
+     * @param proofs
+     *                   le prove dei dati.
+     * @param funnel
+     *                   il funnel dei dati.
+     * @return l'esito di ogni verifica.
+     * @throws IllegalArgumentException
+     *                                      se una lista o il funnel sono
+     *                                      null, o le liste hanno lunghezze
+     *                                      diverse.
+     */
+    public <T> Result verify(List<? extends T> data, List<MerkleProof> proofs,
+            Funnel<? super T> funnel) {
+        if (funnel == null)
+            throw new IllegalArgumentException("The funnel is null");
+        return verifyAll(data, proofs, funnel);
+    }
+
+    /**
+     * Dimentica i passi dimostrati.
+     */
+    public void clearCache() {
+        proven.clear();
+    }
+
+    private <T> Result verifyAll(List<? extends T> data,
+            List<MerkleProof> proofs, Funnel<? super T> funnel) {
+        if (data == null || proofs == null)
+            throw new IllegalArgumentException("The batch is null");
+        if (data.size() != proofs.size())
+            throw new IllegalArgumentException("Data and proofs differ in size");
+        Failure[] failures = new Failure[data.size()];
+        int n = failures.length;
+        int cutoff = Math.max(1, Math.min(options.getSequentialCutoff(),
+                n / (4 * options.getParallelism())));
+        if (options.isParallel() && n > cutoff)
+            options.invoke(new VerifyTask<>(data, proofs, funnel, failures, 0, n, cutoff));
+        else
+            for (int i = 0; i < n; i++)
+                failures[i] = check(data.get(i), proofs.get(i), funnel);
+        return new Result(failures);
+    }
+
+    /**
+     * Verifica una prova risalendo il cammino, riutilizzando i passi già
+     * dimostrati. Se la prova è valida, i suoi passi vicini alla radice
+     * vengono ricordati.
+     *
+     * @return null se la prova è valida, altrimenti il motivo del fallimento.
+     */
+    private <T> Failure check(T data, MerkleProof proof, Funnel<? super T> funnel) {
+        if (data == null || proof == null)
+            return Failure.NULL_INPUT;
+        if (!proof.getRootHash().equals(rootHash))
+            return Failure.ROOT_MISMATCH;
+        HashFunction hashFunction = proof.getHashFunction();
+        Concatenation concatenation = proof.getConcatenation();
+        int words = hashFunction.getDigestLength() / 8;
+        if (rootHash.length() != words * 8)
+            return Failure.INVALID_PROOF;
+        Scratch scratch = SCRATCH.get();
+        long[] trail = scratch.trail; // hash prima di ogni passo, poi la radice
+        long[] sibling = scratch.sibling;
+        byte[] buffer = scratch.buffer;
+        Digest leaf = HashUtil.dataToDigest(data, funnel, hashFunction);
+        for (int w = 0; w < words; w++)
+            trail[w] = leaf.word(w);
+        int size = proof.getSize();
+        int first = Math.max(0, size - cachedSteps); // primo passo ricordato
+        long computed = 0; // passi ricordabili calcolati da questa prova
+        int out = words * 8 * 4;
+        for (int i = 0; i < size; i++) {
+            int at = i * words;
+            boolean isLeft = proof.isLeft(i);
+            boolean siblingEmpty = proof.isSiblingEmpty(i);
+            if (!siblingEmpty) {
+                proof.readSibling(i, sibling);
+                if (i >= first) {
+                    scratch.key.set(trail, at, words, hashFunction, concatenation);
+                    Step known = proven.get(scratch.key);
+                    if (known != null && known.isLeft == isLeft
+                            && Arrays.equals(known.sibling, 0, words, sibling, 0, words)) {
+                        System.arraycopy(known.parent, 0, trail, at + words, words);
+                        continue;
+                    }
+                    computed |= 1L << i;
+                }
+            }
+            int n = 0;
+            if (isLeft && !siblingEmpty)
+                n += concatenation.write(sibling, 0, words, buffer, n);
+            n += concatenation.write(trail, at, words, buffer, n);
+            if (!isLeft && !siblingEmpty)
+                n += concatenation.write(sibling, 0, words, buffer, n);
+            hashFunction.hashInto(buffer, 0, n, buffer, out);
+            Digest.readWords(buffer, out, words, trail, at + words);
+        }
+        for (int w = 0; w < words; w++)
+            if (trail[size * words + w] != rootHash.word(w))
+                return Failure.INVALID_PROOF;
+        for (int i = first; i < size; i++) {
+            if ((computed >>> i & 1) == 0)
+                continue;
+            scratch.key.set(trail, i * words, words, hashFunction, concatenation);
+            if (proven.containsKey(scratch.key))
+                continue;
+            proof.readSibling(i, sibling);
+            proven.putIfAbsent(new NodeKey(scratch.key),
+                    new Step(Arrays.copyOf(sibling, words), proof.isLeft(i),
+                            Arrays.copyOfRange(trail, (i + 1) * words, (i + 2) * words)));
+        }
+        return null;
+    }
+
+    @SuppressWarnings("serial") // Non serializzabile: riferisce dati, prove e funnel
+    private final class VerifyTask<T> extends RecursiveAction {
+        private final List<? extends T> data;
+        private final List<MerkleProof> proofs;
+        private final Funnel<? super T> funnel;
+        private final Failure[] failures;
+        private final int from, to, cutoff;
+
+        VerifyTask(List<? extends T> data, List<MerkleProof> proofs,
+                Funnel<? super T> funnel, Failure[] failures, int from, int to,
+                int cutoff) {
+            this.data = data;
+            this.proofs = proofs;
+            this.funnel = funnel;
+            this.failures = failures;
+            this.from = from;
+            this.to = to;
+            this.cutoff = cutoff;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= cutoff) {
+                for (int i = from; i < to; i++)
+                    failures[i] = check(data.get(i), proofs.get(i), funnel);
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new VerifyTask<>(data, proofs, funnel, failures, from, mid, cutoff),
+                    new VerifyTask<>(data, proofs, funnel, failures, mid, to, cutoff));
+        }
+    }
+
+    /**
+     * Esito della verifica di un lotto di prove.
+     */
+    public static final class Result {
+        private final Failure[] failures;
+        private final BitSet valid;
+        private final int failureCount;
+
+        private Result(Failure[] failures) {
+            this.failures = failures;
+            this.valid = new BitSet(failures.length);
+            int count = 0;
+            for (int i = 0; i < failures.length; i++) {
+                if (failures[i] == null)
+                    valid.set(i);
+                else
+                    count++;
+            }
+            this.failureCount = count;
+        }
+
+        /**
+         * Restituisce le posizioni delle prove valide.
+         *
+         * @return un insieme di bit con le prove valide.
+         */
+        public BitSet getValid() {
+            return (BitSet) valid.clone();
+        }
+
+        /**
+         * Restituisce true se la prova in posizione i è valida.
+         *
+         * @param i
+         *              la posizione nel lotto.
+         * @return true se la prova è valida.
+         */
+        public boolean isValid(int i) {
+            return failures[i] == null;
+        }
+
+        /**
+         * Restituisce il motivo per cui la prova in posizione i non è valida.
+         *
+         * @param i
+         *              la posizione nel lotto.
+         * @return il motivo del fallimento, o null se la prova è valida.
+         */
+        public Failure getFailure(int i) {
+            return failures[i];
+        }
+
+        /**
+         * Restituisce il numero di prove non valide.
+         *
+         * @return il numero di fallimenti.
+         */
+        public int getFailureCount() {
+            return failureCount;
+        }
+
+        /**
+         * Restituisce il numero di prove verificate.
+         *
+         * @return la dimensione del lotto.
+         */
+        public int size() {
+            return failures.length;
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package it.unicam.cs.asdl2425.mp1;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Classe di test per la classe {@link ProofVerifier}. Questa classe verifica
+ * la verifica parallela di lotti di prove rispetto alla stessa radice.
+ * Di seguito, l'elenco dei test inclusi con una breve descrizione:
+ *
+ * <ul>
+ * <li>{@link #testBatch()}: Verifica che un lotto con prove valide, dati
+ * sbagliati, prove di un altro albero e valori null dia gli stessi esiti
+ * della verifica seriale, con il motivo di ogni fallimento.</li>
+ *
+ * <li>{@link #testCachedNodes()}: Verifica che i passi già dimostrati non
+ * rendano valide prove manomesse e che i risultati non cambino verificando
+ * più volte lo stesso lotto.</li>
+ *
+ * <li>{@link #testFunnel()}: Verifica un lotto di dati i cui hash sono
+ * calcolati con un funnel.</li>
+ *
+ * <li>{@link #testRelabelledProof()}: Verifica che una prova valida copiata
+ * con un'altra concatenazione o un'altra funzione di hash della stessa
+ * lunghezza non venga accettata dopo aver dimostrato la prova originale.</li>
+ * </ul>
+ */
+class ProofVerifierTest {
+
+    private static MerkleTree<Integer> tree(int width, int offset) {
+        HashLinkedList<Integer> list = new HashLinkedList<>();
+        for (int i = 0; i < width; i++)
+            list.addAtTail(i + offset);
+        return new MerkleTree<>(list);
+    }
+
+    @Test
+    void testBatch() {
+        MerkleTree<Integer> tree = tree(1000, 0);
+        MerkleTree<Integer> other = tree(1000, 1);
+        List<Integer> data = new ArrayList<>();
+        List<MerkleProof> proofs = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            data.add(i % 7 == 0 ? i + 1 : i);
+            proofs.add(tree.getMerkleProof(Integer.valueOf(i)));
+        }
+        proofs.set(5, other.getMerkleProof(Integer.valueOf(5)));
+        data.set(6, null);
+        ProofVerifier verifier = new ProofVerifier(tree.getRoot().getDigest(),
+                new MerkleTree.Options().setParallelism(4).setSequentialCutoff(16), 8);
+        ProofVerifier.Result result = verifier.verify(data, proofs);
+        assertEquals(1000, result.size(), "Il lotto dovrebbe contenere 1000 esiti");
+        BitSet valid = result.getValid();
+        for (int i = 0; i < 1000; i++) {
+            boolean expected = data.get(i) != null && i != 5
+                    && proofs.get(i).proveValidityOfData(data.get(i));
+            assertEquals(expected, valid.get(i), "Esito errato per la posizione " + i);
+        }
+        assertEquals(ProofVerifier.Failure.ROOT_MISMATCH, result.getFailure(5),
+                "La prova di un altro albero dovrebbe avere un'altra radice");
+        assertEquals(ProofVerifier.Failure.NULL_INPUT, result.getFailure(6),
+                "Un dato null dovrebbe essere segnalato");
+        assertEquals(ProofVerifier.Failure.INVALID_PROOF, result.getFailure(7),
+                "Un dato sbagliato dovrebbe avere una prova non valida");
+        assertNull(result.getFailure(1), "Una prova valida non dovrebbe avere un fallimento");
+        assertEquals(1000 - valid.cardinality(), result.getFailureCount(),
+                "Il numero di fallimenti non è corretto");
+        assertThrows(IllegalArgumentException.class,
+                () -> verifier.verify(data, proofs.subList(0, 10)),
+                "Liste di lunghezze diverse dovrebbero essere respinte");
+    }
+
+    @Test
+    void testCachedNodes() {
+        MerkleTree<Integer> tree = tree(300, 0);
+        List<Integer> data = new ArrayList<>();
+        List<MerkleProof> proofs = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            data.add(i);
+            proofs.add(tree.getMerkleProof(Integer.valueOf(i)));
+        }
+        ProofVerifier verifier = new ProofVerifier(tree.getRoot().getDigest());
+        assertEquals(300, verifier.verify(data, proofs).getValid().cardinality(),
+                "Tutte le prove dovrebbero essere valide");
+        MerkleProof genuine = proofs.get(10);
+        MerkleProof tampered = new MerkleProof(genuine.getRootHash(), genuine.getSize(),
+                genuine.getConcatenation(), genuine.getHashFunction());
+        int last = genuine.getSize() - 1;
+        for (int i = 0; i < genuine.getSize(); i++)
+            tampered.addHash(genuine.getStep(i).getDigest(),
+                    genuine.getStep(i).isLeft() != (i == last));
+        ProofVerifier.Result again = verifier.verify(Arrays.asList(10, 11, 12),
+                Arrays.asList(tampered, proofs.get(11), proofs.get(12)));
+        assertFalse(again.isValid(0),
+                "Una prova manomessa nell'ultimo passo non dovrebbe essere valida");
+        assertTrue(again.isValid(1) && again.isValid(2), "Le prove valide dovrebbero restare valide");
+        verifier.clearCache();
+        assertEquals(300, verifier.verify(data, proofs).getValid().cardinality(),
+                "Dopo aver svuotato la cache le prove dovrebbero restare valide");
+    }
+
+    @Test
+    void testFunnel() {
+        HashLinkedList<CharSequence> list = new HashLinkedList<>(HashFunction.SHA256, Funnel.CHARS);
+        List<String> data = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            data.add("record " + i);
+            list.addAtTail("record " + i);
+        }
+        MerkleTree<CharSequence> tree = new MerkleTree<>(list);
+        List<MerkleProof> proofs = new ArrayList<>();
+        for (String d : data)
+            proofs.add(tree.getMerkleProof(d));
+        ProofVerifier verifier = new ProofVerifier(tree.getRoot().getDigest());
+        assertEquals(50, verifier.verify(data, proofs, Funnel.CHARS).getValid().cardinality(),
+                "Tutte le prove dovrebbero essere valide con il funnel");
+        assertEquals(50, verifier.verify(data, proofs).getFailureCount(),
+                "Senza funnel gli hash dei dati dovrebbero essere diversi");
+    }
+
+
+    private static MerkleProof relabel(MerkleProof proof, Concatenation concatenation,
+            HashFunction hashFunction) {
+        MerkleProof copy = new MerkleProof(proof.getRootHash(), proof.getSize(),
+                concatenation, hashFunction);
+        for (int i = 0; i < proof.getSize(); i++)
+            copy.addHash(proof.getStep(i).getDigest(), proof.getStep(i).isLeft());
+        return copy;
+    }
+
+    @Test
+    void testRelabelledProof() {
+        MerkleTree<Integer> tree = tree(4, 0);
+        MerkleProof genuine = tree.getMerkleProof(Integer.valueOf(2));
+        List<MerkleProof> forged = List.of(
+                relabel(genuine, Concatenation.BINARY, HashFunction.MD5),
+                relabel(genuine, Concatenation.HEX, HashFunction.MURMUR3_128));
+        for (MerkleProof proof : forged) {
+            assertFalse(proof.proveValidityOfData(2), "La prova copiata non dovrebbe essere valida.");
+            ProofVerifier verifier = new ProofVerifier(tree.getRoot().getDigest());
+            assertTrue(verifier.verify(List.of(2), List.of(genuine)).isValid(0),
+                    "La prova originale dovrebbe essere valida.");
+            assertEquals(ProofVerifier.Failure.INVALID_PROOF,
+                    verifier.verify(List.of(2), List.of(proof)).getFailure(0),
+                    "La prova copiata non dovrebbe riusare i passi della prova originale.");
+        }
+    }
+}
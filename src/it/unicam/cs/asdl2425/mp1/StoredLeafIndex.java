@@ -0,0 +1,111 @@
+package it.unicam.cs.asdl2425.mp1;
+
+import java.util.Arrays;
+
+/**
+ * Indice delle foglie letto da un file di albero, nel formato descritto da
+ * {@link MerkleTreeFile}: una tabella a indirizzamento aperto con la prima
+ * posizione di ogni hash distinto. Permette di rispondere alle ricerche
+ * subito dopo il caricamento, senza ricostruire un {@link LeafIndex}. Gli
+ * hash non sono memorizzati nella tabella e vengono confrontati con quelli
+ * delle foglie.
+ *
+ * <p>
+ * L'indice è in sola lettura. Poiché la tabella contiene solo la prima
+ * posizione di ogni hash, alla prima chiamata di {@link #all(Digest)} viene
+ * costruita in un passaggio sulle foglie la lista delle posizioni successive
+ * di ogni hash ripetuto; le chiamate seguenti richiedono tempo proporzionale
+ * al numero di posizioni restituite.
+ *
+ * @author **JULIANO, SINAJ, juliano.sinaj@studenti.unicam.it**
+ */
+final class StoredLeafIndex implements LeafLookup {
+    private final MerkleLevels levels; // Livelli dell'albero indicizzato
+    private final MerkleTreeFile format; // Formato da cui è stata letta la tabella
+    private final long[] table; // Prima posizione più uno, 0 per le voci libere
+    private volatile int[] next; // Posizione successiva con lo stesso hash, o -1
+
+    /**
+     * Crea l'indice sulla tabella letta da un file.
+     *
+     * @param levels
+     *                   i livelli dell'albero.
+     * @param format
+     *                   la descrizione del file.
+     * @param table
+     *                   la tabella dell'indice.
+     */
+    StoredLeafIndex(MerkleLevels levels, MerkleTreeFile format, long[] table) {
+        this.levels = levels;
+        this.format = format;
+        this.table = table;
+    }
+
+    @Override
+    public int first(Digest digest) {
+        if (digest.length() != format.digestLength)
+            return -1;
+        int slot = (int) format.indexSlot(digest.word(0));
+        while (table[slot] != 0) {
+            int index = (int) (table[slot] - 1);
+            if (levels.hashEquals(0, index, digest))
+                return index;
+            slot = slot + 1 == table.length ? 0 : slot + 1;
+        }
+        return -1;
+    }
+
+    @Override
+    public boolean contains(Digest digest) {
+        return first(digest) >= 0;
+    }
+
+    @Override
+    public int[] all(Digest digest) {
+        int first = first(digest);
+        if (first < 0)
+            return new int[0];
+        int[] next = chains();
+        int[] found = new int[4];
+        int n = 0;
+        for (int p = first; p >= 0; p = next[p]) {
+            if (n == found.length)
+                found = Arrays.copyOf(found, n * 2);
+            found[n++] = p;
+        }
+        return Arrays.copyOf(found, n);
+    }
+
+    /**
+     * Restituisce le liste delle posizioni ripetute, costruendole al primo
+     * uso: ogni foglia che non è la prima del suo hash viene collegata
+     * all'ultima posizione trovata per quell'hash.
+     */
+    private int[] chains() {
+        int[] chains = next;
+        if (chains == null) {
+            synchronized (this) {
+                chains = next;
+                if (chains == null) {
+                    int width = levels.getWidth();
+                    chains = new int[width];
+                    int[] tail = new int[width]; // Ultima posizione per prima posizione
+                    Arrays.fill(chains, -1);
+                    for (int i = 0; i < width; i++) {
+                        int first = first(levels.getDigest(0, i));
+                        if (first != i)
+                            chains[tail[first]] = i;
+                        tail[first] = i;
+                    }
+                    next = chains;
+                }
+            }
+        }
+        return chains;
+    }
+
+    @Override
+    public int probeOrder(Digest digest) {
+        return digest.length() == 0 ? 0 : (int) format.indexSlot(digest.word(0));
+    }
+}
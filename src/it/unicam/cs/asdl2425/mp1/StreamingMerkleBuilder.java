@@ -0,0 +1,387 @@
+package it.unicam.cs.asdl2425.mp1;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+/**
+ * Calcola la radice di un albero di Merkle a partire da una sequenza di dati
+ * letta una sola volta, senza costruire l'albero. Il costruttore mantiene
+ * solo una frontiera con al più un hash in attesa per livello, per cui la
+ * memoria occupata è O(log n) indipendentemente dal numero di foglie.
+ *
+ * <p>
+ * La radice ottenuta è identica a quella di un {@link MerkleTree} costruito
+ * sugli stessi dati, con la stessa funzione di hash e la stessa modalità di
+ * concatenazione e la stessa {@link TreeShape}: con {@link TreeShape#PAD}
+ * le foglie vengono completate con nodi vuoti fino alla potenza di due
+ * successiva, con {@link TreeShape#PROMOTE} l'ultimo nodo di un livello
+ * senza fratello viene promosso al livello superiore.
+ *
+ * <p>
+ * Prima di aggiungere le foglie è possibile richiedere le prove di Merkle di
+ * alcune posizioni con {@link #trackProof(long)}: gli hash fratelli necessari
+ * vengono raccolti durante la lettura.
+ *
+ * <p>
+ * Dopo la prima chiamata a {@link #getRootHash()} o
+ * {@link #getMerkleProof(long)} il costruttore è chiuso e non accetta altre
+ * foglie.
+ *
+ * @param <T>
+ *                il tipo dei dati letti.
+ *
+ * @author **JULIANO, SINAJ, juliano.sinaj@studenti.unicam.it**
+ */
+public class StreamingMerkleBuilder<T> {
+
+    /**
+     * Numero massimo di livelli, sufficiente per 2^63 foglie.
+     */
+    private static final int MAX_LEVELS = 64;
+
+    private final HashFunction hashFunction; // Funzione di hash
+    private final Concatenation concatenation; // Concatenazione dei figli
+    private final TreeShape shape; // Trattamento dei nodi senza fratello
+    private final Funnel<? super T> funnel; // Funnel dei dati, o null
+    private final Digest[] frontier; // Hash in attesa per livello, o null
+    private long count; // Numero di foglie lette
+    private Digest root; // Radice, calcolata alla chiusura
+
+    private long[] tracked; // Posizioni di cui raccogliere la prova
+    private Digest[][] siblings; // Hash fratelli per posizione e livello
+    private int trackedCount;
+
+    /**
+     * Crea un costruttore che usa MD5 e la concatenazione esadecimale,
+     * come {@link MerkleTree#MerkleTree(HashLinkedList)}.
+     */
+    public StreamingMerkleBuilder() {
+        this(HashFunction.MD5, Concatenation.HEX);
+    }
+
+    /**
+     * Crea un costruttore con la funzione di hash e la modalità di
+     * concatenazione fornite.
+     *
+     * @param hashFunction
+     *                          la funzione di hash di foglie e nodi.
+     * @param concatenation
+     *                          la modalità di concatenazione degli hash.
+     * @throws IllegalArgumentException
+     *                                      se uno dei parametri è null.
+     */
+    public StreamingMerkleBuilder(HashFunction hashFunction,
+            Concatenation concatenation) {
+        this(hashFunction, concatenation, TreeShape.PAD);
+    }
+
+    /**
+     * Crea un costruttore con la funzione di hash, la modalità di
+     * concatenazione e la forma fornite, la cui radice coincide con quella
+     * di un albero costruito con le stesse opzioni.
+     *
+     * @param hashFunction
+     *                          la funzione di hash di foglie e nodi.
+     * @param concatenation
+     *                          la modalità di concatenazione degli hash.
+     * @param shape
+     *                          il trattamento dei nodi senza fratello.
+     * @throws IllegalArgumentException
+     *                                      se uno dei parametri è null.
+     */
+    public StreamingMerkleBuilder(HashFunction hashFunction,
+            Concatenation concatenation, TreeShape shape) {
+        this(hashFunction, concatenation, shape, null);
+    }
+
+    /**
+     * Crea un costruttore che calcola l'hash dei dati con un funnel, la cui
+     * radice coincide con quella di un albero costruito da una
+     * {@link HashLinkedList} con lo stesso funnel e le stesse opzioni.
+     *
+     * @param hashFunction
+     *                          la funzione di hash di foglie e nodi.
+     * @param concatenation
+     *                          la modalità di concatenazione degli hash.
+     * @param shape
+     *                          il trattamento dei nodi senza fratello.
+     * @param funnel
+     *                          il funnel dei dati, o null per calcolarne
+     *                          l'hash da {@code hashCode()}.
+     * @throws IllegalArgumentException
+     *                                      se uno dei primi tre parametri è
+     *                                      null.
+     */
+    public StreamingMerkleBuilder(HashFunction hashFunction,
+            Concatenation concatenation, TreeShape shape,
+            Funnel<? super T> funnel) {
+        if (hashFunction == null || concatenation == null || shape == null)
+            throw new IllegalArgumentException();
+        this.hashFunction = hashFunction;
+        this.concatenation = concatenation;
+        this.shape = shape;
+        this.funnel = funnel;
+        this.frontier = new Digest[MAX_LEVELS];
+        this.tracked = new long[0];
+        this.siblings = new Digest[0][];
+    }
+
+    /**
+     * Richiede la prova di Merkle della foglia in una data posizione, che
+     * potrà essere ottenuta con {@link #getMerkleProof(long)}. Deve essere
+     * chiamato prima che la foglia venga letta.
+     *
+     * @param index
+     *                  la posizione della foglia.
+     * @return questo costruttore.
+     * @throws IllegalArgumentException
+     *                                      se l'indice è negativo o la foglia
+     *                                      è già stata letta.
+     */
+    public StreamingMerkleBuilder<T> trackProof(long index) {
+        if (index < count)
+            throw new IllegalArgumentException("Leaf already read: " + index);
+        checkOpen();
+        if (trackedCount == tracked.length) {
+            int n = Math.max(4, trackedCount * 2);
+            tracked = Arrays.copyOf(tracked, n);
+            siblings = Arrays.copyOf(siblings, n);
+        }
+        tracked[trackedCount] = index;
+        siblings[trackedCount++] = new Digest[MAX_LEVELS];
+        return this;
+    }
+
+    /**
+     * Aggiunge una foglia corrispondente a un dato, il cui hash è calcolato
+     * con il funnel del costruttore o, in sua assenza, da
+     * {@code hashCode()}.
+     *
+     * @param data
+     *                 il dato da aggiungere.
+     * @throws IllegalArgumentException
+     *                                      se il dato è null.
+     */
+    public void add(T data) {
+        if (data == null)
+            throw new IllegalArgumentException("The data is null");
+        addHash(HashUtil.dataToDigest(data, funnel, hashFunction));
+    }
+
+    /**
+     * Aggiunge tutti i dati forniti da un iteratore.
+     *
+     * @param data
+     *                 l'iteratore dei dati.
+     * @return questo costruttore.
+     */
+    public StreamingMerkleBuilder<T> addAll(Iterator<? extends T> data) {
+        while (data.hasNext())
+            add(data.next());
+        return this;
+    }
+
+    /**
+     * Aggiunge tutti i dati di uno stream, nell'ordine di incontro.
+     *
+     * @param data
+     *                 lo stream dei dati.
+     * @return questo costruttore.
+     */
+    public StreamingMerkleBuilder<T> addAll(Stream<? extends T> data) {
+        data.forEachOrdered(this::add);
+        return this;
+    }
+
+    /**
+     * Aggiunge le foglie lette da un canale, che deve contenere gli hash
+     * delle foglie in forma binaria, uno dopo l'altro, ciascuno della
+     * lunghezza della funzione di hash. Il canale viene letto fino alla fine
+     * ma non viene chiuso.
+     *
+     * @param channel
+     *                    il canale da cui leggere gli hash.
+     * @return questo costruttore.
+     * @throws IOException
+     *                         se la lettura fallisce o il canale termina a
+     *                         metà di un hash.
+     */
+    public StreamingMerkleBuilder<T> addHashes(ReadableByteChannel channel)
+            throws IOException {
+        int length = hashFunction.getDigestLength();
+        ByteBuffer buffer = ByteBuffer.allocate(length * 4096);
+        byte[] array = buffer.array();
+        while (channel.read(buffer) >= 0) {
+            int limit = buffer.position() - buffer.position() % length;
+            for (int off = 0; off < limit; off += length)
+                addHash(Digest.of(array, off, length));
+            buffer.flip().position(limit);
+            buffer.compact();
+        }
+        if (buffer.position() != 0)
+            throw new IOException("Truncated leaf digest at the end of the channel");
+        return this;
+    }
+
+    /**
+     * Aggiunge una foglia con l'hash fornito.
+     *
+     * @param leaf
+     *                 l'hash della foglia.
+     * @throws IllegalArgumentException
+     *                                      se l'hash è null o ha una
+     *                                      lunghezza diversa da quella della
+     *                                      funzione di hash.
+     * @throws IllegalStateException
+     *                                      se il costruttore è chiuso.
+     */
+    public void addHash(Digest leaf) {
+        if (leaf == null || leaf.length() != hashFunction.getDigestLength())
+            throw new IllegalArgumentException("Invalid leaf hash");
+        checkOpen();
+        long position = count;
+        Digest node = leaf;
+        int level = 0;
+        record(level, position, node);
+        //come in un contatore binario, ogni 1 finale chiude un sottoalbero
+        while ((position & 1) == 1) {
+            node = combine(frontier[level], node);
+            frontier[level] = null;
+            position >>>= 1;
+            level++;
+            record(level, position, node);
+        }
+        frontier[level] = node;
+        count++;
+    }
+
+    /**
+     * Restituisce il numero di foglie lette.
+     *
+     * @return il numero di foglie lette.
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Restituisce l'altezza dell'albero corrispondente alle foglie lette.
+     *
+     * @return l'altezza dell'albero.
+     */
+    public int getHeight() {
+        return count <= 1 ? 0 : 64 - Long.numberOfLeadingZeros(count - 1);
+    }
+
+    /**
+     * Chiude il costruttore e restituisce l'hash della radice dell'albero.
+     *
+     * @return l'hash della radice.
+     * @throws IllegalStateException
+     *                                   se non è stata letta alcuna foglia.
+     */
+    public Digest getRootHash() {
+        if (root == null)
+            finish();
+        return root;
+    }
+
+    /**
+     * Chiude il costruttore e restituisce la prova di Merkle di una foglia
+     * richiesta con {@link #trackProof(long)}.
+     *
+     * @param index
+     *                  la posizione della foglia.
+     * @return la prova di Merkle della foglia.
+     * @throws IllegalArgumentException
+     *                                      se la prova della foglia non è
+     *                                      stata richiesta o la foglia non
+     *                                      esiste.
+     */
+    public MerkleProof getMerkleProof(long index) {
+        Digest rootHash = getRootHash();
+        if (index >= count)
+            throw new IllegalArgumentException("No such leaf: " + index);
+        for (int k = 0; k < trackedCount; k++) {
+            if (tracked[k] != index)
+                continue;
+            int height = getHeight();
+            //con PROMOTE i livelli in cui il nodo non ha fratello non sono passi
+            int length = 0;
+            for (int l = 0; l < height; l++)
+                if (hasSibling(index, l))
+                    length++;
+            MerkleProof proof = new MerkleProof(rootHash, length,
+                    concatenation, hashFunction);
+            for (int l = 0; l < height; l++)
+                if (hasSibling(index, l))
+                    proof.addHash(siblings[k][l], ((index >>> l) & 1) == 1);
+            return proof;
+        }
+        throw new IllegalArgumentException("Proof not tracked: " + index);
+    }
+
+    /**
+     * Restituisce true se l'antenato di una foglia a un livello ha un
+     * fratello nella prova: sempre con {@link TreeShape#PAD}, solo se il
+     * fratello copre almeno una foglia con {@link TreeShape#PROMOTE}.
+     */
+    private boolean hasSibling(long index, int level) {
+        return shape == TreeShape.PAD
+                || ((index >>> level) ^ 1) < (count + (1L << level) - 1) >>> level;
+    }
+
+    /**
+     * Combina la frontiera nella radice, completando i sottoalberi rimasti
+     * aperti con nodi vuoti o, con {@link TreeShape#PROMOTE}, promuovendo i
+     * nodi senza fratello.
+     */
+    private void finish() {
+        if (count == 0)
+            throw new IllegalStateException("No leaves were added");
+        int height = getHeight();
+        boolean promote = shape == TreeShape.PROMOTE;
+        Digest partial = null; // sottoalbero aperto più a destra
+        for (int l = 0; l < height; l++) {
+            long right = count >>> l; // posizione del primo nodo incompleto
+            if (frontier[l] != null) {
+                //un sottoalbero completo a sinistra del nodo incompleto
+                if (promote && partial == null) {
+                    partial = frontier[l];
+                    continue;
+                }
+                Digest sibling = partial == null ? Digest.EMPTY : partial;
+                record(l, right, sibling);
+                partial = combine(frontier[l], sibling);
+            } else if (partial != null && !promote) {
+                record(l, right, partial);
+                record(l, right + 1, Digest.EMPTY);
+                partial = combine(partial, Digest.EMPTY);
+            }
+        }
+        root = partial != null ? partial : frontier[height];
+    }
+
+    private Digest combine(Digest left, Digest right) {
+        return HashUtil.combine(left, right, concatenation, hashFunction);
+    }
+
+    /**
+     * Registra un nodo appena calcolato se è il fratello di un antenato di
+     * una foglia di cui è stata richiesta la prova.
+     */
+    private void record(int level, long position, Digest node) {
+        for (int k = 0; k < trackedCount; k++)
+            if (((tracked[k] >>> level) ^ 1) == position)
+                siblings[k][level] = node;
+    }
+
+    private void checkOpen() {
+        if (root != null)
+            throw new IllegalStateException("The builder is already finished");
+    }
+}
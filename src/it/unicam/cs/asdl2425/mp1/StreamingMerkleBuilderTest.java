@@ -0,0 +1,180 @@
+package it.unicam.cs.asdl2425.mp1;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Classe di test per la classe {@link StreamingMerkleBuilder}. Questa classe
+ * verifica che la radice calcolata in streaming coincida con quella di un
+ * {@link MerkleTree} costruito sugli stessi dati.
+ * Di seguito, l'elenco dei test inclusi con una breve descrizione:
+ *
+ * <ul>
+ * <li>{@link #testRootMatchesTree()}: Verifica che la radice coincida con
+ * quella dell'albero per ogni numero di foglie da 1 a 40 e per entrambe le
+ * modalità di concatenazione.</li>
+ *
+ * <li>{@link #testTrackedProofs()}: Verifica che le prove raccolte durante la
+ * lettura siano identiche a quelle generate dall'albero.</li>
+ *
+ * <li>{@link #testChannel()}: Verifica la lettura degli hash delle foglie da
+ * un canale.</li>
+ *
+ * <li>{@link #testStream()}: Verifica la lettura dei dati da uno stream.</li>
+ *
+ * <li>{@link #testInvalidUse()}: Verifica che vengano lanciate eccezioni per
+ * un costruttore vuoto o già chiuso.</li>
+ *
+ * <li>{@link #testPromoteShape()}: Verifica che con la forma
+ * {@link TreeShape#PROMOTE} radice e prove coincidano con quelle dell'albero
+ * per ogni numero di foglie da 1 a 40.</li>
+ *
+ * <li>{@link #testFunnel()}: Verifica che con un funnel la radice coincida
+ * con quella dell'albero costruito da una lista con lo stesso funnel.</li>
+ * </ul>
+ */
+class StreamingMerkleBuilderTest {
+
+    private static MerkleTree<Integer> tree(int n, Concatenation mode) {
+        HashLinkedList<Integer> list = new HashLinkedList<>();
+        for (int i = 0; i < n; i++)
+            list.addAtTail(i * 31);
+        return new MerkleTree<>(list, mode);
+    }
+
+    @Test
+    void testRootMatchesTree() {
+        for (Concatenation mode : Concatenation.values()) {
+            for (int n = 1; n <= 40; n++) {
+                StreamingMerkleBuilder<Integer> builder = new StreamingMerkleBuilder<>(
+                        HashFunction.MD5, mode);
+                for (int i = 0; i < n; i++)
+                    builder.add(i * 31);
+                MerkleTree<Integer> tree = tree(n, mode);
+                assertEquals(tree.getRoot().getDigest(), builder.getRootHash(),
+                        "La radice non coincide con quella dell'albero per " + n + " foglie.");
+                assertEquals(tree.getHeight(), builder.getHeight(),
+                        "L'altezza non coincide con quella dell'albero per " + n + " foglie.");
+            }
+        }
+    }
+
+    @Test
+    void testTrackedProofs() {
+        int n = 13;
+        MerkleTree<Integer> tree = tree(n, Concatenation.HEX);
+        StreamingMerkleBuilder<Integer> builder = new StreamingMerkleBuilder<>();
+        builder.trackProof(0).trackProof(5).trackProof(12);
+        for (int i = 0; i < n; i++)
+            builder.add(i * 31);
+        for (int index : new int[] { 0, 5, 12 }) {
+            MerkleProof proof = builder.getMerkleProof(index);
+            MerkleProof expected = tree.getMerkleProof(Integer.valueOf(index * 31));
+            assertEquals(expected.getLength(), proof.getLength(),
+                    "La lunghezza della prova non è corretta.");
+            assertTrue(proof.proveValidityOfData(index * 31),
+                    "La prova raccolta in streaming dovrebbe essere valida.");
+            assertFalse(proof.proveValidityOfData(index * 31 + 1),
+                    "La prova non dovrebbe validare un altro dato.");
+        }
+        assertThrows(IllegalArgumentException.class, () -> builder.getMerkleProof(3),
+                "Dovrebbe lanciare IllegalArgumentException per una prova non richiesta.");
+    }
+
+    @Test
+    void testChannel() throws IOException {
+        int n = 9000;
+        byte[] leaves = new byte[n * 16];
+        StreamingMerkleBuilder<Object> expected = new StreamingMerkleBuilder<>();
+        for (int i = 0; i < n; i++) {
+            Digest leaf = HashUtil.dataToDigest(i);
+            leaf.writeBytes(leaves, i * 16);
+            expected.addHash(leaf);
+        }
+        StreamingMerkleBuilder<Object> builder = new StreamingMerkleBuilder<>();
+        builder.addHashes(Channels.newChannel(new ByteArrayInputStream(leaves)));
+        assertEquals(n, builder.getCount(), "Dovrebbero essere lette tutte le foglie.");
+        assertEquals(expected.getRootHash(), builder.getRootHash(),
+                "La radice letta dal canale non è corretta.");
+
+        StreamingMerkleBuilder<Object> truncated = new StreamingMerkleBuilder<>();
+        assertThrows(IOException.class, () -> truncated.addHashes(
+                Channels.newChannel(new ByteArrayInputStream(new byte[20]))),
+                "Dovrebbe lanciare IOException per un hash troncato.");
+    }
+
+    @Test
+    void testStream() {
+        StreamingMerkleBuilder<Integer> builder = new StreamingMerkleBuilder<>();
+        builder.addAll(IntStream.range(0, 21).map(i -> i * 31).boxed());
+        assertEquals(tree(21, Concatenation.HEX).getRoot().getDigest(), builder.getRootHash(),
+                "La radice letta dallo stream non è corretta.");
+    }
+
+    @Test
+    void testInvalidUse() {
+        StreamingMerkleBuilder<Integer> empty = new StreamingMerkleBuilder<>();
+        assertThrows(IllegalStateException.class, empty::getRootHash,
+                "Dovrebbe lanciare IllegalStateException senza foglie.");
+
+        StreamingMerkleBuilder<Integer> builder = new StreamingMerkleBuilder<>();
+        builder.add(1);
+        builder.getRootHash();
+        assertThrows(IllegalStateException.class, () -> builder.add(2),
+                "Dovrebbe lanciare IllegalStateException dopo la chiusura.");
+    }
+
+
+    @Test
+    void testPromoteShape() {
+        for (int n = 1; n <= 40; n++) {
+            HashLinkedList<Integer> list = new HashLinkedList<>();
+            for (int i = 0; i < n; i++)
+                list.addAtTail(i * 31);
+            MerkleTree<Integer> tree = new MerkleTree<>(list,
+                    new MerkleTree.Options().setShape(TreeShape.PROMOTE));
+            StreamingMerkleBuilder<Integer> builder = new StreamingMerkleBuilder<>(
+                    HashFunction.MD5, Concatenation.HEX, TreeShape.PROMOTE);
+            for (int i = 0; i < n; i++)
+                builder.trackProof(i);
+            for (int i = 0; i < n; i++)
+                builder.add(i * 31);
+            assertEquals(tree.getRoot().getDigest(), builder.getRootHash(),
+                    "La radice non coincide con quella dell'albero per " + n + " foglie.");
+            for (int i = 0; i < n; i++) {
+                MerkleProof proof = builder.getMerkleProof(i);
+                assertEquals(tree.getMerkleProof(i).getSize(), proof.getSize(),
+                        "La lunghezza della prova della foglia " + i + " non è corretta per " + n + " foglie.");
+                assertTrue(proof.proveValidityOfData(i * 31),
+                        "La prova della foglia " + i + " dovrebbe essere valida per " + n + " foglie.");
+            }
+        }
+    }
+
+
+    @Test
+    void testFunnel() {
+        HashLinkedList<CharSequence> list = new HashLinkedList<>(HashFunction.SHA256, Funnel.CHARS);
+        StreamingMerkleBuilder<CharSequence> builder = new StreamingMerkleBuilder<>(
+                HashFunction.SHA256, Concatenation.BINARY, TreeShape.PAD, Funnel.CHARS);
+        for (int i = 0; i < 13; i++) {
+            list.addAtTail("dato " + i);
+            builder.add("dato " + i);
+        }
+        MerkleTree<CharSequence> tree = new MerkleTree<>(list, Concatenation.BINARY);
+        assertEquals(tree.getRoot().getDigest(), builder.getRootHash(),
+                "La radice non coincide con quella dell'albero costruito con il funnel.");
+        StreamingMerkleBuilder<CharSequence> plain = new StreamingMerkleBuilder<>(
+                HashFunction.SHA256, Concatenation.BINARY);
+        for (int i = 0; i < 13; i++)
+            plain.add("dato " + i);
+        assertNotEquals(plain.getRootHash(), builder.getRootHash(),
+                "L'hash dei dati dovrebbe essere calcolato con il funnel.");
+    }
+}
@@ -0,0 +1,27 @@
+package it.unicam.cs.asdl2425.mp1;
+
+/**
+ * Forma di un albero di Merkle il cui numero di foglie non è una potenza di
+ * due, ovvero il modo in cui viene trattato l'ultimo nodo di un livello
+ * quando non ha un fratello. In entrambe le forme le foglie occupano le
+ * stesse posizioni e l'altezza dell'albero è la stessa.
+ *
+ * @author **JULIANO, SINAJ, juliano.sinaj@studenti.unicam.it**
+ */
+public enum TreeShape {
+
+    /**
+     * Il nodo senza fratello viene combinato con un fratello di padding
+     * vuoto, per cui il padre ha come hash l'hash della codifica del solo
+     * figlio. È la forma predefinita.
+     */
+    PAD,
+
+    /**
+     * Il nodo senza fratello viene promosso al livello superiore senza
+     * essere modificato, come negli alberi descritti dalla RFC 6962. I nodi
+     * sul bordo destro dell'albero non richiedono alcun calcolo di hash e le
+     * loro prove di Merkle sono più corte.
+     */
+    PROMOTE
+}